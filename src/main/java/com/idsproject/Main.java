@@ -1,12 +1,28 @@
 package main.java.com.idsproject;
 
+import main.java.com.idsproject.detection.AttackSignature;
 import main.java.com.idsproject.detection.IDS;
+import main.java.com.idsproject.detection.OfflineTrainer;
+import main.java.com.idsproject.log.EventLog;
+import main.java.com.idsproject.network.ExecutionStrategy;
+import main.java.com.idsproject.network.FlowReplaySource;
 import main.java.com.idsproject.network.NetworkMonitor;
+import main.java.com.idsproject.network.PacketRingBuffer;
+import main.java.com.idsproject.network.PcapReader;
 import main.java.com.idsproject.network.TrafficSimulator;
+import main.java.com.idsproject.rl.Learner;
+import main.java.com.idsproject.rl.LearnerStore;
+import main.java.com.idsproject.rl.LinearQLearning;
 import main.java.com.idsproject.rl.QLearning;
 import main.java.com.idsproject.ui.ConsoleUI;
 import main.java.com.idsproject.ui.SimpleGUI;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Point d'entrée principal de l'application de Détection d'Intrusion avec Apprentissage par Renforcement.
  * Cette classe initialise tous les composants nécessaires et démarre le système.
@@ -17,15 +33,91 @@ import main.java.com.idsproject.ui.SimpleGUI;
 public class Main {
 
     private static final boolean USE_GUI = true; // Définir sur false pour utiliser l'interface console
+    private static final NetworkMonitor.AcceptMode ACCEPT_MODE = NetworkMonitor.AcceptMode.NIO; // BLOCKING : un thread par port
+    private static final ExecutionStrategy EXECUTION_STRATEGY = ExecutionStrategy.FIXED_POOL; // VIRTUAL_THREADS : un thread virtuel par connexion
+    private static final int[] MONITORED_PORTS = {80, 443, 22, 21, 25, 3306, 8080};
+    private static final int RING_BUFFER_CAPACITY = 65536; // 0 pour notifier les écouteurs sur le thread de capture
+    private static final int RING_BUFFER_CONSUMERS = 2;
+    private static final long LEARNER_SAVE_PERIOD_SECONDS = 60;
 
     public static void main(String[] args) {
         System.out.println("Démarrage du Système de Détection d'Intrusion avec Apprentissage par Renforcement...");
         
         // Initialisation des composants
-        NetworkMonitor networkMonitor = new NetworkMonitor();
+        NetworkMonitor networkMonitor = new NetworkMonitor(MONITORED_PORTS, ACCEPT_MODE, EXECUTION_STRATEGY);
+        if (RING_BUFFER_CAPACITY > 0) {
+            networkMonitor.enableRingBuffer(RING_BUFFER_CAPACITY, PacketRingBuffer.WaitStrategy.PARK, RING_BUFFER_CONSUMERS);
+        }
         TrafficSimulator trafficSimulator = new TrafficSimulator();
-        QLearning qLearning = new QLearning(0.1, 0.9, 0.3); // alpha, gamma, epsilon
-        IDS ids = new IDS(networkMonitor, qLearning);
+        
+        // Algorithme d'apprentissage (--learner table|linear) : table Q sur une grille
+        // d'états par défaut, ou approximation linéaire sur les caractéristiques de l'état
+        String learnerName = "table";
+        for (int i = 0; i + 1 < args.length; i++) {
+            if ("--learner".equals(args[i])) {
+                learnerName = args[i + 1];
+            }
+        }
+        Learner learner = "linear".equals(learnerName)
+                ? new LinearQLearning(0.1, 0.9, 0.3)  // alpha, gamma, epsilon
+                : new QLearning(0.1, 0.9, 0.3);
+        
+        // Reprise de l'apprentissage sauvegardé (--model <fichier>), avant la première décision
+        Path modelFile = Paths.get(System.getProperty("user.home"), ".ids", "learner-" + learnerName + ".bin");
+        for (int i = 0; i + 1 < args.length; i++) {
+            if ("--model".equals(args[i])) {
+                modelFile = Paths.get(args[i + 1]);
+            }
+        }
+        LearnerStore learnerStore = new LearnerStore(modelFile);
+        if (learnerStore.load(learner)) {
+            System.out.println("Apprentissage repris depuis " + modelFile);
+        }
+        
+        // Entraînement hors ligne (--train <fichier>, répétable ; --epochs <n>) :
+        // la table apprise est sauvegardée, puis le programme s'arrête
+        List<Path> trainingFiles = new ArrayList<>();
+        int epochs = OfflineTrainer.DEFAULT_EPOCHS;
+        for (int i = 0; i + 1 < args.length; i++) {
+            if ("--train".equals(args[i])) {
+                trainingFiles.add(Paths.get(args[i + 1]));
+            } else if ("--epochs".equals(args[i])) {
+                epochs = Integer.parseInt(args[i + 1]);
+            }
+        }
+        if (!trainingFiles.isEmpty()) {
+            trainOffline(learner, learnerStore, trainingFiles, epochs);
+            return;
+        }
+        
+        IDS ids = new IDS(networkMonitor, learner);
+        
+        // Journal des événements : --log-level debug|info|warn|error|off (debug par défaut,
+        // un paquet traité par événement) et --log-sample <n> (un paquet journalisé sur n)
+        for (int i = 0; i + 1 < args.length; i++) {
+            if ("--log-level".equals(args[i])) {
+                ids.getEventLog().setLevel(EventLog.Level.valueOf(args[i + 1].toUpperCase()));
+            } else if ("--log-sample".equals(args[i])) {
+                ids.getEventLog().setPacketSampling(Integer.parseInt(args[i + 1]));
+            }
+        }
+        
+        // Sauvegardes périodiques en arrière-plan, et une dernière à l'arrêt
+        learnerStore.scheduleSaves(learner, LEARNER_SAVE_PERIOD_SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            ids.getTrainer().stop();
+            learnerStore.stop();
+            learnerStore.save(learner);
+            ids.getEventLog().stop();
+        }, "ids-shutdown"));
+        
+        // Fichier de signatures (--rules <fichier>), compilé en arrière-plan :
+        // les signatures intégrées restent actives jusqu'au remplacement
+        for (int i = 0; i + 1 < args.length; i++) {
+            if ("--rules".equals(args[i])) {
+                loadRules(Paths.get(args[i + 1]));
+            }
+        }
         
         // Démarrage du moniteur réseau
         networkMonitor.startMonitoring();
@@ -40,5 +132,114 @@ public class Main {
         }
         
         System.out.println("Système démarré avec succès.");
+        
+        // Rejeu de fichiers passés en argument :
+        //   --pcap <fichier>      capture pcap/pcapng
+        //   --replay <fichier>    flux CSV (data/*.csv), répétable
+        //   --speed <facteur>     rejeu CSV fidèle aux horodatages, accéléré du facteur donné
+        double speedFactor = 0;
+        for (int i = 0; i + 1 < args.length; i++) {
+            if ("--speed".equals(args[i])) {
+                speedFactor = Double.parseDouble(args[i + 1]);
+            }
+        }
+        for (int i = 0; i + 1 < args.length; i++) {
+            if ("--pcap".equals(args[i])) {
+                replayCapture(networkMonitor, Paths.get(args[i + 1]));
+            } else if ("--replay".equals(args[i])) {
+                replayFlows(networkMonitor, Paths.get(args[i + 1]), speedFactor);
+            }
+        }
+    }
+    
+    /**
+     * Entraîne la table Q sur des fichiers de flux étiquetés, sur tous les processeurs,
+     * puis la sauvegarde pour le prochain démarrage
+     * @param learner le modèle à entraîner (table Q uniquement)
+     * @param learnerStore la sauvegarde du modèle
+     * @param files les fichiers CSV de flux
+     * @param epochs le nombre de passes sur les flux
+     */
+    private static void trainOffline(Learner learner, LearnerStore learnerStore, List<Path> files, int epochs) {
+        if (!(learner instanceof QLearning)) {
+            System.err.println("L'entraînement hors ligne n'est disponible que pour la table Q (--learner table)");
+            return;
+        }
+        
+        OfflineTrainer trainer = new OfflineTrainer(epochs);
+        for (Path file : files) {
+            try {
+                System.out.println("Chargement de " + file + " : " + trainer.load(file) + " flux");
+            } catch (IOException e) {
+                System.err.println("Erreur lors de la lecture de " + file + ": " + e.getMessage());
+                return;
+            }
+        }
+        
+        OfflineTrainer.Result result = trainer.train((QLearning) learner);
+        System.out.println("Entraînement hors ligne terminé : " + result);
+        if (learnerStore.save(learner)) {
+            System.out.println("Table Q sauvegardée dans " + learnerStore.getFile());
+        }
+    }
+    
+    /**
+     * Charge un fichier de signatures sans bloquer le démarrage
+     * @param file le fichier de règles
+     */
+    private static void loadRules(Path file) {
+        AttackSignature.loadRulesAsync(file).whenComplete((count, error) -> {
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                System.err.println("Erreur lors du chargement des règles " + file + ": " + cause.getMessage());
+            } else {
+                System.out.println("Règles chargées depuis " + file + " : " + count + " signatures");
+            }
+        });
+    }
+    
+    /**
+     * Rejoue un fichier de flux CSV à travers l'IDS sur un thread dédié
+     * @param networkMonitor le moniteur dont les écouteurs reçoivent les paquets
+     * @param file le fichier CSV
+     * @param speedFactor le facteur de vitesse, ou 0 pour rejouer aussi vite que possible
+     */
+    private static void replayFlows(NetworkMonitor networkMonitor, Path file, double speedFactor) {
+        Thread replayThread = new Thread(() -> {
+            FlowReplaySource source = speedFactor > 0
+                    ? new FlowReplaySource(file, FlowReplaySource.ReplayMode.TIMESTAMP_FAITHFUL, speedFactor)
+                    : new FlowReplaySource(file, FlowReplaySource.ReplayMode.AS_FAST_AS_POSSIBLE, 1.0);
+            try {
+                long start = System.nanoTime();
+                long rows = source.replay(networkMonitor);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("Rejeu de %s terminé : %d flux (%d attaques étiquetées) en %.1f s, %.0f flux/s%n",
+                        file, rows, source.getAttackRows(), seconds, rows / Math.max(seconds, 1e-9));
+            } catch (IOException e) {
+                System.err.println("Erreur lors du rejeu de " + file + ": " + e.getMessage());
+            }
+        }, "ids-flow-replay");
+        replayThread.start();
+    }
+    
+    /**
+     * Rejoue un fichier pcap/pcapng à travers l'IDS sur un thread dédié
+     * @param networkMonitor le moniteur dont les écouteurs reçoivent les paquets
+     * @param file le fichier de capture
+     */
+    private static void replayCapture(NetworkMonitor networkMonitor, Path file) {
+        Thread replayThread = new Thread(() -> {
+            PcapReader reader = new PcapReader(file);
+            try {
+                long start = System.nanoTime();
+                long packets = reader.replay(networkMonitor);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("Rejeu de %s terminé : %d paquets en %.1f s (%d trames ignorées)%n",
+                        file, packets, seconds, reader.getFramesSkipped());
+            } catch (IOException e) {
+                System.err.println("Erreur lors du rejeu de " + file + ": " + e.getMessage());
+            }
+        }, "ids-pcap-replay");
+        replayThread.start();
     }
 }
@@ -1,19 +1,61 @@
 package main.java.com.idsproject.detection;
 
-import java.util.HashMap;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * Classe contenant les signatures d'attaques courantes pour aider à la détection.
  * Ces signatures sont utilisées pour identifier des motifs connus d'attaques.
+ *
+ * Le jeu de règles courant est un instantané compilé et immuable (voir CompiledSignatures),
+ * publié par une seule référence volatile : la détection ne prend aucun verrou. Toute
+ * modification (ajout d'une signature, chargement d'un fichier) compile un nouvel
+ * instantané à partir d'une copie, puis le publie d'un coup ; les détections en cours
+ * terminent sur l'ancien.
+ *
+ * Les fichiers de règles compilés sont conservés dans un cache disque (voir
+ * SignatureCache) : un fichier inchangé est relu depuis le cache au démarrage suivant.
  */
 public class AttackSignature {
-    
-    // Map des signatures d'attaques par type
-    private static final Map<String, Pattern[]> ATTACK_SIGNATURES = new HashMap<>();
-    
+
+    // Jeu de règles courant, remplacé en bloc à chaque modification
+    private static volatile CompiledSignatures ruleSet;
+
+    // Cache par défaut des fichiers de règles compilés, propre à l'utilisateur (voir SignatureCache)
+    private static final SignatureCache DEFAULT_CACHE =
+            new SignatureCache(Paths.get(System.getProperty("user.home"), ".ids", "signature-cache"));
+
+    // Sérialise les modifications (jamais pris par la détection)
+    private static final Object WRITE_LOCK = new Object();
+
+    // Compilation des fichiers de règles en arrière-plan
+    private static final ExecutorService RULE_LOADER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ids-rule-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     static {
+        // Map des signatures d'attaques par type, dans l'ordre de priorité des types
+        Map<String, Pattern[]> signatures = new LinkedHashMap<>();
+
         // Signatures pour les attaques DoS
         Pattern[] dosPatterns = {
             Pattern.compile(".*SYN flood.*", Pattern.CASE_INSENSITIVE),
@@ -22,8 +64,8 @@ public class AttackSignature {
             Pattern.compile(".*UDP flood.*", Pattern.CASE_INSENSITIVE),
             Pattern.compile(".*HTTP flood.*", Pattern.CASE_INSENSITIVE)
         };
-        ATTACK_SIGNATURES.put("DoS", dosPatterns);
-        
+        signatures.put("DoS", dosPatterns);
+
         // Signatures pour les scans de ports
         Pattern[] portScanPatterns = {
             Pattern.compile(".*port scan.*", Pattern.CASE_INSENSITIVE),
@@ -31,8 +73,8 @@ public class AttackSignature {
             Pattern.compile(".*sequential port.*", Pattern.CASE_INSENSITIVE),
             Pattern.compile(".*service discovery.*", Pattern.CASE_INSENSITIVE)
         };
-        ATTACK_SIGNATURES.put("PortScan", portScanPatterns);
-        
+        signatures.put("PortScan", portScanPatterns);
+
         // Signatures pour les attaques par force brute
         Pattern[] bruteForcePatterns = {
             Pattern.compile(".*multiple login attempts.*", Pattern.CASE_INSENSITIVE),
@@ -40,8 +82,8 @@ public class AttackSignature {
             Pattern.compile(".*password guessing.*", Pattern.CASE_INSENSITIVE),
             Pattern.compile(".*dictionary attack.*", Pattern.CASE_INSENSITIVE)
         };
-        ATTACK_SIGNATURES.put("BruteForce", bruteForcePatterns);
-        
+        signatures.put("BruteForce", bruteForcePatterns);
+
         // Signatures pour les injections SQL
         Pattern[] sqlInjectionPatterns = {
             Pattern.compile(".*'\\s*OR\\s*'1'='1.*", Pattern.CASE_INSENSITIVE),
@@ -49,9 +91,11 @@ public class AttackSignature {
             Pattern.compile(".*UNION\\s+SELECT.*", Pattern.CASE_INSENSITIVE),
             Pattern.compile(".*--\\s*$", Pattern.CASE_INSENSITIVE)
         };
-        ATTACK_SIGNATURES.put("SQLInjection", sqlInjectionPatterns);
+        signatures.put("SQLInjection", sqlInjectionPatterns);
+
+        ruleSet = new CompiledSignatures(signatures);
     }
-    
+
     /**
      * Vérifie si un texte contient une signature d'attaque connue
      * @param text le texte à vérifier
@@ -62,21 +106,10 @@ public class AttackSignature {
         if (text == null || attackType == null) {
             return false;
         }
-        
-        Pattern[] patterns = ATTACK_SIGNATURES.get(attackType);
-        if (patterns == null) {
-            return false;
-        }
-        
-        for (Pattern pattern : patterns) {
-            if (pattern.matcher(text).matches()) {
-                return true;
-            }
-        }
-        
-        return false;
+
+        return ruleSet.matchesSignature(text, attackType);
     }
-    
+
     /**
      * Détecte le type d'attaque en fonction des signatures connues
      * @param text le texte à analyser
@@ -86,23 +119,27 @@ public class AttackSignature {
         if (text == null) {
             return null;
         }
-        
-        for (Map.Entry<String, Pattern[]> entry : ATTACK_SIGNATURES.entrySet()) {
-            String attackType = entry.getKey();
-            Pattern[] patterns = entry.getValue();
-            
-            for (Pattern pattern : patterns) {
-                if (pattern.matcher(text).matches()) {
-                    return attackType;
-                }
-            }
+
+        return ruleSet.detectAttackType(text);
+    }
+
+    /**
+     * Détecte le type d'attaque dans une charge utile, sans la décoder :
+     * les octets sont lus comme du Latin-1 et chaque ligne est analysée
+     * @param payload les octets à analyser (entre la position et la limite, non déplacées)
+     * @return le type d'attaque détecté ou null si aucune correspondance n'est trouvée
+     */
+    public static String detectAttackType(ByteBuffer payload) {
+        if (payload == null || !payload.hasRemaining()) {
+            return null;
         }
-        
-        return null;
+
+        return ruleSet.detectAttackType(payload);
     }
-    
+
     /**
-     * Ajoute une nouvelle signature d'attaque
+     * Ajoute une nouvelle signature d'attaque.
+     * Le nouveau jeu de règles est compilé sur le thread appelant puis publié.
      * @param attackType le type d'attaque
      * @param signatureRegex l'expression régulière de la signature
      */
@@ -110,19 +147,145 @@ public class AttackSignature {
         if (attackType == null || signatureRegex == null) {
             return;
         }
-        
-        Pattern[] existingPatterns = ATTACK_SIGNATURES.get(attackType);
+
         Pattern newPattern = Pattern.compile(signatureRegex, Pattern.CASE_INSENSITIVE);
-        
-        if (existingPatterns == null) {
-            // Nouveau type d'attaque
-            ATTACK_SIGNATURES.put(attackType, new Pattern[]{newPattern});
-        } else {
-            // Ajouter à un type existant
-            Pattern[] newPatterns = new Pattern[existingPatterns.length + 1];
-            System.arraycopy(existingPatterns, 0, newPatterns, 0, existingPatterns.length);
-            newPatterns[existingPatterns.length] = newPattern;
-            ATTACK_SIGNATURES.put(attackType, newPatterns);
+
+        synchronized (WRITE_LOCK) {
+            // Copie du jeu courant : l'instantané publié n'est jamais modifié
+            Map<String, Pattern[]> signatures = new LinkedHashMap<>(ruleSet.getSignatures());
+            Pattern[] existingPatterns = signatures.get(attackType);
+
+            if (existingPatterns == null) {
+                // Nouveau type d'attaque
+                signatures.put(attackType, new Pattern[]{newPattern});
+            } else {
+                // Ajouter à un type existant
+                Pattern[] newPatterns = new Pattern[existingPatterns.length + 1];
+                System.arraycopy(existingPatterns, 0, newPatterns, 0, existingPatterns.length);
+                newPatterns[existingPatterns.length] = newPattern;
+                signatures.put(attackType, newPatterns);
+            }
+
+            ruleSet = new CompiledSignatures(signatures);
+        }
+    }
+
+    /**
+     * Remplace le jeu de règles par le contenu d'un fichier, compilé en arrière-plan.
+     * En cas d'erreur (lecture ou expression invalide), le jeu courant est conservé.
+     * @param file le fichier de règles (voir loadRules)
+     * @return le nombre de signatures chargées, une fois le nouveau jeu publié
+     */
+    public static CompletableFuture<Integer> loadRulesAsync(Path file) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return loadRules(file);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, RULE_LOADER);
+    }
+
+    /**
+     * Remplace le jeu de règles par le contenu d'un fichier, en passant par le cache par défaut
+     * @param file le fichier de règles (voir loadRules(Path, SignatureCache))
+     * @return le nombre de signatures chargées
+     * @throws IOException si le fichier ne peut pas être lu ou contient une règle invalide
+     */
+    public static int loadRules(Path file) throws IOException {
+        return loadRules(file, DEFAULT_CACHE);
+    }
+
+    /**
+     * Remplace le jeu de règles par le contenu d'un fichier.
+     * Chaque ligne contient un type d'attaque puis, après des espaces, l'expression
+     * régulière de la signature (insensible à la casse) ; les lignes vides et celles
+     * commençant par # sont ignorées. L'ordre d'apparition des types fixe leur priorité.
+     *
+     * Si le cache contient déjà la compilation de ce contenu, elle est relue à la place ;
+     * sinon le fichier est compilé puis ajouté au cache.
+     *
+     * @param file le fichier de règles
+     * @param cache le cache des jeux compilés, ou null pour toujours compiler
+     * @return le nombre de signatures chargées
+     * @throws IOException si le fichier ne peut pas être lu ou contient une règle invalide
+     */
+    public static int loadRules(Path file, SignatureCache cache) throws IOException {
+        byte[] content = Files.readAllBytes(file);
+
+        CompiledSignatures compiled = cache != null ? cache.read(content) : null;
+        if (compiled == null) {
+            // Compilation hors du verrou : seule la publication est sérialisée
+            compiled = new CompiledSignatures(parseRules(file, content));
+            if (cache != null) {
+                cache.write(content, compiled);
+            }
+        }
+
+        synchronized (WRITE_LOCK) {
+            ruleSet = compiled;
+        }
+        return compiled.getSignatureCount();
+    }
+
+    /**
+     * Lit les règles d'un fichier (voir loadRules)
+     */
+    private static Map<String, Pattern[]> parseRules(Path file, byte[] content) throws IOException {
+        Map<String, List<Pattern>> byType = new LinkedHashMap<>();
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] parts = line.split("\\s+", 2);
+                if (parts.length < 2) {
+                    throw new IOException(file + ":" + lineNumber + ": règle sans expression");
+                }
+                try {
+                    byType.computeIfAbsent(parts[0], k -> new ArrayList<>())
+                          .add(Pattern.compile(parts[1], Pattern.CASE_INSENSITIVE));
+                } catch (PatternSyntaxException e) {
+                    throw new IOException(file + ":" + lineNumber + ": expression invalide: " + e.getDescription());
+                }
+            }
         }
+
+        Map<String, Pattern[]> signatures = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Pattern>> entry : byType.entrySet()) {
+            signatures.put(entry.getKey(), entry.getValue().toArray(new Pattern[0]));
+        }
+        return signatures;
+    }
+
+    /**
+     * Retourne les signatures les plus coûteuses du jeu de règles courant
+     * (profil remis à zéro à chaque remplacement du jeu)
+     * @param limit le nombre maximal de signatures retournées
+     * @return leur profil, par temps cumulé décroissant
+     */
+    public static List<CompiledSignatures.RuleCost> getTopCostlyRules(int limit) {
+        return ruleSet.getTopCostlyRules(limit);
+    }
+
+    /**
+     * @return le jeu de règles courant (instantané immuable, avec son profil)
+     */
+    public static CompiledSignatures getCompiledSignatures() {
+        return ruleSet;
+    }
+
+    /**
+     * @return le nombre de signatures du jeu de règles courant
+     */
+    public static int getSignatureCount() {
+        return ruleSet.getSignatureCount();
     }
 }
@@ -0,0 +1,983 @@
+package main.java.com.idsproject.detection;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Jeu de signatures compilé, immuable : il peut être partagé sans verrou entre les
+ * threads de détection et remplacé en bloc (voir AttackSignature).
+ *
+ * Les signatures de la forme ".*littéral.*" insensibles à la casse (les plus courantes)
+ * sont regroupées dans un seul automate d'Aho-Corasick : elles sont toutes testées en
+ * une seule passe sur le texte. Comme avec Pattern.matches(), où ".*" ne franchit pas
+ * les fins de ligne, un littéral n'est retenu que si le texte ne contient aucun
+ * terminateur de ligne. Une charge utile réseau (HTTP, FTP, SMTP...) est au contraire
+ * découpée en lignes par CRLF : une signature y est retenue si elle correspond à l'une
+ * de ses lignes, et un littéral dès qu'il y figure.
+ *
+ * Les véritables expressions régulières forment un second étage : chacune est précédée
+ * d'un filtre, le plus long littéral qu'elle impose, recherché par le même automate ;
+ * l'expression n'est évaluée que si ce littéral a été trouvé. Les expressions sans
+ * littéral exploitable sont toujours évaluées.
+ *
+ * Les signatures sont numérotées dans l'ordre des types puis de leur ajout : en cas de
+ * correspondances multiples, le premier type dans cet ordre l'emporte.
+ *
+ * Les charges utiles réseau sont analysées directement sur leurs octets, lus comme du
+ * Latin-1 (un octet, un caractère) : ni décodage ni String par paquet. Le second étage
+ * voit les octets au travers d'une vue CharSequence réutilisée.
+ *
+ * Un jeu compilé peut être écrit puis relu sans recompiler l'automate (voir write et
+ * read). Seules les expressions du second étage sont compilées à la relecture, ce qui
+ * les vérifie : les signatures littérales, les plus nombreuses, ne sont jamais
+ * compilées en Pattern.
+ *
+ * Chaque jeu tient son propre profil (voir getTopCostlyRules) : nombre d'évaluations
+ * et temps cumulé de chaque expression du second étage, nombre de correspondances
+ * retenues de chaque signature, et coût du parcours de l'automate, partagé par tous
+ * les littéraux. Les compteurs sont des LongAdder : les threads de détection ne se
+ * disputent pas une même variable.
+ */
+public class CompiledSignatures {
+
+    private static final int MIN_FILTER_LENGTH = 2;
+
+    private static final int MAGIC = 0x49445353;   // "IDSS"
+    private static final int SCAN_SAMPLE_SHIFT = 6; // Un parcours de l'automate chronométré sur 64
+    private static final int PATTERN_FLAGS = Pattern.UNIX_LINES | Pattern.CASE_INSENSITIVE | Pattern.COMMENTS
+            | Pattern.MULTILINE | Pattern.LITERAL | Pattern.DOTALL | Pattern.UNICODE_CASE | Pattern.CANON_EQ
+            | Pattern.UNICODE_CHARACTER_CLASS;
+    // Options qui changent la correspondance des littéraux : aucun filtre n'est alors extrait
+    private static final int UNFILTERED_FLAGS = Pattern.COMMENTS | Pattern.LITERAL | Pattern.UNICODE_CASE
+            | Pattern.CANON_EQ | Pattern.UNICODE_CHARACTER_CLASS;
+
+    private final String[] types;
+    private final int[] typeStarts;          // Première signature de chaque type (+ sentinelle)
+    private final int[] signatureTypes;      // Type de chaque signature
+    private final byte[] sourceBytes;        // Expressions sources en UTF-8, bout à bout
+    private final int[] sourceStarts;        // Début de l'expression de chaque signature (+ sentinelle)
+    private final int[] flags;               // Options de compilation de chaque signature
+    private final byte[] stageTwo;           // 1 si la signature est évaluée par le second étage (sinon littéral)
+    private final AtomicReferenceArray<Pattern> patterns;   // Compilées à la demande
+    private final int[] unfilteredRegexes;   // Expressions sans filtre, toujours évaluées
+    private final SignatureAutomaton automaton;
+    private final ThreadLocal<Scan> scans;
+    private volatile Map<String, Pattern[]> signatures;     // Expressions sources, construites à la demande
+
+    // Profil : correspondances retenues par signature, évaluations et temps par expression
+    // du second étage (null pour les littéraux), parcours de l'automate
+    private final LongAdder[] matchCounts;
+    private final LongAdder[] evaluationCounts;
+    private final LongAdder[] evaluationNanos;
+    private final LongAdder scanCount = new LongAdder();
+    private final LongAdder scanNanos = new LongAdder();
+
+    /**
+     * Compile un jeu de signatures
+     * @param signatures les expressions de chaque type, dans l'ordre de priorité des types
+     */
+    public CompiledSignatures(Map<String, Pattern[]> signatures) {
+        Map<String, Pattern[]> copy = new LinkedHashMap<>();
+        for (Map.Entry<String, Pattern[]> entry : signatures.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().clone());
+        }
+        this.signatures = Collections.unmodifiableMap(copy);
+
+        int count = 0;
+        for (Pattern[] typePatterns : signatures.values()) {
+            count += typePatterns.length;
+        }
+
+        this.types = new String[signatures.size()];
+        this.typeStarts = new int[signatures.size() + 1];
+        this.signatureTypes = new int[count];
+        this.sourceStarts = new int[count + 1];
+        this.flags = new int[count];
+        this.stageTwo = new byte[count];
+        ByteArrayOutputStream encodedSources = new ByteArrayOutputStream();
+        this.patterns = new AtomicReferenceArray<>(count);
+
+        List<String> literals = new ArrayList<>();
+        List<Integer> literalIds = new ArrayList<>();
+        List<Integer> unfiltered = new ArrayList<>();
+
+        int type = 0;
+        int id = 0;
+        for (Map.Entry<String, Pattern[]> entry : signatures.entrySet()) {
+            types[type] = entry.getKey();
+            typeStarts[type] = id;
+
+            for (Pattern pattern : entry.getValue()) {
+                signatureTypes[id] = type;
+                byte[] encoded = pattern.pattern().getBytes(StandardCharsets.UTF_8);
+                encodedSources.write(encoded, 0, encoded.length);
+                sourceStarts[id + 1] = sourceStarts[id] + encoded.length;
+                flags[id] = pattern.flags();
+                patterns.set(id, pattern);
+                String literal = pattern.flags() == Pattern.CASE_INSENSITIVE ? literalBody(pattern.pattern()) : null;
+
+                if (literal != null) {
+                    literals.add(literal);
+                    literalIds.add(id);
+                } else {
+                    stageTwo[id] = 1;
+                    String filter = (pattern.flags() & UNFILTERED_FLAGS) == 0 ? requiredLiteral(pattern.pattern()) : null;
+                    if (filter != null) {
+                        literals.add(filter);
+                        literalIds.add(id);
+                    } else {
+                        unfiltered.add(id);
+                    }
+                }
+                id++;
+            }
+            type++;
+        }
+        typeStarts[type] = id;
+        this.sourceBytes = encodedSources.toByteArray();
+
+        int[] ids = new int[literalIds.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = literalIds.get(i);
+        }
+        this.automaton = new SignatureAutomaton(literals, ids);
+        this.unfilteredRegexes = unfiltered.stream().mapToInt(Integer::intValue).toArray();
+        this.scans = ThreadLocal.withInitial(() -> new Scan(stageTwo));
+        this.matchCounts = newAdders(stageTwo, false);
+        this.evaluationCounts = newAdders(stageTwo, true);
+        this.evaluationNanos = newAdders(stageTwo, true);
+    }
+
+    /**
+     * Constructeur réservé à la relecture d'un jeu compilé (voir read)
+     */
+    private CompiledSignatures(String[] types, int[] typeStarts, int[] signatureTypes, byte[] sourceBytes,
+                               int[] sourceStarts, int[] flags, byte[] stageTwo, int[] unfilteredRegexes,
+                               SignatureAutomaton automaton) {
+        this.types = types;
+        this.typeStarts = typeStarts;
+        this.signatureTypes = signatureTypes;
+        this.sourceBytes = sourceBytes;
+        this.sourceStarts = sourceStarts;
+        this.flags = flags;
+        this.stageTwo = stageTwo;
+        this.patterns = new AtomicReferenceArray<>(signatureTypes.length);
+        this.unfilteredRegexes = unfilteredRegexes;
+        this.automaton = automaton;
+        this.scans = ThreadLocal.withInitial(() -> new Scan(stageTwo));
+        this.matchCounts = newAdders(stageTwo, false);
+        this.evaluationCounts = newAdders(stageTwo, true);
+        this.evaluationNanos = newAdders(stageTwo, true);
+    }
+
+    private static LongAdder[] newAdders(byte[] stageTwo, boolean stageTwoOnly) {
+        LongAdder[] adders = new LongAdder[stageTwo.length];
+        for (int id = 0; id < adders.length; id++) {
+            if (!stageTwoOnly || stageTwo[id] != 0) {
+                adders[id] = new LongAdder();
+            }
+        }
+        return adders;
+    }
+
+    /**
+     * Détecte le type d'attaque en fonction des signatures
+     * @param text le texte à analyser
+     * @return le type d'attaque détecté ou null si aucune correspondance n'est trouvée
+     */
+    public String detectAttackType(CharSequence text) {
+        int match = firstMatch(text, 0, signatureTypes.length);
+        return match < 0 ? null : types[signatureTypes[match]];
+    }
+
+    /**
+     * Détecte le type d'attaque dans des octets (entre la position et la limite du tampon,
+     * sans les déplacer), lus comme du Latin-1 ; une signature est cherchée dans chaque ligne
+     * @param bytes les octets à analyser
+     * @return le type d'attaque détecté ou null si aucune correspondance n'est trouvée
+     */
+    public String detectAttackType(ByteBuffer bytes) {
+        int match = firstMatch(bytes, 0, signatureTypes.length);
+        return match < 0 ? null : types[signatureTypes[match]];
+    }
+
+    /**
+     * Vérifie si un texte contient une signature d'un type donné
+     * @param text le texte à vérifier
+     * @param attackType le type d'attaque
+     * @return true si une signature de ce type est trouvée
+     */
+    public boolean matchesSignature(CharSequence text, String attackType) {
+        for (int type = 0; type < types.length; type++) {
+            if (types[type].equals(attackType)) {
+                return firstMatch(text, typeStarts[type], typeStarts[type + 1]) >= 0;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return le nombre de signatures
+     */
+    public int getSignatureCount() {
+        return signatureTypes.length;
+    }
+
+    /**
+     * Retourne les signatures les plus coûteuses, par temps cumulé décroissant.
+     * Seules les expressions du second étage ont un coût propre : les littéraux sont
+     * tous recherchés par le même parcours de l'automate (voir getEstimatedScanNanos).
+     * @param limit le nombre maximal de signatures retournées
+     * @return le profil des signatures les plus coûteuses
+     */
+    public List<RuleCost> getTopCostlyRules(int limit) {
+        List<RuleCost> costs = new ArrayList<>();
+        for (int id = 0; id < signatureTypes.length; id++) {
+            if (evaluationCounts[id] != null && evaluationCounts[id].sum() > 0) {
+                costs.add(cost(id));
+            }
+        }
+        costs.sort((a, b) -> Long.compare(b.getTotalNanos(), a.getTotalNanos()));
+        return costs.size() > limit ? new ArrayList<>(costs.subList(0, Math.max(0, limit))) : costs;
+    }
+
+    /**
+     * Retourne les signatures qui n'ont encore jamais été retenues
+     * @param limit le nombre maximal de signatures retournées
+     * @return leur profil, dans l'ordre de priorité
+     */
+    public List<RuleCost> getUnmatchedRules(int limit) {
+        List<RuleCost> unmatched = new ArrayList<>();
+        for (int id = 0; id < signatureTypes.length && unmatched.size() < limit; id++) {
+            if (matchCounts[id].sum() == 0) {
+                unmatched.add(cost(id));
+            }
+        }
+        return unmatched;
+    }
+
+    /**
+     * @return le nombre de signatures qui n'ont encore jamais été retenues
+     */
+    public int getUnmatchedRuleCount() {
+        int unmatched = 0;
+        for (LongAdder matches : matchCounts) {
+            if (matches.sum() == 0) {
+                unmatched++;
+            }
+        }
+        return unmatched;
+    }
+
+    /**
+     * @return le nombre de parcours de l'automate (un par texte analysé)
+     */
+    public long getScanCount() {
+        return scanCount.sum();
+    }
+
+    /**
+     * @return le temps cumulé des parcours de l'automate, estimé par échantillonnage (en nanosecondes)
+     */
+    public long getEstimatedScanNanos() {
+        return scanNanos.sum();
+    }
+
+    private RuleCost cost(int id) {
+        boolean regex = stageTwo[id] != 0;
+        return new RuleCost(types[signatureTypes[id]], source(id), regex,
+                regex ? evaluationCounts[id].sum() : 0, matchCounts[id].sum(),
+                regex ? evaluationNanos[id].sum() : 0);
+    }
+
+    /**
+     * Retourne les expressions sources, dans l'ordre de priorité des types.
+     * Pour un jeu relu, les expressions sont compilées au premier appel.
+     * Les tableaux retournés sont partagés avec le jeu compilé et ne doivent pas être modifiés.
+     * @return les expressions de chaque type (non modifiable)
+     */
+    public Map<String, Pattern[]> getSignatures() {
+        Map<String, Pattern[]> result = signatures;
+        if (result == null) {
+            synchronized (this) {
+                result = signatures;
+                if (result == null) {
+                    Map<String, Pattern[]> byType = new LinkedHashMap<>();
+                    for (int type = 0; type < types.length; type++) {
+                        Pattern[] typePatterns = new Pattern[typeStarts[type + 1] - typeStarts[type]];
+                        for (int i = 0; i < typePatterns.length; i++) {
+                            typePatterns[i] = pattern(typeStarts[type] + i);
+                        }
+                        byType.put(types[type], typePatterns);
+                    }
+                    result = Collections.unmodifiableMap(byType);
+                    signatures = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return l'automate des littéraux
+     */
+    public SignatureAutomaton getAutomaton() {
+        return automaton;
+    }
+
+    /**
+     * Retourne la première signature (dans l'ordre de priorité) de l'intervalle donné
+     * qui correspond au texte : une passe de l'automate, puis les seules expressions
+     * dont le filtre a été trouvé
+     */
+    private int firstMatch(CharSequence text, int from, int to) {
+        Scan scan = scans.get();
+        scan.reset(from, to);
+
+        long start = scan.sample() ? System.nanoTime() : 0;
+        int flags = automaton.scan(text, scan);
+        recordScan(start);
+        return resolve(scan, text, flags, false, from, to);
+    }
+
+    /**
+     * Variante de firstMatch sur des octets : le second étage lit la vue Latin-1 du parcours
+     */
+    private int firstMatch(ByteBuffer bytes, int from, int to) {
+        Scan scan = scans.get();
+        scan.reset(from, to);
+
+        long start = scan.sample() ? System.nanoTime() : 0;
+        int flags = automaton.scan(bytes, scan);
+        recordScan(start);
+        try {
+            return resolve(scan, scan.bytes.wrap(bytes), flags, true, from, to);
+        } finally {
+            scan.bytes.wrap(null);
+        }
+    }
+
+    /**
+     * Compte un parcours de l'automate ; un parcours échantillonné compte pour tous
+     * ceux de son intervalle d'échantillonnage
+     * @param start le début du parcours, ou 0 s'il n'est pas échantillonné
+     */
+    private void recordScan(long start) {
+        scanCount.increment();
+        if (start != 0) {
+            scanNanos.add((System.nanoTime() - start) << SCAN_SAMPLE_SHIFT);
+        }
+    }
+
+    /**
+     * Combine les littéraux trouvés par l'automate et les expressions du second étage
+     * @param perLine true pour une charge utile : chaque ligne est évaluée séparément
+     */
+    private int resolve(Scan scan, CharSequence text, int flags, boolean perLine, int from, int to) {
+        boolean multiline = (flags & SignatureAutomaton.LINE_TERMINATOR_SEEN) != 0;
+        // Comme Pattern.matches(), ".*littéral.*" ne couvre pas un texte multiligne ;
+        // dans une charge utile, le littéral figure forcément sur l'une des lignes
+        int best = multiline && !perLine ? to : scan.bestLiteral;
+
+        for (int id : unfilteredRegexes) {
+            if (id >= from && id < best) {
+                scan.addCandidate(id);
+            }
+        }
+
+        int[] candidates = scan.candidates;
+        Arrays.sort(candidates, 0, scan.candidateCount);
+        for (int i = 0; i < scan.candidateCount && candidates[i] < best; i++) {
+            int id = candidates[i];
+            Pattern pattern = pattern(id);
+
+            long start = System.nanoTime();
+            boolean matched = multiline && perLine ? matchesAnyLine(pattern, text) : pattern.matcher(text).matches();
+            evaluationNanos[id].add(System.nanoTime() - start);
+            evaluationCounts[id].increment();
+
+            if (matched) {
+                best = id;
+                break;
+            }
+        }
+
+        if (best < to) {
+            matchCounts[best].increment();
+            return best;
+        }
+        return -1;
+    }
+
+    /**
+     * Évalue une expression sur chaque ligne d'un texte ; "\r\n" compte pour une seule
+     * fin de ligne, et la ligne vide qui suit la dernière n'est pas évaluée
+     */
+    private static boolean matchesAnyLine(Pattern pattern, CharSequence text) {
+        Matcher matcher = pattern.matcher(text);
+        int length = text.length();
+        int start = 0;
+        do {
+            int end = start;
+            while (end < length && !isLineTerminator(text.charAt(end))) {
+                end++;
+            }
+            if (matcher.region(start, end).matches()) {
+                return true;
+            }
+            if (end + 1 < length && text.charAt(end) == '\r' && text.charAt(end + 1) == '\n') {
+                end++;
+            }
+            start = end + 1;
+        } while (start < length);
+        return false;
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085';
+    }
+
+    /**
+     * Retourne l'expression compilée d'une signature, en la compilant à la première demande
+     */
+    private Pattern pattern(int id) {
+        Pattern pattern = patterns.get(id);
+        if (pattern == null) {
+            // Deux threads peuvent compiler la même expression : les résultats sont équivalents
+            pattern = Pattern.compile(source(id), flags[id]);
+            patterns.set(id, pattern);
+        }
+        return pattern;
+    }
+
+    private String source(int id) {
+        return new String(sourceBytes, sourceStarts[id], sourceStarts[id + 1] - sourceStarts[id], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return la taille du jeu écrit par write (en octets)
+     */
+    long serializedSize() {
+        long size = 12 + 4L * typeStarts.length + 4L * signatureTypes.length + 4L * flags.length
+            + SignatureAutomaton.align(stageTwo.length) + 4L * sourceStarts.length + SignatureAutomaton.align(sourceBytes.length)
+            + 4 + 4L * unfilteredRegexes.length + automaton.serializedSize();
+        for (String type : types) {
+            size += 4 + SignatureAutomaton.align(type.getBytes(StandardCharsets.UTF_8).length);
+        }
+        return size;
+    }
+
+    /**
+     * Écrit le jeu compilé (types, expressions sources et tables de l'automate),
+     * dans l'ordre d'octets du tampon. Hormis les noms des types, tout est écrit
+     * sous forme de tables, relues en bloc.
+     * @param out le tampon, d'au moins serializedSize() octets restants
+     */
+    void write(ByteBuffer out) {
+        out.putInt(MAGIC).putInt(types.length).putInt(signatureTypes.length);
+        for (String type : types) {
+            byte[] name = type.getBytes(StandardCharsets.UTF_8);
+            out.putInt(name.length);
+            SignatureAutomaton.putBytes(out, name);
+        }
+        SignatureAutomaton.putInts(out, typeStarts);
+        SignatureAutomaton.putInts(out, signatureTypes);
+        SignatureAutomaton.putInts(out, flags);
+        SignatureAutomaton.putBytes(out, stageTwo);
+        SignatureAutomaton.putInts(out, sourceStarts);
+        SignatureAutomaton.putBytes(out, sourceBytes);
+        out.putInt(unfilteredRegexes.length);
+        SignatureAutomaton.putInts(out, unfilteredRegexes);
+        automaton.write(out);
+    }
+
+    /**
+     * Relit un jeu écrit par write, sans recompiler l'automate ni les expressions.
+     * Les longueurs sont vérifiées avant chaque allocation, et les tables (bornes des
+     * types, des expressions, identifiants) avant d'être acceptées : un jeu relu ne
+     * peut pas échouer plus tard, pendant l'analyse d'un paquet
+     * @param in le tampon, positionné au début du jeu
+     * @return le jeu compilé
+     * @throws IllegalArgumentException si le contenu n'est pas un jeu compilé valide
+     */
+    static CompiledSignatures read(ByteBuffer in) {
+        if (in.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Jeu de signatures compilé invalide");
+        }
+        int typeCount = in.getInt();
+        int count = in.getInt();
+        if (typeCount < 0 || count < 0) {
+            throw new IllegalArgumentException("Jeu de signatures compilé invalide");
+        }
+
+        // Chaque type occupe au moins sa longueur : le nombre de types est borné par le contenu
+        if (typeCount > in.remaining() / 4 || count > in.remaining() / 4) {
+            throw new IllegalArgumentException("Jeu de signatures compilé invalide");
+        }
+
+        String[] types = new String[typeCount];
+        for (int i = 0; i < typeCount; i++) {
+            types[i] = new String(SignatureAutomaton.getBytes(in, in.getInt()), StandardCharsets.UTF_8);
+        }
+        int[] typeStarts = SignatureAutomaton.getInts(in, typeCount + 1);
+        SignatureAutomaton.checkStarts(typeStarts, count, "types");
+        int[] signatureTypes = SignatureAutomaton.getInts(in, count);
+        for (int type = 0; type < typeCount; type++) {
+            for (int id = typeStarts[type]; id < typeStarts[type + 1]; id++) {
+                if (signatureTypes[id] != type) {
+                    throw new IllegalArgumentException("Type de signature incohérent: " + id);
+                }
+            }
+        }
+        int[] flags = SignatureAutomaton.getInts(in, count);
+        for (int flag : flags) {
+            if ((flag & ~PATTERN_FLAGS) != 0) {
+                throw new IllegalArgumentException("Options d'expression invalides: " + flag);
+            }
+        }
+        byte[] stageTwo = SignatureAutomaton.getBytes(in, count);
+        int[] sourceStarts = SignatureAutomaton.getInts(in, count + 1);
+        if (sourceStarts[count] < 0 || sourceStarts[count] > in.remaining()) {
+            throw new IllegalArgumentException("Longueur des expressions invalide");
+        }
+        SignatureAutomaton.checkStarts(sourceStarts, sourceStarts[count], "expressions");
+        byte[] sourceBytes = SignatureAutomaton.getBytes(in, sourceStarts[count]);
+        int[] unfilteredRegexes = SignatureAutomaton.getInts(in, in.getInt());
+        SignatureAutomaton.checkRange(unfilteredRegexes, 0, count, "expressions sans filtre");
+        for (int i = 0; i < unfilteredRegexes.length; i++) {
+            if ((i > 0 && unfilteredRegexes[i] <= unfilteredRegexes[i - 1]) || stageTwo[unfilteredRegexes[i]] == 0) {
+                throw new IllegalArgumentException("Expressions sans filtre incohérentes");
+            }
+        }
+        SignatureAutomaton automaton = SignatureAutomaton.read(in, count);
+
+        CompiledSignatures compiled = new CompiledSignatures(types, typeStarts, signatureTypes, sourceBytes,
+                sourceStarts, flags, stageTwo, unfilteredRegexes, automaton);
+
+        // Les expressions doivent être celles que la compilation aurait classées ainsi :
+        // une expression invalide est écartée ici plutôt qu'à sa première évaluation
+        for (int id = 0; id < count; id++) {
+            if (stageTwo[id] != 0) {
+                compiled.patterns.set(id, Pattern.compile(compiled.source(id), flags[id]));
+            } else if (flags[id] != Pattern.CASE_INSENSITIVE || literalBody(compiled.source(id)) == null) {
+                throw new IllegalArgumentException("Signature littérale invalide: " + id);
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * Extrait le littéral d'une expression de la forme ".*littéral.*"
+     * @return le littéral, ou null si l'expression n'a pas cette forme
+     */
+    static String literalBody(String regex) {
+        if (regex.length() < 5 || !regex.startsWith(".*") || !regex.endsWith(".*")) {
+            return null;
+        }
+
+        StringBuilder literal = new StringBuilder();
+        String body = regex.substring(2, regex.length() - 2);
+        for (int i = 0; i < body.length(); i++) {
+            char c = body.charAt(i);
+            if (c == '\\') {
+                if (i + 1 >= body.length() || Character.isLetterOrDigit(body.charAt(i + 1))) {
+                    return null; // Classe (\s, \d...) ou séquence spéciale
+                }
+                c = body.charAt(++i);
+            } else if (".[]{}()*+?^$|".indexOf(c) >= 0) {
+                return null;
+            }
+            if (c > 0xFF) {
+                return null;
+            }
+            literal.append(c);
+        }
+        return literal.length() > 0 ? literal.toString() : null;
+    }
+
+    /**
+     * Extrait le plus long littéral que toute correspondance de l'expression doit contenir.
+     * L'analyse est volontairement prudente : une alternative au premier niveau, une
+     * option en ligne qui change la correspondance des littéraux ((?x), (?u), (?U)) ou
+     * une construction non reconnue désactive le filtre.
+     * @return le littéral, ou null si aucun filtre sûr n'a été trouvé
+     */
+    static String requiredLiteral(String regex) {
+        String best = null;
+        StringBuilder run = new StringBuilder();
+        int depth = 0;
+
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+
+            if (c == '\\') {
+                if (i + 1 >= regex.length()) {
+                    return null;
+                }
+                char escaped = regex.charAt(++i);
+                if (escaped == 'Q') {
+                    return null;
+                }
+                if (Character.isLetterOrDigit(escaped) || escaped > 0xFF) {
+                    // Classe, ancre ou séquence à opérande (\x41, \0101, \cA, \k<nom>...) :
+                    // le littéral s'arrête, et l'opérande n'en fait pas partie
+                    i = skipEscapeOperand(regex, i);
+                    if (i < 0) {
+                        return null;
+                    }
+                    if (depth == 0) {
+                        best = longest(best, run);
+                        run.setLength(0);
+                    }
+                } else if (depth == 0) {
+                    run.append(escaped);
+                }
+                continue;
+            }
+
+            switch (c) {
+                case '(':
+                    if (changesLiteralMatching(regex, i)) {
+                        return null;
+                    }
+                    depth++;
+                    best = longest(best, run);
+                    run.setLength(0);
+                    break;
+                case ')':
+                    depth--;
+                    break;
+                case '|':
+                    if (depth == 0) {
+                        return null;
+                    }
+                    break;
+                case '[':
+                    // Classe de caractères : ignorée jusqu'au crochet fermant
+                    i = skipCharacterClass(regex, i);
+                    if (i < 0) {
+                        return null;
+                    }
+                    if (depth == 0) {
+                        best = longest(best, run);
+                        run.setLength(0);
+                    }
+                    break;
+                case '*':
+                case '?':
+                case '{':
+                    // Le caractère précédent devient facultatif
+                    if (depth == 0 && run.length() > 0 && !previousClosesGroup(regex, i)) {
+                        run.setLength(run.length() - 1);
+                    }
+                    if (depth == 0) {
+                        best = longest(best, run);
+                        run.setLength(0);
+                    }
+                    if (c == '{') {
+                        int end = regex.indexOf('}', i);
+                        if (end < 0) {
+                            return null;
+                        }
+                        i = end;
+                    }
+                    break;
+                case '+':
+                case '.':
+                case '^':
+                case '$':
+                    if (depth == 0) {
+                        best = longest(best, run);
+                        run.setLength(0);
+                    }
+                    break;
+                default:
+                    if (depth == 0) {
+                        if (c > 0xFF) {
+                            best = longest(best, run);
+                            run.setLength(0);
+                        } else {
+                            run.append(c);
+                        }
+                    }
+            }
+        }
+
+        best = longest(best, run);
+        return best != null && best.length() >= MIN_FILTER_LENGTH ? best : null;
+    }
+
+    /**
+     * Retourne la position du dernier caractère d'une séquence d'échappement
+     * @param index la position de la lettre ou du chiffre qui suit la barre oblique inverse
+     * @return la position, ou -1 si la séquence est incomplète
+     */
+    private static int skipEscapeOperand(String regex, int index) {
+        int end;
+        switch (regex.charAt(index)) {
+            case 'x':
+                end = index + 1 < regex.length() && regex.charAt(index + 1) == '{' ? regex.indexOf('}', index) : index + 2;
+                break;
+            case 'p':
+            case 'P':
+                end = index + 1 < regex.length() && regex.charAt(index + 1) == '{' ? regex.indexOf('}', index) : index + 1;
+                break;
+            case 'u':
+                end = index + 4;
+                break;
+            case 'c':
+                end = index + 1;
+                break;
+            case 'k':
+                end = regex.indexOf('>', index);
+                break;
+            case 'N':
+                end = regex.indexOf('}', index);
+                break;
+            case '0':
+                // Jusqu'à trois chiffres octaux
+                end = index;
+                while (end - index < 3 && end + 1 < regex.length()
+                        && regex.charAt(end + 1) >= '0' && regex.charAt(end + 1) <= '7') {
+                    end++;
+                }
+                break;
+            default:
+                // Référence arrière (\1, \12...) : tous les chiffres qui suivent
+                end = index;
+                if (Character.isDigit(regex.charAt(index))) {
+                    while (end + 1 < regex.length() && Character.isDigit(regex.charAt(end + 1))) {
+                        end++;
+                    }
+                }
+        }
+        return end >= regex.length() ? -1 : end;
+    }
+
+    /**
+     * Indique si la parenthèse ouvre une option en ligne (?x), (?u) ou (?U), qui change
+     * la correspondance des littéraux qui suivent
+     */
+    private static boolean changesLiteralMatching(String regex, int index) {
+        if (index + 1 >= regex.length() || regex.charAt(index + 1) != '?') {
+            return false;
+        }
+        for (int i = index + 2; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == 'x' || c == 'u' || c == 'U') {
+                return true;
+            }
+            if (!Character.isLetter(c) && c != '-') {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static boolean previousClosesGroup(String regex, int index) {
+        char previous = regex.charAt(index - 1);
+        return (previous == ')' || previous == ']') && (index < 2 || regex.charAt(index - 2) != '\\');
+    }
+
+    private static int skipCharacterClass(String regex, int start) {
+        int i = start + 1;
+        if (i < regex.length() && regex.charAt(i) == '^') {
+            i++;
+        }
+        if (i < regex.length() && regex.charAt(i) == ']') {
+            i++;
+        }
+        int nested = 0;
+        for (; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                nested++;
+            } else if (c == ']') {
+                if (nested == 0) {
+                    return i;
+                }
+                nested--;
+            }
+        }
+        return -1;
+    }
+
+    private static String longest(String best, StringBuilder run) {
+        if (run.length() > 0 && (best == null || run.length() > best.length())) {
+            return run.toString();
+        }
+        return best;
+    }
+
+    /**
+     * État d'un parcours, réutilisé par thread : meilleur littéral trouvé et
+     * expressions dont le filtre a été trouvé (sans doublon)
+     */
+    private static class Scan implements SignatureAutomaton.MatchHandler {
+        private final int[] candidates;
+        private final int[] marks;
+        private int epoch;
+        private int candidateCount;
+        private int bestLiteral;
+        private int from;
+        private int to;
+        private final byte[] stageTwo;
+        private final Latin1Sequence bytes = new Latin1Sequence();
+        private int sequence;
+
+        Scan(byte[] stageTwo) {
+            this.stageTwo = stageTwo;
+            this.candidates = new int[stageTwo.length];
+            this.marks = new int[stageTwo.length];
+        }
+
+        void reset(int from, int to) {
+            this.from = from;
+            this.to = to;
+            this.bestLiteral = to;
+            this.candidateCount = 0;
+            if (++epoch == 0) {
+                Arrays.fill(marks, 0);
+                epoch = 1;
+            }
+        }
+
+        /**
+         * @return true si le parcours courant doit être chronométré
+         */
+        boolean sample() {
+            return (++sequence & ((1 << SCAN_SAMPLE_SHIFT) - 1)) == 0;
+        }
+
+        void addCandidate(int id) {
+            if (marks[id] != epoch) {
+                marks[id] = epoch;
+                candidates[candidateCount++] = id;
+            }
+        }
+
+        @Override
+        public void onMatch(int id) {
+            if (id < from || id >= to) {
+                return;
+            }
+            if (stageTwo[id] == 0) {
+                if (id < bestLiteral) {
+                    bestLiteral = id;
+                }
+            } else {
+                addCandidate(id);
+            }
+        }
+    }
+
+    /**
+     * Profil d'une signature : évaluations, correspondances retenues et temps cumulé
+     */
+    public static class RuleCost {
+        private final String attackType;
+        private final String source;
+        private final boolean regex;
+        private final long evaluations;
+        private final long matches;
+        private final long totalNanos;
+
+        RuleCost(String attackType, String source, boolean regex, long evaluations, long matches, long totalNanos) {
+            this.attackType = attackType;
+            this.source = source;
+            this.regex = regex;
+            this.evaluations = evaluations;
+            this.matches = matches;
+            this.totalNanos = totalNanos;
+        }
+
+        public String getAttackType() { return attackType; }
+        public String getSource() { return source; }
+        public long getEvaluations() { return evaluations; }
+        public long getMatches() { return matches; }
+        public long getTotalNanos() { return totalNanos; }
+
+        /**
+         * @return true pour une expression du second étage, false pour un littéral de l'automate
+         */
+        public boolean isRegex() { return regex; }
+
+        /**
+         * @return le temps moyen d'une évaluation (en nanosecondes)
+         */
+        public long getAverageNanos() {
+            return evaluations > 0 ? totalNanos / evaluations : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s : %d évaluations, %d correspondances, %.3f ms (%d ns en moyenne)",
+                    attackType, source, evaluations, matches, totalNanos / 1e6, getAverageNanos());
+        }
+    }
+
+    /**
+     * Vue CharSequence sur des octets Latin-1, sans copie.
+     * La vue principale est réutilisée ; seules les sous-séquences demandées par
+     * le moteur d'expressions sont allouées.
+     */
+    private static class Latin1Sequence implements CharSequence {
+        private ByteBuffer buffer;
+        private int start;
+        private int length;
+
+        Latin1Sequence wrap(ByteBuffer buffer) {
+            return wrap(buffer, buffer != null ? buffer.position() : 0, buffer != null ? buffer.remaining() : 0);
+        }
+
+        private Latin1Sequence wrap(ByteBuffer buffer, int start, int length) {
+            this.buffer = buffer;
+            this.start = start;
+            this.length = length;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("index " + index + ", longueur " + length);
+            }
+            return (char) (buffer.get(start + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            if (from < 0 || to > length || from > to) {
+                throw new IndexOutOfBoundsException("intervalle " + from + "-" + to + ", longueur " + length);
+            }
+            return new Latin1Sequence().wrap(buffer, start + from, to - from);
+        }
+
+        @Override
+        public String toString() {
+            char[] chars = new char[length];
+            for (int i = 0; i < length; i++) {
+                chars[i] = charAt(i);
+            }
+            return new String(chars);
+        }
+    }
+}
@@ -1,14 +1,17 @@
 package main.java.com.idsproject.detection;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.Map;
-import java.net.InetAddress;
 
+import main.java.com.idsproject.log.EventLog;
+import main.java.com.idsproject.metrics.LatencyHistogram;
+import main.java.com.idsproject.metrics.MetricsRegistry;
+import main.java.com.idsproject.network.HostTable;
 import main.java.com.idsproject.network.NetworkMonitor;
 import main.java.com.idsproject.network.PacketAnalyzer;
-import main.java.com.idsproject.rl.QLearning;
+import main.java.com.idsproject.rl.ExperienceReplayTrainer;
+import main.java.com.idsproject.rl.Learner;
 import main.java.com.idsproject.rl.State;
 import main.java.com.idsproject.rl.Action;
 
@@ -16,34 +19,84 @@ import main.java.com.idsproject.rl.Action;
  * Classe principale du Système de Détection d'Intrusion (IDS).
  * Utilise l'apprentissage par renforcement pour améliorer ses décisions au fil du temps.
  */
-public class IDS implements NetworkMonitor.PacketListener {
+public class IDS implements NetworkMonitor.PacketListener, NetworkMonitor.BatchPacketListener {
+
+    private static final double SIGNATURE_CONFIDENCE = 0.9; // Confiance d'une signature trouvée dans la charge utile
+    
+    // Noms des métriques (voir getMetrics)
+    public static final String PACKETS_ANALYZED = "ids.packets";
+    public static final String ALERTS_GENERATED = "ids.alerts";
+    public static final String FALSE_POSITIVES = "ids.false_positives";
+    public static final String FALSE_NEGATIVES = "ids.false_negatives";
+    public static final String ANALYSIS_LATENCY = "ids.latency.analysis";
+    public static final String SELECTION_LATENCY = "ids.latency.selection";
+    public static final String UPDATE_LATENCY = "ids.latency.update";
+    public static final String ALERT_LATENCY = "ids.latency.alert";
 
     private final NetworkMonitor networkMonitor;
     private final PacketAnalyzer packetAnalyzer;
-    private final QLearning qLearning;
+    private final ExperienceReplayTrainer trainer;
+    private final EventLog eventLog;
     private final List<AlertListener> alertListeners;
-    private final Map<InetAddress, HostState> hostStates;
     
-    // Compteurs pour les statistiques
-    private int totalPacketsAnalyzed = 0;
-    private int alertsGenerated = 0;
-    private int falsePositives = 0;
-    private int falseNegatives = 0;
+    // L'état de chaque hôte est stocké dans la table des hôtes de l'analyseur,
+    // dans la zone d'extension qui suit les statistiques de l'analyse
+    private final ThreadLocal<HostState> hostStateViews = ThreadLocal.withInitial(HostState::new);
+    
+    // Regroupement des lots par hôte source, réutilisé d'un lot à l'autre
+    private final ThreadLocal<PacketAnalyzer.SourceGroups> batchGroups =
+            ThreadLocal.withInitial(PacketAnalyzer.SourceGroups::new);
+    
+    // Métriques : compteurs répartis entre threads et latences de chaque étape.
+    // Les alertes et les erreurs sont comptées après le paquet (voir MetricsRegistry.snapshot)
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final MetricsRegistry.Counter totalPacketsAnalyzed = metrics.counter(PACKETS_ANALYZED);
+    private final MetricsRegistry.Counter alertsGenerated = metrics.counter(ALERTS_GENERATED);
+    private final MetricsRegistry.Counter falsePositives = metrics.counter(FALSE_POSITIVES);
+    private final MetricsRegistry.Counter falseNegatives = metrics.counter(FALSE_NEGATIVES);
+    private final LatencyHistogram analysisLatency = metrics.histogram(ANALYSIS_LATENCY);
+    private final LatencyHistogram selectionLatency = metrics.histogram(SELECTION_LATENCY);
+    private final LatencyHistogram updateLatency = metrics.histogram(UPDATE_LATENCY);
+    private final LatencyHistogram alertLatency = metrics.histogram(ALERT_LATENCY);
     
     /**
      * Constructeur de l'IDS
      * @param networkMonitor le moniteur réseau à utiliser
-     * @param qLearning l'algorithme d'apprentissage par renforcement
+     * @param learner l'algorithme d'apprentissage par renforcement (QLearning ou LinearQLearning)
      */
-    public IDS(NetworkMonitor networkMonitor, QLearning qLearning) {
+    public IDS(NetworkMonitor networkMonitor, Learner learner) {
+        this(networkMonitor, learner, PacketAnalyzer.DEFAULT_HOST_CAPACITY, HostTable.EvictionPolicy.EVICT_OLDEST);
+    }
+    
+    /**
+     * Constructeur de l'IDS avec une table des hôtes dimensionnée
+     * @param networkMonitor le moniteur réseau à utiliser
+     * @param learner l'algorithme d'apprentissage par renforcement (QLearning ou LinearQLearning)
+     * @param hostCapacity le nombre d'hôtes suivis au maximum
+     * @param evictionPolicy la politique appliquée lorsque la table des hôtes est pleine
+     */
+    public IDS(NetworkMonitor networkMonitor, Learner learner, int hostCapacity, HostTable.EvictionPolicy evictionPolicy) {
         this.networkMonitor = networkMonitor;
-        this.packetAnalyzer = new PacketAnalyzer();
-        this.qLearning = qLearning;
+        this.packetAnalyzer = new PacketAnalyzer(hostCapacity, evictionPolicy, HostState.SIZE);
         this.alertListeners = new ArrayList<>();
-        this.hostStates = new ConcurrentHashMap<>();
         
-        // S'enregistre comme écouteur de paquets
-        networkMonitor.addPacketListener(this);
+        // L'apprentissage est fait en arrière-plan : la décision ne lit que la politique publiée
+        this.trainer = new ExperienceReplayTrainer(learner);
+        trainer.start();
+        
+        // Les événements sont formatés et écrits par le thread du journal
+        this.eventLog = new EventLog();
+        eventLog.start();
+        
+        // Jauges : tailles des tables et profondeurs des files, lues à la photographie
+        metrics.gauge("ids.hosts", packetAnalyzer::getTrackedHostCount);
+        metrics.gauge("monitor.ring.depth", networkMonitor::getRingBufferDepth);
+        metrics.gauge("rl.queue.depth", trainer::getDepth);
+        metrics.gauge("rl.dropped", trainer::getDroppedCount);
+        metrics.gauge("log.dropped", eventLog::getDroppedCount);
+        
+        // S'enregistre comme écouteur de paquets, par lots
+        networkMonitor.addBatchPacketListener(this);
     }
     
     /**
@@ -52,33 +105,151 @@ public class IDS implements NetworkMonitor.PacketListener {
      */
     @Override
     public void onPacketReceived(NetworkMonitor.NetworkPacket packet) {
-        totalPacketsAnalyzed++;
+        long start = System.nanoTime();
+        
+        // La recherche de signatures ne dépend pas de l'hôte : elle a lieu avant le verrouillage
+        String signature = scanPayload(packet);
         
-        // Analyse le paquet
-        PacketAnalyzer.AnalysisResult result = packetAnalyzer.analyzePacket(packet);
+        // Analyse le paquet et met à jour l'état de l'hôte, sous un seul verrouillage
+        List<State> states = new ArrayList<>(1);
+        PacketAnalyzer.AnalysisResult result = packetAnalyzer.analyzePacket(packet,
+                (analyzedPacket, analysis, buffer, offset) -> updateHostState(analyzedPacket, analysis, buffer, offset, signature, states));
+        long analyzed = System.nanoTime();
+        analysisLatency.record(analyzed - start);
         
-        // Récupère ou crée l'état de l'hôte
-        HostState hostState = hostStates.computeIfAbsent(
-                packet.getSourceAddress(), k -> new HostState());
+        processPacket(packet, result, states.get(0), analyzed);
+    }
+    
+    /**
+     * Méthode appelée lorsqu'un lot de paquets est reçu.
+     * Les paquets sont traités par groupe d'hôte source : un seul verrouillage
+     * de l'emplacement de l'hôte par groupe, pour l'analyse et l'état d'apprentissage,
+     * et un seul nettoyage par lot. Les charges utiles d'un groupe sont analysées
+     * avant le verrouillage.
+     * @param batch les paquets reçus
+     */
+    @Override
+    public void onPacketBatch(List<NetworkMonitor.NetworkPacket> batch) {
+        PacketAnalyzer.SourceGroups groups = batchGroups.get().group(batch);
+        List<PacketAnalyzer.AnalysisResult> results = new ArrayList<>();
+        List<State> states = new ArrayList<>();
+        List<String> signatures = new ArrayList<>();
+        // L'extension est appelée une fois par paquet, dans l'ordre du groupe :
+        // le nombre d'états déjà reçus est la position du paquet dans le groupe
+        PacketAnalyzer.HostExtension extension = (packet, result, buffer, offset) ->
+                updateHostState(packet, result, buffer, offset, signatures.get(states.size()), states);
+        
+        for (int group = 0; group < groups.groupCount(); group++) {
+            long start = System.nanoTime();
+            states.clear();
+            signatures.clear();
+            for (int i = groups.groupStart(group); i < groups.groupEnd(group); i++) {
+                signatures.add(scanPayload(batch.get(groups.packetIndex(i))));
+            }
+            packetAnalyzer.analyzeHostGroup(batch, groups, group, extension, results);
+            
+            // Le groupe est analysé d'un bloc : chaque paquet compte pour la latence moyenne
+            long now = System.nanoTime();
+            analysisLatency.record((now - start) / results.size(), results.size());
+            
+            int first = groups.groupStart(group);
+            for (int i = 0; i < results.size(); i++) {
+                now = processPacket(batch.get(groups.packetIndex(first + i)), results.get(i), states.get(i), now);
+            }
+        }
+        
+        packetAnalyzer.cleanupOldEntries();
+    }
+    
+    /**
+     * Recherche les signatures d'attaques dans la charge utile capturée, directement
+     * sur ses octets. Appelée hors de tout verrou : la recherche ne dépend pas de l'hôte.
+     * @param packet le paquet reçu
+     * @return le type d'attaque de la signature trouvée, ou null
+     */
+    private String scanPayload(NetworkMonitor.NetworkPacket packet) {
+        return packet.getPayload() == null ? null : AttackSignature.detectAttackType(packet.getPayload());
+    }
+    
+    /**
+     * Intègre au résultat une signature trouvée dans la charge utile.
+     * Une attaque détectée par l'analyse du trafic reste prioritaire.
+     * @param packet le paquet analysé
+     * @param result le résultat de l'analyse du trafic
+     * @param attackType le type d'attaque trouvé par scanPayload, ou null
+     * @return le résultat, remplacé si une signature a été trouvée
+     */
+    private PacketAnalyzer.AnalysisResult checkPayload(NetworkMonitor.NetworkPacket packet,
+            PacketAnalyzer.AnalysisResult result, String attackType) {
+        if (result.isAttackDetected() || attackType == null) {
+            return result;
+        }
+        
+        PacketAnalyzer.AnalysisResult signatureResult = new PacketAnalyzer.AnalysisResult();
+        signatureResult.setAttackDetected(true);
+        signatureResult.setAttackType(attackType);
+        signatureResult.setConfidence(SIGNATURE_CONFIDENCE);
+        signatureResult.setDescription("Signature " + attackType + " détectée dans la charge utile ("
+                + packet.getPayload().remaining() + " octets)");
+        signatureResult.setSource(packet);
+        return signatureResult;
+    }
+    
+    /**
+     * Met à jour l'état d'un hôte avec un paquet analysé. Appelée par l'analyseur sous
+     * le verrou de l'emplacement de l'hôte (voir PacketAnalyzer.HostExtension)
+     * @param packet le paquet analysé
+     * @param result le résultat de l'analyse du trafic
+     * @param buffer le tampon de la zone d'extension de l'hôte
+     * @param offset la position de la zone d'extension
+     * @param signature le type d'attaque trouvé dans la charge utile avant le verrouillage, ou null
+     * @param states reçoit l'état pour l'apprentissage par renforcement après le paquet
+     * @return le résultat, complété par la recherche de signatures dans la charge utile
+     */
+    private PacketAnalyzer.AnalysisResult updateHostState(NetworkMonitor.NetworkPacket packet,
+            PacketAnalyzer.AnalysisResult result, ByteBuffer buffer, int offset, String signature, List<State> states) {
+        result = checkPayload(packet, result, signature);
+        
+        HostState hostState = hostStateViews.get();
+        hostState.wrap(buffer, offset);
         hostState.updateFeatures(packet, result);
         
-        // Convertit l'état de l'hôte en état pour l'apprent
         // Convertit l'état de l'hôte en état pour l'apprentissage par renforcement
-        State state = hostState.toRLState();
+        states.add(hostState.toRLState());
+        return result;
+    }
+    
+    /**
+     * Décide et apprend à partir du résultat de l'analyse d'un paquet
+     * @param packet le paquet analysé
+     * @param result le résultat de l'analyse
+     * @param state l'état de l'hôte source pour l'apprentissage
+     * @param start l'instant (System.nanoTime) où la décision commence
+     * @return l'instant où le traitement du paquet se termine, début du suivant :
+     *         une seule lecture de l'horloge par frontière d'étape
+     */
+    private long processPacket(NetworkMonitor.NetworkPacket packet, PacketAnalyzer.AnalysisResult result,
+                               State state, long start) {
+        totalPacketsAnalyzed.increment();
         
-        // Détermine l'action à entreprendre en fonction de l'état actuel
-        Action action = qLearning.selectAction(state);
+        // Détermine l'action à entreprendre selon la dernière politique publiée
+        Action action = trainer.getPolicy().selectAction(state);
+        long selected = System.nanoTime();
+        selectionLatency.record(selected - start);
         
         // Exécute l'action sélectionnée
         double reward = executeAction(action, result, packet);
         
-        // Met à jour le modèle d'apprentissage par renforcement
-        qLearning.update(state, action, reward, state);  // Même état car l'action n'a pas modifié l'état
+        // Journalise le traitement du paquet (niveau DEBUG, échantillonné)
+        eventLog.logPacket(packet, result, action, reward);
         
-        // Affiche des informations sur le traitement du paquet
-        System.out.println("Paquet analysé: " + packet);
-        System.out.println("Résultat: " + result);
-        System.out.println("Action: " + action + ", Récompense: " + reward);
+        // Transmet l'expérience à l'entraînement en arrière-plan (jamais bloquant) :
+        // la latence de mise à jour est celle que paie le traitement du paquet
+        long executed = System.nanoTime();
+        trainer.record(state, action, reward, state);  // Même état car l'action n'a pas modifié l'état
+        long end = System.nanoTime();
+        updateLatency.record(end - executed);
+        return end;
     }
     
     /**
@@ -89,26 +260,21 @@ public class IDS implements NetworkMonitor.PacketListener {
      * @return la récompense associée à l'action entreprise
      */
     private double executeAction(Action action, PacketAnalyzer.AnalysisResult result, NetworkMonitor.NetworkPacket packet) {
-        double reward = 0.0;
-        
         switch (action) {
             case BLOCK:
                 // Bloquer l'adresse IP source (simulé pour ce projet)
                 if (result.isAttackDetected() && result.getConfidence() > 0.7) {
                     // Bonne décision de blocage
-                    System.out.println("ACTION: Blocage de " + packet.getSourceAddress() + " (haute confiance dans la détection d'attaque)");
+                    eventLog.logHost(EventLog.Event.BLOCK, packet);
                     generateAlert(result, packet, "Blocage");
-                    reward = 1.0;
                 } else if (result.isAttackDetected()) {
                     // Décision de blocage correcte mais avec une confiance modérée
-                    System.out.println("ACTION: Blocage de " + packet.getSourceAddress() + " (confiance modérée dans la détection d'attaque)");
+                    eventLog.logHost(EventLog.Event.BLOCK_MODERATE, packet);
                     generateAlert(result, packet, "Blocage");
-                    reward = 0.5;
                 } else {
                     // Faux positif - pénalité
-                    System.out.println("ACTION: Blocage incorrect de " + packet.getSourceAddress() + " (faux positif)");
-                    falsePositives++;
-                    reward = -1.0;
+                    eventLog.logHost(EventLog.Event.BLOCK_FALSE_POSITIVE, packet);
+                    falsePositives.increment();
                 }
                 break;
                 
@@ -116,35 +282,59 @@ public class IDS implements NetworkMonitor.PacketListener {
                 // Surveiller l'adresse IP source
                 if (result.isAttackDetected() && result.getConfidence() > 0.3) {
                     // Bonne décision de surveillance pour une attaque potentielle
-                    System.out.println("ACTION: Surveillance accrue de " + packet.getSourceAddress());
+                    eventLog.logHost(EventLog.Event.MONITOR, packet);
                     generateAlert(result, packet, "Surveillance");
-                    reward = 0.3;
-                } else if (!result.isAttackDetected()) {
-                    // Bonne décision de surveillance pour un trafic normal
-                    reward = 0.1;
-                } else {
+                } else if (result.isAttackDetected()) {
                     // Attaque avec haute confiance qui aurait dû être bloquée
-                    System.out.println("ACTION: Surveillance insuffisante pour une attaque évidente de " + packet.getSourceAddress());
-                    falseNegatives++;
-                    reward = -0.5;
+                    eventLog.logHost(EventLog.Event.MONITOR_INSUFFICIENT, packet);
+                    falseNegatives.increment();
                 }
                 break;
                 
             case ALLOW:
                 // Autoriser le trafic
-                if (!result.isAttackDetected()) {
-                    // Bonne décision d'autorisation
-                    reward = 0.2;
-                } else {
+                if (result.isAttackDetected()) {
                     // Mauvaise décision d'autorisation (attaque non détectée)
-                    System.out.println("ACTION: Autorisation incorrecte de " + packet.getSourceAddress() + " (attaque non bloquée)");
-                    falseNegatives++;
-                    reward = -1.0;
+                    eventLog.logHost(EventLog.Event.ALLOW_MISSED, packet);
+                    falseNegatives.increment();
                 }
                 break;
         }
         
-        return reward;
+        return reward(action, result.isAttackDetected(), result.getConfidence());
+    }
+    
+    /**
+     * Récompense d'une action, selon qu'une attaque est avérée et avec quelle confiance.
+     * Utilisée en ligne avec le résultat de l'analyse, et hors ligne avec les étiquettes
+     * des flux (voir OfflineTrainer)
+     * @param action l'action entreprise
+     * @param attackDetected true si le trafic est une attaque
+     * @param confidence la confiance dans la détection (entre 0 et 1)
+     * @return la récompense associée à l'action
+     */
+    public static double reward(Action action, boolean attackDetected, double confidence) {
+        switch (action) {
+            case BLOCK:
+                if (attackDetected && confidence > 0.7) {
+                    return 1.0;   // Bonne décision de blocage
+                } else if (attackDetected) {
+                    return 0.5;   // Blocage correct, confiance modérée
+                }
+                return -1.0;      // Faux positif - pénalité
+                
+            case MONITOR:
+                if (attackDetected && confidence > 0.3) {
+                    return 0.3;   // Surveillance d'une attaque potentielle
+                } else if (!attackDetected) {
+                    return 0.1;   // Surveillance d'un trafic normal
+                }
+                return -0.5;      // Attaque évidente qui aurait dû être bloquée
+                
+            case ALLOW:
+            default:
+                return attackDetected ? -1.0 : 0.2;
+        }
     }
     
     /**
@@ -166,11 +356,13 @@ public class IDS implements NetworkMonitor.PacketListener {
         alert.setAction(action);
         
         // Notifie tous les écouteurs d'alertes
+        long start = System.nanoTime();
         for (AlertListener listener : alertListeners) {
             listener.onAlertGenerated(alert);
         }
+        alertLatency.record(System.nanoTime() - start);
         
-        alertsGenerated++;
+        alertsGenerated.increment();
     }
     
     /**
@@ -181,48 +373,83 @@ public class IDS implements NetworkMonitor.PacketListener {
         alertListeners.add(listener);
     }
     
+    /**
+     * @return l'entraînement en arrière-plan de la politique de décision
+     */
+    public ExperienceReplayTrainer getTrainer() {
+        return trainer;
+    }
+    
+    /**
+     * @return le journal des événements (niveau, échantillonnage)
+     */
+    public EventLog getEventLog() {
+        return eventLog;
+    }
+    
+    /**
+     * Métriques de l'IDS : compteurs (PACKETS_ANALYZED, ALERTS_GENERATED, FALSE_POSITIVES,
+     * FALSE_NEGATIVES), latences de chaque étape et jauges des tables et des files.
+     * Pour afficher plusieurs valeurs ensemble, lire une seule photographie (snapshot)
+     * @return le registre des métriques
+     */
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+    
     /**
      * Retourne le nombre total de paquets analysés
      * @return le nombre de paquets analysés
      */
-    public int getTotalPacketsAnalyzed() {
-        return totalPacketsAnalyzed;
+    public long getTotalPacketsAnalyzed() {
+        return totalPacketsAnalyzed.sum();
     }
     
     /**
      * Retourne le nombre d'alertes générées
      * @return le nombre d'alertes
      */
-    public int getAlertsGenerated() {
-        return alertsGenerated;
+    public long getAlertsGenerated() {
+        return alertsGenerated.sum();
     }
     
     /**
      * Retourne le nombre de faux positifs
      * @return le nombre de faux positifs
      */
-    public int getFalsePositives() {
-        return falsePositives;
+    public long getFalsePositives() {
+        return falsePositives.sum();
     }
     
     /**
      * Retourne le nombre de faux négatifs
      * @return le nombre de faux négatifs
      */
-    public int getFalseNegatives() {
-        return falseNegatives;
+    public long getFalseNegatives() {
+        return falseNegatives.sum();
     }
     
     /**
-     * Classe interne représentant l'état d'un hôte pour l'apprentissage par renforcement
+     * Vue sur l'état d'un hôte pour l'apprentissage par renforcement, stocké dans
+     * la zone d'extension de son emplacement de la table des hôtes (initialisée à zéro
+     * à l'insertion). La vue n'est utilisée que sous le verrou de l'emplacement.
      */
-    private static class HostState {
-        private int connectionCount = 0;
-        private int uniquePorts = 0;
-        private long bandwidth = 0;
-        private double lastConfidence = 0.0;
-        private String lastAttackType = "None";
-        private int consecutiveSuspiciousPackets = 0;
+    static class HostState {
+        private static final int CONNECTION_COUNT_OFFSET = 0;
+        private static final int UNIQUE_PORTS_OFFSET = 4;
+        private static final int BANDWIDTH_OFFSET = 8;
+        private static final int LAST_CONFIDENCE_OFFSET = 16;
+        private static final int ATTACK_TYPE_OFFSET = 24;
+        private static final int CONSECUTIVE_OFFSET = 28;
+        static final int SIZE = 32;
+        
+        private ByteBuffer buffer;
+        private int base;
+        
+        void wrap(ByteBuffer buffer, int base) {
+            this.buffer = buffer;
+            this.base = base;
+        }
         
         /**
          * Met à jour les caractéristiques de l'état en fonction du paquet et du résultat de l'analyse
@@ -230,16 +457,17 @@ public class IDS implements NetworkMonitor.PacketListener {
          * @param result le résultat de l'analyse
          */
         public void updateFeatures(NetworkMonitor.NetworkPacket packet, PacketAnalyzer.AnalysisResult result) {
-            connectionCount++;
-            uniquePorts = Math.max(uniquePorts, packet.getDestinationPort());
-            bandwidth += packet.getSize();
-            lastConfidence = result.getConfidence();
-            lastAttackType = result.getAttackType();
+            buffer.putInt(base + CONNECTION_COUNT_OFFSET, buffer.getInt(base + CONNECTION_COUNT_OFFSET) + 1);
+            buffer.putInt(base + UNIQUE_PORTS_OFFSET,
+                    Math.max(buffer.getInt(base + UNIQUE_PORTS_OFFSET), packet.getDestinationPort()));
+            buffer.putLong(base + BANDWIDTH_OFFSET, buffer.getLong(base + BANDWIDTH_OFFSET) + packet.getSize());
+            buffer.putDouble(base + LAST_CONFIDENCE_OFFSET, result.getConfidence());
+            buffer.putInt(base + ATTACK_TYPE_OFFSET, attackTypeIndex(result.getAttackType()));
             
             if (result.isAttackDetected()) {
-                consecutiveSuspiciousPackets++;
+                buffer.putInt(base + CONSECUTIVE_OFFSET, buffer.getInt(base + CONSECUTIVE_OFFSET) + 1);
             } else {
-                consecutiveSuspiciousPackets = 0;
+                buffer.putInt(base + CONSECUTIVE_OFFSET, 0);
             }
         }
         
@@ -251,28 +479,38 @@ public class IDS implements NetworkMonitor.PacketListener {
             State state = new State();
             
             // Normalisation des caractéristiques
-            state.setConnectionRate(Math.min(1.0, connectionCount / 100.0));
-            state.setPortDiversity(Math.min(1.0, uniquePorts / 1000.0));
-            state.setBandwidth(Math.min(1.0, bandwidth / 10000000.0)); // 10 MB/s max
-            state.setAttackProbability(lastConfidence);
-            state.setConsecutiveAlerts(Math.min(1.0, consecutiveSuspiciousPackets / 10.0));
+            state.setConnectionRate(Math.min(1.0, buffer.getInt(base + CONNECTION_COUNT_OFFSET) / 100.0));
+            state.setPortDiversity(Math.min(1.0, buffer.getInt(base + UNIQUE_PORTS_OFFSET) / 1000.0));
+            state.setBandwidth(Math.min(1.0, buffer.getLong(base + BANDWIDTH_OFFSET) / 10000000.0)); // 10 MB/s max
+            state.setAttackProbability(buffer.getDouble(base + LAST_CONFIDENCE_OFFSET));
+            state.setConsecutiveAlerts(Math.min(1.0, buffer.getInt(base + CONSECUTIVE_OFFSET) / 10.0));
+            state.setAttackTypeIndex(buffer.getInt(base + ATTACK_TYPE_OFFSET));
             
-            // Encodage one-hot du type d'attaque
-            switch (lastAttackType) {
+            return state;
+        }
+        
+        /**
+         * Encodage du type d'attaque
+         */
+        private static int attackTypeIndex(String attackType) {
+            switch (attackType) {
                 case "DoS":
-                    state.setAttackTypeIndex(1);
-                    break;
+                    return 1;
                 case "PortScan":
-                    state.setAttackTypeIndex(2);
-                    break;
+                    return 2;
                 case "BandwidthAbuse":
-                    state.setAttackTypeIndex(3);
-                    break;
+                    return 3;
+                case "HorizontalScan":
+                    return 4;
+                case "DistributedDoS":
+                    return 5;
+                case "BruteForce":
+                    return 6;
+                case "SQLInjection":
+                    return 7;
                 default:
-                    state.setAttackTypeIndex(0); // None
+                    return 0; // None
             }
-            
-            return state;
         }
     }
     
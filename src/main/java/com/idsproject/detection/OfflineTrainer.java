@@ -0,0 +1,386 @@
+package main.java.com.idsproject.detection;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import main.java.com.idsproject.network.FlowReplaySource;
+import main.java.com.idsproject.network.HostTable;
+import main.java.com.idsproject.network.NetworkMonitor;
+import main.java.com.idsproject.network.PacketAnalyzer;
+import main.java.com.idsproject.rl.Action;
+import main.java.com.idsproject.rl.QLearning;
+import main.java.com.idsproject.rl.State;
+
+/**
+ * Entraînement hors ligne de la table Q sur des fichiers de flux CSV étiquetés
+ * (data/attack_patterns.csv, data/normal_traffic.csv ; voir FlowReplaySource).
+ *
+ * Les flux sont chargés en colonnes primitives puis répartis en partitions selon
+ * leur hôte source : tous les flux d'un hôte sont dans la même partition, dans
+ * l'ordre chronologique. Les partitions sont entraînées en parallèle dans un
+ * ForkJoinPool ; chacune rejoue ses flux à travers son propre PacketAnalyzer et
+ * calcule l'état de chaque hôte comme l'IDS (IDS.HostState), décide avec sa propre
+ * table Q, initialisée avec les valeurs de la table cible (reprise d'un apprentissage
+ * sauvegardé, voir LearnerStore), et reçoit la récompense de IDS.reward calculée d'après l'étiquette du flux
+ * (vérité terrain) plutôt que d'après la détection.
+ *
+ * Les tables des partitions sont fusionnées en moyenne pondérée par le nombre de
+ * visites de chaque paire état-action ; une paire jamais visitée garde la valeur de
+ * la table cible. La détection agrégée (attaques distribuées, balayages horizontaux)
+ * ne voit que les hôtes de sa partition.
+ */
+public class OfflineTrainer {
+
+    public static final int DEFAULT_EPOCHS = 3;
+
+    private static final int SHARDS_PER_THREAD = 4;
+    private static final int MIN_HOST_CAPACITY = 256;
+    private static final int INITIAL_ROWS = 1 << 16;
+    private static final int ROW_BITS = 31;
+    private static final int ACTION_COUNT = Action.values().length;
+
+    private final int parallelism;
+    private final int epochs;
+
+    // Flux chargés, en colonnes
+    private int rowCount;
+    private int[] sourceIps = new int[INITIAL_ROWS];
+    private int[] destinationIps = new int[INITIAL_ROWS];
+    private int[] sourcePorts = new int[INITIAL_ROWS];
+    private int[] destinationPorts = new int[INITIAL_ROWS];
+    private long[] timestamps = new long[INITIAL_ROWS];
+    private long[] sizes = new long[INITIAL_ROWS];
+    private boolean[] attacks = new boolean[INITIAL_ROWS];
+
+    /**
+     * Constructeur utilisant tous les processeurs disponibles
+     * @param epochs le nombre de passes sur les flux
+     */
+    public OfflineTrainer(int epochs) {
+        this(Runtime.getRuntime().availableProcessors(), epochs);
+    }
+
+    /**
+     * @param parallelism le nombre de threads d'entraînement
+     * @param epochs le nombre de passes sur les flux
+     */
+    public OfflineTrainer(int parallelism, int epochs) {
+        if (parallelism < 1 || epochs < 1) {
+            throw new IllegalArgumentException("Paramètres d'entraînement invalides: " + parallelism + " threads, " + epochs + " passes");
+        }
+        this.parallelism = parallelism;
+        this.epochs = epochs;
+    }
+
+    /**
+     * Charge un fichier de flux. Les lignes étiquetées d'un type d'attaque sont des
+     * attaques, les autres du trafic normal.
+     * @param file le fichier CSV de flux
+     * @return le nombre de lignes chargées (les flux IPv6, non pris en charge, sont ignorés)
+     * @throws IOException si le fichier est illisible
+     */
+    public long load(Path file) throws IOException {
+        // Les lignes sont copiées dans les colonnes à mesure qu'elles sont décodées
+        FlowReplaySource source = new FlowReplaySource(file, FlowReplaySource.ReplayMode.AS_FAST_AS_POSSIBLE, 1.0);
+        int loaded = rowCount;
+        source.replay(packet -> {
+            if (!packet.isIPv6()) {
+                add(packet);
+            }
+        });
+        return rowCount - loaded;
+    }
+
+    /**
+     * Ajoute un flux aux colonnes
+     */
+    private void add(NetworkMonitor.NetworkPacket packet) {
+        if (rowCount == sourceIps.length) {
+            int capacity = (int) Math.min(Integer.MAX_VALUE - 8, rowCount * 2L);
+            if (capacity == rowCount) {
+                throw new IllegalStateException("Trop de flux: " + rowCount);
+            }
+            sourceIps = Arrays.copyOf(sourceIps, capacity);
+            destinationIps = Arrays.copyOf(destinationIps, capacity);
+            sourcePorts = Arrays.copyOf(sourcePorts, capacity);
+            destinationPorts = Arrays.copyOf(destinationPorts, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+            attacks = Arrays.copyOf(attacks, capacity);
+        }
+
+        Object label = packet.getMetadata(FlowReplaySource.ATTACK_TYPE_METADATA);
+        sourceIps[rowCount] = packet.getSourceIPv4();
+        destinationIps[rowCount] = packet.getDestinationIPv4();
+        sourcePorts[rowCount] = packet.getSourcePort();
+        destinationPorts[rowCount] = packet.getDestinationPort();
+        timestamps[rowCount] = packet.getTimestamp();
+        sizes[rowCount] = packet.getSize();
+        attacks[rowCount] = label != null && !"normal".equalsIgnoreCase(label.toString());
+        rowCount++;
+    }
+
+    /**
+     * Entraîne la table Q sur tous les flux chargés
+     * @param target la table Q à mettre à jour (ses valeurs et ses paramètres
+     *               d'apprentissage sont repris par les tables des partitions)
+     * @return le bilan de l'entraînement
+     */
+    public Result train(QLearning target) {
+        long start = System.nanoTime();
+        int shardCount = Math.max(1, Math.min(parallelism * SHARDS_PER_THREAD, rowCount));
+        long[][] shards = partition(shardCount);
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        ShardModel merged;
+        try {
+            Flows flows = new Flows(sourceIps, destinationIps, sourcePorts, destinationPorts,
+                    timestamps, sizes, attacks, epochs, target.getQValues());
+            merged = pool.invoke(new ShardTask(flows, shards, 0, shardCount, target));
+        } finally {
+            pool.shutdown();
+        }
+
+        // Moyenne pondérée par les visites ; les paires jamais visitées sont conservées
+        double[] values = target.getQValues();
+        int visitedEntries = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (merged.visits[i] > 0) {
+                values[i] = merged.weightedSums[i] / merged.visits[i];
+                visitedEntries++;
+            }
+        }
+        target.setQValues(values);
+
+        long updates = 0;
+        for (long visits : merged.visits) {
+            updates += visits;
+        }
+        return new Result(rowCount, shardCount, epochs, updates, visitedEntries,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Répartit les lignes en partitions selon l'hôte source.
+     * Chaque partition est un tableau de clés (décalage d'horodatage, ligne) triable :
+     * le tri des clés donne les lignes de la partition dans l'ordre chronologique.
+     * Au-delà de 2^32 ms (49 jours) de flux, les horodatages sont comparés à la seconde,
+     * la résolution des fichiers CSV.
+     */
+    private long[][] partition(int shardCount) {
+        long minTimestamp = Long.MAX_VALUE;
+        long maxTimestamp = Long.MIN_VALUE;
+        int[] counts = new int[shardCount];
+        for (int row = 0; row < rowCount; row++) {
+            minTimestamp = Math.min(minTimestamp, timestamps[row]);
+            maxTimestamp = Math.max(maxTimestamp, timestamps[row]);
+            counts[shardOf(sourceIps[row], shardCount)]++;
+        }
+        long resolution = 1;
+        if (rowCount > 0 && maxTimestamp - minTimestamp >= 1L << (63 - ROW_BITS)) {
+            resolution = 1000;
+            if ((maxTimestamp - minTimestamp) / resolution >= 1L << (63 - ROW_BITS)) {
+                throw new IllegalStateException("Période couverte par les flux trop longue");
+            }
+        }
+
+        long[][] shards = new long[shardCount][];
+        for (int s = 0; s < shardCount; s++) {
+            shards[s] = new long[counts[s]];
+        }
+        int[] filled = new int[shardCount];
+        for (int row = 0; row < rowCount; row++) {
+            int shard = shardOf(sourceIps[row], shardCount);
+            shards[shard][filled[shard]++] = (timestamps[row] - minTimestamp) / resolution << ROW_BITS | row;
+        }
+        return shards;
+    }
+
+    private static int shardOf(int sourceIp, int shardCount) {
+        int hash = sourceIp * 0x9E3779B9;
+        return (hash >>> 1) % shardCount;
+    }
+
+    /**
+     * Entraîne une plage de partitions : découpée en deux tant qu'elle en contient
+     * plusieurs, puis fusion des deux moitiés. Les tâches ne sont jamais sérialisées :
+     * les flux et la table modèle sont transitoires.
+     */
+    private static class ShardTask extends RecursiveTask<ShardModel> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Flows flows;
+        private final long[][] shards;
+        private final int from;
+        private final int to;
+        private final transient QLearning template;
+
+        ShardTask(Flows flows, long[][] shards, int from, int to, QLearning template) {
+            this.flows = flows;
+            this.shards = shards;
+            this.from = from;
+            this.to = to;
+            this.template = template;
+        }
+
+        @Override
+        protected ShardModel compute() {
+            if (to - from == 1) {
+                return flows.trainShard(shards[from], template);
+            }
+            int middle = (from + to) >>> 1;
+            ShardTask left = new ShardTask(flows, shards, from, middle, template);
+            left.fork();
+            ShardModel right = new ShardTask(flows, shards, middle, to, template).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    /**
+     * Colonnes des flux chargés, nombre de passes et valeurs initiales de la table Q,
+     * figés pour un entraînement et partagés en lecture seule par les tâches
+     */
+    private static class Flows {
+        private final int[] sourceIps;
+        private final int[] destinationIps;
+        private final int[] sourcePorts;
+        private final int[] destinationPorts;
+        private final long[] timestamps;
+        private final long[] sizes;
+        private final boolean[] attacks;
+        private final int epochs;
+        private final double[] initialValues;
+
+        Flows(int[] sourceIps, int[] destinationIps, int[] sourcePorts, int[] destinationPorts,
+              long[] timestamps, long[] sizes, boolean[] attacks, int epochs, double[] initialValues) {
+            this.sourceIps = sourceIps;
+            this.destinationIps = destinationIps;
+            this.sourcePorts = sourcePorts;
+            this.destinationPorts = destinationPorts;
+            this.timestamps = timestamps;
+            this.sizes = sizes;
+            this.attacks = attacks;
+            this.epochs = epochs;
+            this.initialValues = initialValues;
+        }
+
+        /**
+         * Entraîne une table Q sur une partition, à partir des valeurs de la table cible
+         * @param keys les clés des lignes de la partition (voir partition), triées ici
+         */
+        ShardModel trainShard(long[] keys, QLearning template) {
+            Arrays.sort(keys);
+            QLearning local = new QLearning(template.getAlpha(), template.getGamma(), template.getEpsilon(), template.getBins());
+            local.setQValues(initialValues);
+            long[] visits = new long[local.getQTableSize()];
+            int hostCapacity = Math.max(MIN_HOST_CAPACITY, Math.min(PacketAnalyzer.DEFAULT_HOST_CAPACITY, keys.length));
+
+            NetworkMonitor.NetworkPacket packet = new NetworkMonitor.NetworkPacket(
+                    InetAddress.getLoopbackAddress(), InetAddress.getLoopbackAddress(), 0, 0, 0, 0);
+            // État de l'hôte, mis à jour comme par l'IDS, sous le verrou pris pour l'analyse
+            IDS.HostState hostState = new IDS.HostState();
+            State[] current = new State[1];
+            PacketAnalyzer.HostExtension extension = (analyzed, result, buffer, offset) -> {
+                hostState.wrap(buffer, offset);
+                hostState.updateFeatures(analyzed, result);
+                current[0] = hostState.toRLState();
+                return result;
+            };
+
+            for (int epoch = 0; epoch < epochs; epoch++) {
+                // Nouvel analyseur à chaque passe : les horodatages recommencent. Les flux
+                // d'une partition sont clairsemés dans le temps : les fenêtres de la
+                // détection agrégée tournent presque à chaque flux (denseRotations)
+                PacketAnalyzer analyzer = new PacketAnalyzer(hostCapacity, HostTable.EvictionPolicy.EVICT_OLDEST,
+                        IDS.HostState.SIZE, true);
+
+                for (long key : keys) {
+                    int row = (int) (key & ((1L << ROW_BITS) - 1));
+                    packet.setIPv4(sourceIps[row], destinationIps[row], sourcePorts[row], destinationPorts[row],
+                            timestamps[row], sizes[row]);
+                    analyzer.analyzePacket(packet, extension);
+                    State state = current[0];
+
+                    // Décision et récompense d'après l'étiquette du flux
+                    Action action = local.selectAction(state);
+                    boolean attack = attacks[row];
+                    double reward = IDS.reward(action, attack, attack ? 1.0 : 0.0);
+                    local.update(state, action, reward, state);
+                    visits[state.toGridIndex(local.getBins()) * ACTION_COUNT + action.ordinal()]++;
+                }
+            }
+
+            double[] values = local.getQValues();
+            for (int i = 0; i < values.length; i++) {
+                values[i] *= visits[i];
+            }
+            return new ShardModel(values, visits);
+        }
+    }
+
+    /**
+     * Table Q d'une ou plusieurs partitions : somme des valeurs pondérées par les visites
+     */
+    private static class ShardModel {
+        private final double[] weightedSums;
+        private final long[] visits;
+
+        ShardModel(double[] weightedSums, long[] visits) {
+            this.weightedSums = weightedSums;
+            this.visits = visits;
+        }
+
+        ShardModel merge(ShardModel other) {
+            for (int i = 0; i < visits.length; i++) {
+                weightedSums[i] += other.weightedSums[i];
+                visits[i] += other.visits[i];
+            }
+            return this;
+        }
+    }
+
+    /**
+     * @return le nombre de flux chargés
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Bilan d'un entraînement hors ligne
+     */
+    public static class Result {
+        private final int rows;
+        private final int shards;
+        private final int epochs;
+        private final long updates;
+        private final int visitedEntries;
+        private final long elapsedMillis;
+
+        Result(int rows, int shards, int epochs, long updates, int visitedEntries, long elapsedMillis) {
+            this.rows = rows;
+            this.shards = shards;
+            this.epochs = epochs;
+            this.updates = updates;
+            this.visitedEntries = visitedEntries;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public int getRows() { return rows; }
+        public int getShards() { return shards; }
+        public int getEpochs() { return epochs; }
+        public long getUpdates() { return updates; }
+        public int getVisitedEntries() { return visitedEntries; }
+        public long getElapsedMillis() { return elapsedMillis; }
+
+        @Override
+        public String toString() {
+            return String.format("%d flux, %d partitions, %d passes : %d mises à jour, %d paires état-action visitées, %d ms",
+                    rows, shards, epochs, updates, visitedEntries, elapsedMillis);
+        }
+    }
+}
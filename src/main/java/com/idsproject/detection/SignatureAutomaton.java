@@ -0,0 +1,397 @@
+package main.java.com.idsproject.detection;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Automate d'Aho-Corasick sur octets, insensible à la casse ASCII.
+ *
+ * Tous les littéraux sont recherchés en une seule passe sur l'entrée, quel que soit
+ * leur nombre. Les octets sont d'abord ramenés à des classes (les octets absents de
+ * tous les littéraux partagent une même classe, les majuscules ASCII sont confondues
+ * avec les minuscules), puis l'automate est déterminisé dans une table dense
+ * états x classes : chaque caractère coûte une lecture de table.
+ *
+ * Un caractère hors Latin-1 ne peut appartenir à aucun littéral ; il est traité
+ * comme un octet absent. L'automate est immuable une fois construit ; ses tables
+ * peuvent être écrites puis relues telles quelles (voir write et read), ce qui évite
+ * de reconstruire un gros automate à chaque démarrage.
+ */
+public class SignatureAutomaton {
+
+    /** Indicateur retourné par scan : l'entrée contient un terminateur de ligne */
+    public static final int LINE_TERMINATOR_SEEN = 1;
+
+    /**
+     * Reçoit les littéraux trouvés pendant un parcours
+     */
+    public interface MatchHandler {
+        /**
+         * @param id l'identifiant du littéral trouvé
+         */
+        void onMatch(int id);
+    }
+
+    private final int[] byteClasses;
+    private final int classCount;
+    private final int[] transitions;
+    private final int[] outputStarts;  // Début des identifiants propres à chaque état (+ sentinelle)
+    private final int[] outputIds;     // Identifiants propres, état par état
+    private final int[] outputLinks;   // État suivant portant des identifiants, ou -1
+    private final byte[] reportable;   // 1 si l'état ou un état lié porte des identifiants
+    private final int stateCount;
+
+    /**
+     * Construit l'automate
+     * @param literals les littéraux (Latin-1)
+     * @param ids l'identifiant associé à chaque littéral
+     */
+    public SignatureAutomaton(List<String> literals, int[] ids) {
+        this.byteClasses = new int[256];
+
+        // Classes d'octets : 0 pour les octets absents des littéraux
+        int classes = 1;
+        for (String literal : literals) {
+            for (int i = 0; i < literal.length(); i++) {
+                int b = fold(literal.charAt(i) & 0xFF);
+                if (byteClasses[b] == 0) {
+                    byteClasses[b] = classes++;
+                }
+            }
+        }
+        for (int b = 'A'; b <= 'Z'; b++) {
+            byteClasses[b] = byteClasses[b + ('a' - 'A')];
+        }
+        this.classCount = classes;
+
+        // Trie, dans une table qui devient ensuite celle de l'automate déterministe
+        int capacity = 1;
+        for (String literal : literals) {
+            capacity += literal.length();
+        }
+        int[] table = new int[Math.max(1, capacity) * classCount];
+        List<int[]> stateOutputs = new ArrayList<>();
+        stateOutputs.add(null);
+        int states = 1;
+
+        for (int n = 0; n < literals.size(); n++) {
+            String literal = literals.get(n);
+            int state = 0;
+            for (int i = 0; i < literal.length(); i++) {
+                int index = state * classCount + byteClasses[literal.charAt(i) & 0xFF];
+                if (table[index] == 0) {
+                    table[index] = states++;
+                    stateOutputs.add(null);
+                }
+                state = table[index];
+            }
+            int[] existing = stateOutputs.get(state);
+            int[] updated = existing == null ? new int[1] : Arrays.copyOf(existing, existing.length + 1);
+            updated[updated.length - 1] = ids[n];
+            stateOutputs.set(state, updated);
+        }
+
+        this.stateCount = states;
+        this.transitions = Arrays.copyOf(table, states * classCount);
+        int[][] outputs = stateOutputs.toArray(new int[0][]);
+        this.outputLinks = new int[states];
+        this.reportable = new byte[states];
+
+        // Parcours en largeur : liens d'échec, complétion des transitions, liens de sortie
+        int[] failures = new int[states];
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        outputLinks[0] = -1;
+
+        for (int c = 0; c < classCount; c++) {
+            int next = transitions[c];
+            if (next != 0) {
+                failures[next] = 0;
+                outputLinks[next] = -1;
+                queue[tail++] = next;
+            }
+        }
+
+        while (head < tail) {
+            int state = queue[head++];
+            reportable[state] = (byte) (outputs[state] != null || outputLinks[state] >= 0 ? 1 : 0);
+
+            for (int c = 0; c < classCount; c++) {
+                int index = state * classCount + c;
+                int next = transitions[index];
+                int fallback = transitions[failures[state] * classCount + c];
+                if (next == 0) {
+                    transitions[index] = fallback;
+                    continue;
+                }
+                failures[next] = fallback;
+                outputLinks[next] = outputs[fallback] != null ? fallback : outputLinks[fallback];
+                queue[tail++] = next;
+            }
+        }
+
+        // Identifiants aplatis : une table contiguë, relue en bloc (voir read)
+        this.outputStarts = new int[states + 1];
+        for (int s = 0; s < states; s++) {
+            outputStarts[s + 1] = outputStarts[s] + (outputs[s] != null ? outputs[s].length : 0);
+        }
+        this.outputIds = new int[outputStarts[states]];
+        for (int s = 0; s < states; s++) {
+            if (outputs[s] != null) {
+                System.arraycopy(outputs[s], 0, outputIds, outputStarts[s], outputs[s].length);
+            }
+        }
+    }
+
+    /**
+     * Constructeur réservé à la relecture des tables (voir read)
+     */
+    private SignatureAutomaton(int classCount, int stateCount, int[] byteClasses, int[] transitions,
+                               int[] outputStarts, int[] outputIds, int[] outputLinks, byte[] reportable) {
+        this.classCount = classCount;
+        this.stateCount = stateCount;
+        this.byteClasses = byteClasses;
+        this.transitions = transitions;
+        this.outputStarts = outputStarts;
+        this.outputIds = outputIds;
+        this.outputLinks = outputLinks;
+        this.reportable = reportable;
+    }
+
+    /**
+     * @return la taille des tables écrites par write (en octets)
+     */
+    long serializedSize() {
+        return 8 + 4L * byteClasses.length + 4L * transitions.length + 4L * outputStarts.length
+            + 4 + 4L * outputIds.length + 4L * outputLinks.length + align(reportable.length);
+    }
+
+    /**
+     * Écrit les tables de l'automate, dans l'ordre d'octets du tampon.
+     * Les tables sont écrites telles quelles, pour être relues en bloc.
+     * @param out le tampon, d'au moins serializedSize() octets restants
+     */
+    void write(ByteBuffer out) {
+        out.putInt(classCount).putInt(stateCount);
+        putInts(out, byteClasses);
+        putInts(out, transitions);
+        putInts(out, outputStarts);
+        out.putInt(outputIds.length);
+        putInts(out, outputIds);
+        putInts(out, outputLinks);
+        putBytes(out, reportable);
+    }
+
+    /**
+     * Relit un automate écrit par write. Chaque table est vérifiée avant d'être acceptée :
+     * un parcours de l'automate relu ne peut ni sortir de ses tables ni boucler
+     * @param in le tampon, positionné au début des tables
+     * @param idLimit la borne (exclue) des identifiants de littéraux
+     * @return l'automate
+     * @throws IllegalArgumentException si les tables sont incohérentes
+     */
+    static SignatureAutomaton read(ByteBuffer in, int idLimit) {
+        int classCount = in.getInt();
+        int stateCount = in.getInt();
+        if (classCount < 1 || classCount > 256 || stateCount < 1) {
+            throw new IllegalArgumentException("Tables d'automate invalides");
+        }
+
+        int[] byteClasses = getInts(in, 256);
+        checkRange(byteClasses, 0, classCount, "classes d'octets");
+        int[] transitions = getInts(in, Math.multiplyExact(stateCount, classCount));
+        checkRange(transitions, 0, stateCount, "transitions");
+        int[] outputStarts = getInts(in, Math.addExact(stateCount, 1));
+        int[] outputIds = getInts(in, in.getInt());
+        checkStarts(outputStarts, outputIds.length, "sorties");
+        checkRange(outputIds, 0, idLimit, "identifiants de sortie");
+        int[] outputLinks = getInts(in, stateCount);
+        checkRange(outputLinks, -1, stateCount, "liens de sortie");
+        checkAcyclic(outputLinks);
+        byte[] reportable = getBytes(in, stateCount);
+        return new SignatureAutomaton(classCount, stateCount, byteClasses, transitions,
+                outputStarts, outputIds, outputLinks, reportable);
+    }
+
+    /**
+     * Vérifie que toutes les valeurs d'une table sont dans [min, limit[
+     */
+    static void checkRange(int[] values, int min, int limit, String table) {
+        for (int value : values) {
+            if (value < min || value >= limit) {
+                throw new IllegalArgumentException("Valeur hors limites dans " + table + ": " + value);
+            }
+        }
+    }
+
+    /**
+     * Vérifie une table de débuts (avec sentinelle) : croissante, de 0 à end
+     */
+    static void checkStarts(int[] starts, int end, String table) {
+        if (starts[0] != 0 || starts[starts.length - 1] != end) {
+            throw new IllegalArgumentException("Bornes incohérentes dans " + table);
+        }
+        for (int i = 1; i < starts.length; i++) {
+            if (starts[i] < starts[i - 1]) {
+                throw new IllegalArgumentException("Débuts non croissants dans " + table);
+            }
+        }
+    }
+
+    /**
+     * Vérifie que les chaînes de liens de sortie se terminent toutes (par -1) :
+     * chaque état est parcouru au plus deux fois
+     */
+    private static void checkAcyclic(int[] links) {
+        byte[] marks = new byte[links.length]; // 0 : non vu, 1 : chaîne en cours, 2 : vérifié
+        for (int start = 0; start < links.length; start++) {
+            int s = start;
+            while (s >= 0 && marks[s] == 0) {
+                marks[s] = 1;
+                s = links[s];
+            }
+            if (s >= 0 && marks[s] == 1) {
+                throw new IllegalArgumentException("Liens de sortie circulaires");
+            }
+            for (s = start; s >= 0 && marks[s] == 1; s = links[s]) {
+                marks[s] = 2;
+            }
+        }
+    }
+
+    /**
+     * Parcourt un texte et signale chaque occurrence de littéral
+     * @param text le texte
+     * @param handler le destinataire des occurrences
+     * @return des indicateurs (LINE_TERMINATOR_SEEN)
+     */
+    public int scan(CharSequence text, MatchHandler handler) {
+        int flags = 0;
+        int state = 0;
+        int length = text.length();
+
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 256) {
+                if (c == '\n' || c == '\r' || c == '\u0085') {
+                    flags |= LINE_TERMINATOR_SEEN;
+                }
+                state = transitions[state * classCount + byteClasses[c]];
+            } else {
+                if (c == '\u2028' || c == '\u2029') {
+                    flags |= LINE_TERMINATOR_SEEN;
+                }
+                state = transitions[state * classCount];
+            }
+
+            if (reportable[state] != 0) {
+                report(state, handler);
+            }
+        }
+        return flags;
+    }
+
+    /**
+     * Parcourt des octets (entre la position et la limite du tampon, sans les déplacer)
+     * et signale chaque occurrence de littéral. Les octets sont lus comme du Latin-1 :
+     * le résultat est celui de scan(CharSequence) sur le texte décodé, sans décodage.
+     * @param bytes les octets
+     * @param handler le destinataire des occurrences
+     * @return des indicateurs (LINE_TERMINATOR_SEEN)
+     */
+    public int scan(ByteBuffer bytes, MatchHandler handler) {
+        int flags = 0;
+        int state = 0;
+        int limit = bytes.limit();
+
+        for (int i = bytes.position(); i < limit; i++) {
+            int b = bytes.get(i) & 0xFF;
+            if (b == '\n' || b == '\r' || b == 0x85) {
+                flags |= LINE_TERMINATOR_SEEN;
+            }
+            state = transitions[state * classCount + byteClasses[b]];
+
+            if (reportable[state] != 0) {
+                report(state, handler);
+            }
+        }
+        return flags;
+    }
+
+    /**
+     * @return le nombre d'états de l'automate
+     */
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    /**
+     * @return le nombre de classes d'octets
+     */
+    public int getClassCount() {
+        return classCount;
+    }
+
+    private void report(int state, MatchHandler handler) {
+        int s = outputStarts[state + 1] > outputStarts[state] ? state : outputLinks[state];
+        for (; s >= 0; s = outputLinks[s]) {
+            for (int i = outputStarts[s]; i < outputStarts[s + 1]; i++) {
+                handler.onMatch(outputIds[i]);
+            }
+        }
+    }
+
+    static void putInts(ByteBuffer out, int[] values) {
+        out.asIntBuffer().put(values);
+        out.position(out.position() + 4 * values.length);
+    }
+
+    /**
+     * Écrit des octets, complétés pour garder l'alignement des tables suivantes
+     */
+    static void putBytes(ByteBuffer out, byte[] values) {
+        out.put(values);
+        out.position(out.position() + align(values.length) - values.length);
+    }
+
+    /**
+     * Lit des octets écrits par putBytes. La longueur est vérifiée avant l'allocation :
+     * une longueur abîmée ne peut pas provoquer une allocation démesurée
+     */
+    static byte[] getBytes(ByteBuffer in, int count) {
+        if (count < 0 || align(count) < 0 || align(count) > in.remaining()) {
+            throw new IllegalArgumentException("Longueur de table invalide: " + count);
+        }
+        byte[] values = new byte[count];
+        in.get(values);
+        in.position(in.position() + align(count) - count);
+        return values;
+    }
+
+    /**
+     * Lit des entiers écrits par putInts, nombre vérifié avant l'allocation (voir getBytes)
+     */
+    static int[] getInts(ByteBuffer in, int count) {
+        if (count < 0 || count > in.remaining() / 4) {
+            throw new IllegalArgumentException("Longueur de table invalide: " + count);
+        }
+        int[] values = new int[count];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + 4 * count);
+        return values;
+    }
+
+    /**
+     * Arrondit au multiple de 4 supérieur, pour garder les tables d'entiers alignées
+     */
+    static int align(int length) {
+        return (length + 3) & ~3;
+    }
+
+    private static int fold(int b) {
+        return b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b;
+    }
+}
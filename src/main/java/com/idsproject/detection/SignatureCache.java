@@ -0,0 +1,270 @@
+package main.java.com.idsproject.detection;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+
+/**
+ * Cache disque des jeux de signatures compilés.
+ *
+ * Chaque jeu est stocké dans un fichier nommé d'après une empreinte du contenu du
+ * fichier de règles dont il est issu (CRC32C et CRC32, 64 bits) : une règle modifiée
+ * donne une autre empreinte, donc un autre fichier. Les règles elles-mêmes sont
+ * recopiées dans le cache et comparées octet à octet à la lecture : une collision
+ * d'empreintes ne peut pas faire charger un autre jeu. Une empreinte cryptographique
+ * coûterait à elle seule plus que la relecture du cache sur une JVM qui démarre.
+ *
+ * Le fichier est projeté en mémoire et ses tables sont relues en bloc, sans recompiler
+ * ni l'automate ni les expressions (voir CompiledSignatures.read). Un CRC32C couvre tout
+ * le contenu, et chaque table est vérifiée avant d'être acceptée : un fichier abîmé est
+ * écarté à la lecture, jamais pendant l'analyse d'un paquet.
+ *
+ * Ces vérifications ne protègent pas d'un fichier délibérément falsifié : le répertoire
+ * du cache doit être aussi protégé que les règles. Il est créé accessible à son seul
+ * propriétaire, et un répertoire existant modifiable par d'autres utilisateurs est
+ * ignoré (sur les systèmes de fichiers POSIX).
+ *
+ * L'écriture passe par un fichier temporaire renommé atomiquement : un fichier présent
+ * est toujours complet. Un fichier illisible (autre version du format, autre ordre
+ * d'octets, contenu corrompu) est ignoré et sera remplacé par la prochaine écriture.
+ */
+public class SignatureCache {
+
+    private static final int MAGIC = 0x49445343;   // "IDSC"
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 24;
+    private static final Set<PosixFilePermission> PRIVATE_DIRECTORY = PosixFilePermissions.fromString("rwx------");
+    private static final String EXTENSION = ".sig";
+    private static final int MAX_CACHED_RULE_SETS = 4;
+
+    private final Path directory;
+
+    /**
+     * @param directory le répertoire du cache (créé à la première écriture)
+     */
+    public SignatureCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Relit le jeu compilé à partir d'un contenu de fichier de règles
+     * @param rules le contenu du fichier de règles
+     * @return le jeu compilé, ou null s'il n'est pas en cache ou illisible
+     */
+    public CompiledSignatures read(byte[] rules) {
+        Path file = fileFor(rules);
+        if (!Files.isRegularFile(file) || !isPrivate(directory)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("taille " + size);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            ByteBuffer in = mapped.order(ByteOrder.nativeOrder());
+
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                throw new IllegalArgumentException("format inconnu");
+            }
+            long length = in.getLong();
+            int rulesLength = in.getInt();
+            int crc = in.getInt();
+            if (length != size - HEADER_SIZE || rulesLength != rules.length
+                    || SignatureAutomaton.align(rulesLength) > in.remaining()) {
+                throw new IllegalArgumentException("en-tête incohérent");
+            }
+
+            CRC32C checksum = new CRC32C();
+            checksum.update(in.duplicate());
+            if ((int) checksum.getValue() != crc) {
+                throw new IllegalArgumentException("somme de contrôle invalide");
+            }
+
+            // Les règles recopiées doivent être exactement celles demandées
+            ByteBuffer storedRules = in.slice();
+            storedRules.limit(rulesLength);
+            if (!storedRules.equals(ByteBuffer.wrap(rules))) {
+                return null; // Collision d'empreintes : recompilation, puis remplacement
+            }
+            in.position(in.position() + SignatureAutomaton.align(rulesLength));
+
+            CompiledSignatures compiled = CompiledSignatures.read(in);
+            if (in.hasRemaining()) {
+                throw new IllegalArgumentException("contenu excédentaire");
+            }
+
+            // Les fichiers les plus récemment utilisés sont conservés (voir prune)
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return compiled;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Cache de signatures ignoré (" + file + "): " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Écrit un jeu compilé dans le cache. Un échec n'est pas bloquant : il est signalé,
+     * et le jeu sera simplement recompilé au prochain démarrage.
+     * @param rules le contenu du fichier de règles compilé
+     * @param compiled le jeu compilé
+     */
+    public void write(byte[] rules, CompiledSignatures compiled) {
+        long size = HEADER_SIZE + SignatureAutomaton.align(rules.length) + compiled.serializedSize();
+        if (size > Integer.MAX_VALUE) {
+            System.err.println("Jeu de signatures trop grand pour le cache (" + size + " octets)");
+            return;
+        }
+
+        Path file = fileFor(rules);
+        Path temporary = null;
+        try {
+            createPrivateDirectory(directory);
+            if (!isPrivate(directory)) {
+                throw new IOException("répertoire modifiable par d'autres utilisateurs");
+            }
+            temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                ByteBuffer out = mapped.order(ByteOrder.nativeOrder());
+                // Contenu d'abord, puis l'en-tête avec sa somme de contrôle
+                out.position(HEADER_SIZE);
+                SignatureAutomaton.putBytes(out, rules);
+                compiled.write(out);
+                ByteBuffer content = out.duplicate();
+                content.flip().position(HEADER_SIZE);
+                CRC32C checksum = new CRC32C();
+                checksum.update(content);
+
+                out.position(0);
+                out.putInt(MAGIC).putInt(VERSION).putLong(size - HEADER_SIZE).putInt(rules.length)
+                   .putInt((int) checksum.getValue());
+                mapped.force();
+            }
+
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            temporary = null;
+            prune();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Impossible d'écrire le cache de signatures " + file + ": " + e.getMessage());
+        } finally {
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException e) {
+                    // Ignorer : fichier temporaire abandonné
+                }
+            }
+        }
+    }
+
+    /**
+     * @return le répertoire du cache
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Crée un répertoire et ses parents manquants, accessibles à leur seul propriétaire
+     * (les répertoires existants ne sont pas modifiés)
+     */
+    private static void createPrivateDirectory(Path directory) throws IOException {
+        if (Files.isDirectory(directory)) {
+            return;
+        }
+        if (directory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(PRIVATE_DIRECTORY));
+        } else {
+            Files.createDirectories(directory);
+        }
+    }
+
+    /**
+     * Vérifie qu'un répertoire appartient à l'utilisateur courant et que personne d'autre
+     * ne peut y écrire (toujours vrai hors POSIX, faute de pouvoir le vérifier simplement)
+     */
+    private static boolean isPrivate(Path directory) {
+        try {
+            if (!Files.getFileStore(directory).supportsFileAttributeView(PosixFileAttributeView.class)) {
+                return true;
+            }
+            PosixFileAttributes attributes = Files.readAttributes(directory, PosixFileAttributes.class);
+            Set<PosixFilePermission> permissions = attributes.permissions();
+            UserPrincipal user = directory.getFileSystem().getUserPrincipalLookupService()
+                    .lookupPrincipalByName(System.getProperty("user.name"));
+            if (!attributes.owner().equals(user)
+                    || permissions.contains(PosixFilePermission.GROUP_WRITE)
+                    || permissions.contains(PosixFilePermission.OTHERS_WRITE)) {
+                System.err.println("Cache de signatures ignoré (" + directory + "): répertoire non protégé");
+                return false;
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Fichier du cache d'un contenu de règles, nommé d'après son empreinte
+     */
+    private Path fileFor(byte[] rules) {
+        CRC32C castagnoli = new CRC32C();
+        castagnoli.update(rules, 0, rules.length);
+        CRC32 ieee = new CRC32();
+        ieee.update(rules, 0, rules.length);
+        long key = (castagnoli.getValue() << 32) | ieee.getValue();
+
+        String hex = Long.toHexString(key);
+        return directory.resolve("0000000000000000".substring(hex.length()) + hex + EXTENSION);
+    }
+
+    /**
+     * Supprime les jeux les moins récemment utilisés au-delà de MAX_CACHED_RULE_SETS
+     */
+    private void prune() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        if (files.size() <= MAX_CACHED_RULE_SETS) {
+            return;
+        }
+
+        List<FileTime> times = new ArrayList<>(files.size());
+        for (Path file : files) {
+            times.add(Files.getLastModifiedTime(file));
+        }
+        Integer[] order = new Integer[files.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> times.get(b).compareTo(times.get(a)));
+        for (int i = MAX_CACHED_RULE_SETS; i < order.length; i++) {
+            Files.deleteIfExists(files.get(order[i]));
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package main.java.com.idsproject.log;
+
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Formatter;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import main.java.com.idsproject.network.NetworkMonitor;
+import main.java.com.idsproject.network.PacketAnalyzer;
+import main.java.com.idsproject.rl.Action;
+
+/**
+ * Journal asynchrone des événements de l'IDS.
+ *
+ * Les threads de traitement n'écrivent ni ne formatent rien : chaque événement est
+ * recopié dans un enregistrement de taille fixe (RECORD_LONGS valeurs long, plus
+ * deux références de chaînes) d'une file bornée et sans verrou, préallouée. Un thread
+ * d'écriture unique vide la file, formate les enregistrements et les écrit par lots,
+ * en un seul appel au flux de sortie par lot. Si la file est pleine, l'événement est
+ * rejeté et compté : le journal ne ralentit jamais la détection.
+ *
+ * Un événement d'un niveau inférieur au niveau du journal ne coûte qu'une comparaison.
+ * Les événements par paquet (niveau DEBUG) peuvent en plus être échantillonnés
+ * (setPacketSampling) : un paquet sur n, tiré au hasard, est journalisé.
+ */
+public class EventLog {
+
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    private static final long IDLE_PARK_NANOS = 1_000_000; // 1 ms
+    private static final Action[] ACTIONS = Action.values();
+    private static final Event[] EVENTS = Event.values();
+
+    /**
+     * Niveaux du journal, du plus détaillé au plus grave
+     */
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR, OFF
+    }
+
+    /**
+     * Événements journalisés, avec leur niveau et leur texte autour de l'adresse source
+     */
+    public enum Event {
+        PACKET(Level.DEBUG, "", ""),
+        BLOCK(Level.INFO, "ACTION: Blocage de ", " (haute confiance dans la détection d'attaque)"),
+        BLOCK_MODERATE(Level.INFO, "ACTION: Blocage de ", " (confiance modérée dans la détection d'attaque)"),
+        BLOCK_FALSE_POSITIVE(Level.WARN, "ACTION: Blocage incorrect de ", " (faux positif)"),
+        MONITOR(Level.INFO, "ACTION: Surveillance accrue de ", ""),
+        MONITOR_INSUFFICIENT(Level.WARN, "ACTION: Surveillance insuffisante pour une attaque évidente de ", ""),
+        ALLOW_MISSED(Level.WARN, "ACTION: Autorisation incorrecte de ", " (attaque non bloquée)");
+
+        private final Level level;
+        private final String prefix;
+        private final String suffix;
+
+        Event(Level level, String prefix, String suffix) {
+            this.level = level;
+            this.prefix = prefix;
+            this.suffix = suffix;
+        }
+
+        public Level getLevel() {
+            return level;
+        }
+    }
+
+    // Disposition d'un enregistrement
+    private static final int HEADER = 0;         // Événement | action << 8 | drapeaux << 16
+    private static final int SOURCE_HIGH = 1;
+    private static final int SOURCE_LOW = 2;
+    private static final int DESTINATION_HIGH = 3;
+    private static final int DESTINATION_LOW = 4;
+    private static final int PORTS = 5;          // Port source << 32 | port destination
+    private static final int SIZE = 6;
+    private static final int TIMESTAMP = 7;
+    private static final int REWARD = 8;         // Bits de double
+    private static final int CONFIDENCE = 9;     // Bits de double
+    private static final int RECORD_LONGS = 10;
+
+    private static final int IPV6_FLAG = 1 << 16;
+    private static final int ATTACK_FLAG = 1 << 17;
+
+    // File des enregistrements : plusieurs producteurs, un consommateur (le thread d'écriture).
+    // Même protocole de séquences que PacketRingBuffer.
+    private final long[] records;
+    private final String[] texts; // Type d'attaque et description, deux par enregistrement
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long written;
+
+    private final PrintStream out;
+    private final StringBuilder text = new StringBuilder(16384);
+    private final Formatter formatter = new Formatter(text);
+    private final byte[] ipv6Bytes = new byte[16];
+
+    private volatile int threshold = Level.DEBUG.ordinal();
+    private volatile int packetSampling = 1;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private Thread writerThread;
+
+    /**
+     * Constructeur avec les paramètres par défaut : écriture sur la sortie standard
+     */
+    public EventLog() {
+        this(DEFAULT_CAPACITY, System.out);
+    }
+
+    /**
+     * @param capacity la capacité de la file, arrondie à la puissance de deux supérieure
+     * @param out le flux de sortie du journal
+     */
+    public EventLog(int capacity, PrintStream out) {
+        if (capacity < 2 || capacity > (1 << 26)) {
+            throw new IllegalArgumentException("Capacité du journal invalide: " + capacity);
+        }
+
+        this.out = out;
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.records = new long[size * RECORD_LONGS];
+        this.texts = new String[size * 2];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Démarre le thread d'écriture
+     */
+    public void start() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        writerThread = new Thread(this::run, "ids-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Arrête le thread d'écriture, après avoir écrit les événements en attente
+     */
+    public void stop() {
+        if (!running.compareAndSet(true, false)) {
+            return;
+        }
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @param level le niveau
+     * @return true si les événements de ce niveau sont journalisés
+     */
+    public boolean isEnabled(Level level) {
+        return level.ordinal() >= threshold;
+    }
+
+    /**
+     * Journalise le traitement d'un paquet (niveau DEBUG, échantillonné)
+     * @param packet le paquet analysé
+     * @param result le résultat de l'analyse
+     * @param action l'action entreprise
+     * @param reward la récompense reçue
+     */
+    public void logPacket(NetworkMonitor.NetworkPacket packet, PacketAnalyzer.AnalysisResult result,
+                          Action action, double reward) {
+        if (Level.DEBUG.ordinal() < threshold) {
+            return;
+        }
+        int sampling = packetSampling;
+        if (sampling > 1 && ThreadLocalRandom.current().nextInt(sampling) != 0) {
+            return;
+        }
+
+        int flags = result.isAttackDetected() ? ATTACK_FLAG : 0;
+        append(Event.PACKET, action.ordinal(), flags, packet, reward, result.getConfidence(),
+                result.getAttackType(), result.getDescription());
+    }
+
+    /**
+     * Journalise un événement concernant l'hôte source d'un paquet
+     * @param event l'événement
+     * @param packet le paquet concerné
+     */
+    public void logHost(Event event, NetworkMonitor.NetworkPacket packet) {
+        if (event.level.ordinal() < threshold) {
+            return;
+        }
+        append(event, 0, 0, packet, 0.0, 0.0, null, null);
+    }
+
+    /**
+     * Recopie un événement dans la file sans jamais bloquer ni allouer
+     */
+    private void append(Event event, int action, int flags, NetworkMonitor.NetworkPacket packet,
+                        double reward, double confidence, String attackType, String description) {
+        long position = tail.get();
+
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    int base = index * RECORD_LONGS;
+                    records[base + HEADER] = event.ordinal() | (action << 8) | flags
+                            | (packet.isIPv6() ? IPV6_FLAG : 0);
+                    records[base + SOURCE_HIGH] = packet.getSourceHigh();
+                    records[base + SOURCE_LOW] = packet.getSourceLow();
+                    records[base + DESTINATION_HIGH] = packet.getDestinationHigh();
+                    records[base + DESTINATION_LOW] = packet.getDestinationLow();
+                    records[base + PORTS] = ((long) packet.getSourcePort() << 32) | (packet.getDestinationPort() & 0xFFFFFFFFL);
+                    records[base + SIZE] = packet.getSize();
+                    records[base + TIMESTAMP] = packet.getTimestamp();
+                    records[base + REWARD] = Double.doubleToRawLongBits(reward);
+                    records[base + CONFIDENCE] = Double.doubleToRawLongBits(confidence);
+                    texts[index * 2] = attackType;
+                    texts[index * 2 + 1] = description;
+                    sequences.lazySet(index, position + 1);
+                    return;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // L'emplacement n'a pas encore été écrit : la file est pleine
+                dropped.incrementAndGet();
+                return;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Boucle du thread d'écriture
+     */
+    private void run() {
+        while (running.get()) {
+            if (drain() == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+
+        // Événements restants
+        while (drain() > 0) {
+            // Vide la file
+        }
+        out.flush();
+    }
+
+    /**
+     * Formate les enregistrements disponibles et les écrit en un seul appel
+     * @return le nombre d'enregistrements écrits
+     */
+    private int drain() {
+        int count = 0;
+        long position = head;
+
+        while (count <= mask) {
+            int index = (int) (position & mask);
+            if (sequences.get(index) != position + 1) {
+                break; // File vide
+            }
+
+            format(index);
+            texts[index * 2] = null;
+            texts[index * 2 + 1] = null;
+            sequences.lazySet(index, position + mask + 1);
+            position++;
+            count++;
+        }
+        head = position;
+
+        if (count > 0) {
+            out.append(text);
+            out.flush();
+            text.setLength(0);
+            written += count;
+        }
+        return count;
+    }
+
+    /**
+     * Formate un enregistrement, avec le même texte que les anciens affichages de l'IDS
+     */
+    private void format(int index) {
+        int base = index * RECORD_LONGS;
+        int header = (int) records[base + HEADER];
+        Event event = EVENTS[header & 0xFF];
+        boolean ipv6 = (header & IPV6_FLAG) != 0;
+
+        if (event != Event.PACKET) {
+            text.append(event.prefix).append('/');
+            appendAddress(ipv6, records[base + SOURCE_HIGH], records[base + SOURCE_LOW]);
+            text.append(event.suffix).append(System.lineSeparator());
+            return;
+        }
+
+        long ports = records[base + PORTS];
+        text.append("Paquet analysé: Paquet [");
+        appendAddress(ipv6, records[base + SOURCE_HIGH], records[base + SOURCE_LOW]);
+        text.append(':').append((int) (ports >>> 32)).append(" -> ");
+        appendAddress(ipv6, records[base + DESTINATION_HIGH], records[base + DESTINATION_LOW]);
+        text.append(':').append((int) ports)
+            .append(", taille=").append(records[base + SIZE])
+            .append(" octets, horodatage=").append(records[base + TIMESTAMP]).append(']')
+            .append(System.lineSeparator());
+
+        text.append("Résultat: ").append((header & ATTACK_FLAG) != 0 ? "ALERTE" : "NORMAL")
+            .append(" [type=").append(texts[index * 2]).append(", confiance=");
+        formatter.format("%.2f", Double.longBitsToDouble(records[base + CONFIDENCE]) * 100);
+        text.append("%] - ").append(texts[index * 2 + 1]).append(System.lineSeparator());
+
+        text.append("Action: ").append(ACTIONS[(header >>> 8) & 0xFF])
+            .append(", Récompense: ").append(Double.longBitsToDouble(records[base + REWARD]))
+            .append(System.lineSeparator());
+    }
+
+    private void appendAddress(boolean ipv6, long high, long low) {
+        if (!ipv6) {
+            text.append((low >>> 24) & 0xFF).append('.').append((low >>> 16) & 0xFF).append('.')
+                .append((low >>> 8) & 0xFF).append('.').append(low & 0xFF);
+            return;
+        }
+
+        for (int i = 0; i < 8; i++) {
+            ipv6Bytes[i] = (byte) (high >>> (56 - 8 * i));
+            ipv6Bytes[8 + i] = (byte) (low >>> (56 - 8 * i));
+        }
+        try {
+            text.append(InetAddress.getByAddress(ipv6Bytes).getHostAddress());
+        } catch (UnknownHostException e) {
+            text.append('?'); // Impossible : longueur toujours valide
+        }
+    }
+
+    /**
+     * @param level le niveau minimal des événements journalisés (OFF : aucun)
+     */
+    public void setLevel(Level level) {
+        this.threshold = level.ordinal();
+    }
+
+    /**
+     * @return le niveau minimal des événements journalisés
+     */
+    public Level getLevel() {
+        return Level.values()[threshold];
+    }
+
+    /**
+     * Échantillonne les événements par paquet
+     * @param oneIn un paquet journalisé sur oneIn, en moyenne (1 : tous)
+     */
+    public void setPacketSampling(int oneIn) {
+        this.packetSampling = Math.max(1, oneIn);
+    }
+
+    /**
+     * @return l'échantillonnage des événements par paquet (un sur n)
+     */
+    public int getPacketSampling() {
+        return packetSampling;
+    }
+
+    /**
+     * @return le nombre d'événements rejetés faute de place dans la file
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return le nombre d'événements écrits
+     */
+    public long getWrittenCount() {
+        return written;
+    }
+}
@@ -0,0 +1,163 @@
+package main.java.com.idsproject.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogramme de latences (en nanosecondes) à précision relative constante.
+ *
+ * Les valeurs sont rangées dans des classes log-linéaires : chaque puissance de deux
+ * est découpée en SUB_BUCKETS classes égales, soit une erreur d'au plus 25 % sur un
+ * percentile, quelle que soit l'échelle (de la nanoseconde à plusieurs minutes).
+ * L'index d'une classe se calcule sans division ni boucle, et chaque classe est un
+ * compteur réparti (LongAdder) : l'enregistrement coûte quelques nanosecondes, même
+ * lorsque de nombreux threads enregistrent à la fois.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Enregistre une latence
+     * @param nanos la latence (en nanosecondes, une valeur négative compte pour 0)
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets[bucketOf(value)].increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Enregistre plusieurs fois la même latence, par exemple la latence moyenne
+     * d'un lot mesuré en une fois
+     * @param nanos la latence (en nanosecondes)
+     * @param count le nombre d'occurrences
+     */
+    public void record(long nanos, long count) {
+        if (count <= 0) {
+            return;
+        }
+        long value = Math.max(0, nanos);
+        buckets[bucketOf(value)].add(count);
+        sum.add(value * count);
+        max.accumulate(value);
+    }
+
+    /**
+     * @return une photographie de l'histogramme
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets[i].sum();
+            count += counts[i];
+        }
+        return new Snapshot(counts, count, sum.sum(), max.get());
+    }
+
+    /**
+     * Classe d'une valeur : les valeurs inférieures à SUB_BUCKETS ont chacune leur
+     * classe, les autres sont repérées par leur exposant et leurs SUB_BUCKET_BITS
+     * bits suivant le bit de poids fort
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return la plus grande valeur rangée dans une classe
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        long lower = (SUB_BUCKETS + sub) << (exponent - SUB_BUCKET_BITS);
+        return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * Photographie immuable d'un histogramme
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * @param percentile le percentile (entre 0 et 100)
+         * @return la latence du percentile (borne supérieure de sa classe, en nanosecondes),
+         *         0 si l'histogramme est vide
+         */
+        public long getPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(count * Math.min(100.0, Math.max(0.0, percentile)) / 100.0));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(i), max);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * @return le nombre de latences enregistrées
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return la latence moyenne (en nanosecondes)
+         */
+        public double getMean() {
+            return count > 0 ? (double) sum / count : 0.0;
+        }
+
+        /**
+         * @return la plus grande latence enregistrée (en nanosecondes)
+         */
+        public long getMax() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("n=%d, moy=%.1f µs, p50=%.1f µs, p99=%.1f µs, max=%.1f µs",
+                    count, getMean() / 1000.0, getPercentile(50) / 1000.0,
+                    getPercentile(99) / 1000.0, max / 1000.0);
+        }
+    }
+}
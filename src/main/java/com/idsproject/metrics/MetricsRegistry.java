@@ -0,0 +1,168 @@
+package main.java.com.idsproject.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Registre des métriques de l'IDS : compteurs, jauges et histogrammes de latences.
+ *
+ * Les métriques sont créées une fois, à l'initialisation, et le code de traitement
+ * garde une référence directe vers elles : aucune recherche par nom n'a lieu pendant
+ * le traitement. Les compteurs sont répartis (LongAdder) et ne perdent aucun incrément,
+ * sans contention entre threads ; les jauges sont lues à la demande auprès de leur source
+ * (taille d'une table, profondeur d'une file).
+ *
+ * snapshot() fournit une photographie immuable de toutes les métriques, à lire d'un
+ * seul tenant plutôt que métrique par métrique. Les compteurs y sont lus dans l'ordre
+ * inverse de leur création : si un compteur créé après un autre n'est incrémenté
+ * qu'après lui (comme les alertes après les paquets), la photographie ne montre jamais
+ * plus d'alertes que de paquets.
+ */
+public class MetricsRegistry {
+
+    private final Map<String, Counter> counters = new LinkedHashMap<>();
+    private final Map<String, LongSupplier> gauges = new LinkedHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+
+    /**
+     * Retourne le compteur d'un nom, créé au premier appel
+     * @param name le nom du compteur
+     * @return le compteur
+     */
+    public synchronized Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    /**
+     * Enregistre une jauge, lue à chaque photographie
+     * @param name le nom de la jauge
+     * @param source la source de sa valeur (appelée depuis le thread qui photographie)
+     */
+    public synchronized void gauge(String name, LongSupplier source) {
+        gauges.put(name, source);
+    }
+
+    /**
+     * Retourne l'histogramme de latences d'un nom, créé au premier appel
+     * @param name le nom de l'histogramme
+     * @return l'histogramme
+     */
+    public synchronized LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * @return une photographie de toutes les métriques
+     */
+    public synchronized Snapshot snapshot() {
+        List<Map.Entry<String, Counter>> counterEntries = new ArrayList<>(counters.entrySet());
+        Map<String, Long> counterValues = new LinkedHashMap<>();
+        long[] values = new long[counterEntries.size()];
+        for (int i = values.length - 1; i >= 0; i--) {
+            values[i] = counterEntries.get(i).getValue().sum();
+        }
+        for (int i = 0; i < values.length; i++) {
+            counterValues.put(counterEntries.get(i).getKey(), values[i]);
+        }
+
+        Map<String, Long> gaugeValues = new LinkedHashMap<>();
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+            gaugeValues.put(gauge.getKey(), gauge.getValue().getAsLong());
+        }
+
+        Map<String, LatencyHistogram.Snapshot> histogramValues = new LinkedHashMap<>();
+        for (Map.Entry<String, LatencyHistogram> histogram : histograms.entrySet()) {
+            histogramValues.put(histogram.getKey(), histogram.getValue().snapshot());
+        }
+
+        return new Snapshot(System.currentTimeMillis(), counterValues, gaugeValues, histogramValues);
+    }
+
+    /**
+     * Compteur réparti : chaque thread incrémente de préférence sa propre cellule
+     */
+    public static class Counter {
+        private final LongAdder adder = new LongAdder();
+
+        public void increment() {
+            adder.increment();
+        }
+
+        public void add(long delta) {
+            adder.add(delta);
+        }
+
+        /**
+         * @return la valeur courante (somme des cellules)
+         */
+        public long sum() {
+            return adder.sum();
+        }
+    }
+
+    /**
+     * Photographie immuable des métriques
+     */
+    public static class Snapshot {
+        private final long timestamp;
+        private final Map<String, Long> counters;
+        private final Map<String, Long> gauges;
+        private final Map<String, LatencyHistogram.Snapshot> histograms;
+
+        Snapshot(long timestamp, Map<String, Long> counters, Map<String, Long> gauges,
+                 Map<String, LatencyHistogram.Snapshot> histograms) {
+            this.timestamp = timestamp;
+            this.counters = Collections.unmodifiableMap(counters);
+            this.gauges = Collections.unmodifiableMap(gauges);
+            this.histograms = Collections.unmodifiableMap(histograms);
+        }
+
+        /**
+         * @param name le nom du compteur
+         * @return sa valeur, 0 s'il n'existe pas
+         */
+        public long getCounter(String name) {
+            return counters.getOrDefault(name, 0L);
+        }
+
+        /**
+         * @param name le nom de la jauge
+         * @return sa valeur, 0 si elle n'existe pas
+         */
+        public long getGauge(String name) {
+            return gauges.getOrDefault(name, 0L);
+        }
+
+        /**
+         * @param name le nom de l'histogramme
+         * @return sa photographie, null s'il n'existe pas
+         */
+        public LatencyHistogram.Snapshot getHistogram(String name) {
+            return histograms.get(name);
+        }
+
+        public Map<String, Long> getCounters() {
+            return counters;
+        }
+
+        public Map<String, Long> getGauges() {
+            return gauges;
+        }
+
+        public Map<String, LatencyHistogram.Snapshot> getHistograms() {
+            return histograms;
+        }
+
+        /**
+         * @return la date de la photographie (en millisecondes)
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+    }
+}
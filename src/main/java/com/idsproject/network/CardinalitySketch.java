@@ -0,0 +1,248 @@
+package main.java.com.idsproject.network;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Estimateur de cardinalité (nombre de valeurs distinctes) de taille fixe.
+ *
+ * Le croquis occupe exactement SIZE octets dans un ByteBuffer. Il commence en mode
+ * exact (liste triée d'au plus SPARSE_CAPACITY hachés de 32 bits), puis bascule
+ * en HyperLogLog à 2^PRECISION registres lorsque la liste est pleine. Les petites
+ * cardinalités, qui sont celles des seuils de détection, restent donc exactes ;
+ * au-delà, l'erreur type est d'environ 1.04 / sqrt(256), soit 6.5 %.
+ *
+ * Un croquis peut être une vue sur une zone d'un tampon partagé (voir wrap), ce qui
+ * permet de l'héberger dans une table hors tas. Deux croquis se fusionnent (merge)
+ * pour obtenir la cardinalité de l'union, par exemple pour combiner des partitions.
+ *
+ * Non thread-safe : l'appelant synchronise l'accès.
+ */
+public class CardinalitySketch {
+
+    public static final int PRECISION = 8;
+    public static final int REGISTER_COUNT = 1 << PRECISION;
+    public static final int SPARSE_CAPACITY = REGISTER_COUNT / 4;
+
+    // Disposition : mode/compte (int), registres nuls (int), somme des 2^-M (long,
+    // en virgule fixe 2^-32), puis la liste triée ou les registres
+    private static final int COUNT_OFFSET = 0;
+    private static final int ZEROS_OFFSET = 4;
+    private static final int INVERSE_SUM_OFFSET = 8;
+    private static final int DATA_OFFSET = 16;
+    private static final int DENSE = -1;
+
+    /** Taille d'un croquis en octets */
+    public static final int SIZE = DATA_OFFSET + REGISTER_COUNT;
+
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTER_COUNT);
+
+    private ByteBuffer buffer;
+    private int base;
+
+    /**
+     * Crée un croquis vide dans son propre tampon
+     */
+    public CardinalitySketch() {
+        this(ByteBuffer.allocate(SIZE), 0);
+        clear();
+    }
+
+    /**
+     * Crée une vue sur un croquis existant (ou à initialiser par clear)
+     * @param buffer le tampon hébergeant le croquis
+     * @param base la position du croquis dans le tampon
+     */
+    public CardinalitySketch(ByteBuffer buffer, int base) {
+        wrap(buffer, base);
+    }
+
+    /**
+     * Repositionne la vue sur un autre croquis, sans allocation
+     * @param buffer le tampon hébergeant le croquis
+     * @param base la position du croquis dans le tampon
+     * @return cette vue
+     */
+    public CardinalitySketch wrap(ByteBuffer buffer, int base) {
+        this.buffer = buffer;
+        this.base = base;
+        return this;
+    }
+
+    /**
+     * Vide le croquis
+     */
+    public void clear() {
+        buffer.putInt(base + COUNT_OFFSET, 0);
+        buffer.putInt(base + ZEROS_OFFSET, REGISTER_COUNT);
+        buffer.putLong(base + INVERSE_SUM_OFFSET, (long) REGISTER_COUNT << 32);
+    }
+
+    /**
+     * Ajoute une valeur au croquis
+     * @param value la valeur (port, adresse IPv4...)
+     */
+    public void add(long value) {
+        addHash(hash(value));
+    }
+
+    /**
+     * Ajoute une adresse de 128 bits (IPv6) au croquis
+     * @param high les 64 bits de poids fort
+     * @param low les 64 bits de poids faible
+     */
+    public void add(long high, long low) {
+        addHash(hash(high * 0x9E3779B97F4A7C15L ^ low));
+    }
+
+    /**
+     * @return l'estimation du nombre de valeurs distinctes ajoutées
+     */
+    public long estimate() {
+        int count = buffer.getInt(base + COUNT_OFFSET);
+        if (count != DENSE) {
+            return count;
+        }
+
+        int zeros = buffer.getInt(base + ZEROS_OFFSET);
+        double inverseSum = buffer.getLong(base + INVERSE_SUM_OFFSET) / 4294967296.0;
+        double estimate = ALPHA * REGISTER_COUNT * REGISTER_COUNT / inverseSum;
+
+        // Correction des petites cardinalités (comptage linéaire)
+        if (estimate <= 2.5 * REGISTER_COUNT && zeros > 0) {
+            estimate = REGISTER_COUNT * Math.log((double) REGISTER_COUNT / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Fusionne un autre croquis dans celui-ci (union des ensembles)
+     * @param other le croquis à fusionner, qui n'est pas modifié
+     */
+    public void merge(CardinalitySketch other) {
+        int otherCount = other.buffer.getInt(other.base + COUNT_OFFSET);
+        if (otherCount != DENSE) {
+            for (int i = 0; i < otherCount; i++) {
+                addHash(other.buffer.getInt(other.base + DATA_OFFSET + i * 4));
+            }
+            return;
+        }
+
+        toDense();
+        for (int i = 0; i < REGISTER_COUNT; i++) {
+            updateRegister(i, other.buffer.get(other.base + DATA_OFFSET + i));
+        }
+    }
+
+    /**
+     * Remplace le contenu de ce croquis par une copie d'un autre
+     * @param other le croquis à copier
+     */
+    public void copyFrom(CardinalitySketch other) {
+        for (int i = 0; i < SIZE; i += 8) {
+            buffer.putLong(base + i, other.buffer.getLong(other.base + i));
+        }
+    }
+
+    /**
+     * @return true si le croquis est passé en mode HyperLogLog
+     */
+    public boolean isDense() {
+        return buffer.getInt(base + COUNT_OFFSET) == DENSE;
+    }
+
+    private void addHash(int hash) {
+        int count = buffer.getInt(base + COUNT_OFFSET);
+        if (count == DENSE) {
+            addToRegisters(hash);
+            return;
+        }
+
+        // Recherche dichotomique dans la liste triée
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int current = buffer.getInt(base + DATA_OFFSET + mid * 4);
+            if (current < hash) {
+                low = mid + 1;
+            } else if (current > hash) {
+                high = mid - 1;
+            } else {
+                return; // Déjà présent
+            }
+        }
+
+        if (count == SPARSE_CAPACITY) {
+            toDense();
+            addToRegisters(hash);
+            return;
+        }
+
+        for (int i = count; i > low; i--) {
+            buffer.putInt(base + DATA_OFFSET + i * 4, buffer.getInt(base + DATA_OFFSET + (i - 1) * 4));
+        }
+        buffer.putInt(base + DATA_OFFSET + low * 4, hash);
+        buffer.putInt(base + COUNT_OFFSET, count + 1);
+    }
+
+    /**
+     * Convertit la liste exacte en registres HyperLogLog
+     */
+    private void toDense() {
+        int count = buffer.getInt(base + COUNT_OFFSET);
+        if (count == DENSE) {
+            return;
+        }
+
+        // La liste et les registres partagent la même zone : on sauvegarde d'abord
+        int[] hashes = new int[count];
+        for (int i = 0; i < count; i++) {
+            hashes[i] = buffer.getInt(base + DATA_OFFSET + i * 4);
+        }
+        for (int i = 0; i < REGISTER_COUNT; i += 8) {
+            buffer.putLong(base + DATA_OFFSET + i, 0L);
+        }
+        buffer.putInt(base + COUNT_OFFSET, DENSE);
+        buffer.putInt(base + ZEROS_OFFSET, REGISTER_COUNT);
+        buffer.putLong(base + INVERSE_SUM_OFFSET, (long) REGISTER_COUNT << 32);
+
+        for (int hash : hashes) {
+            addToRegisters(hash);
+        }
+    }
+
+    private void addToRegisters(int hash) {
+        int index = hash >>> (32 - PRECISION);
+        // Rang du premier bit à 1 dans les bits restants (borné par une sentinelle)
+        int rank = Integer.numberOfLeadingZeros((hash << PRECISION) | (1 << (PRECISION - 1))) + 1;
+        updateRegister(index, rank);
+    }
+
+    private void updateRegister(int index, int rank) {
+        int position = base + DATA_OFFSET + index;
+        int current = buffer.get(position);
+        if (rank <= current) {
+            return;
+        }
+
+        if (current == 0) {
+            buffer.putInt(base + ZEROS_OFFSET, buffer.getInt(base + ZEROS_OFFSET) - 1);
+        }
+        long inverseSum = buffer.getLong(base + INVERSE_SUM_OFFSET);
+        inverseSum -= (1L << (32 - current)) - (1L << (32 - rank));
+        buffer.putLong(base + INVERSE_SUM_OFFSET, inverseSum);
+        buffer.put(position, (byte) rank);
+    }
+
+    /**
+     * Hachage 64 bits (finaliseur de MurmurHash3) réduit à 32 bits
+     */
+    private static int hash(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return (int) (value ^ (value >>> 32));
+    }
+}
@@ -0,0 +1,129 @@
+package main.java.com.idsproject.network;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Croquis Count-Min : estimation de la fréquence de clés en mémoire fixe.
+ *
+ * Chaque clé incrémente un compteur par ligne, choisi par une fonction de hachage
+ * propre à la ligne ; l'estimation est le minimum des compteurs de la clé. Elle
+ * ne sous-estime jamais, et la surestimation est bornée (avec forte probabilité)
+ * par le volume total divisé par la largeur.
+ *
+ * Les compteurs sont atomiques : ajouts et lectures peuvent être concurrents.
+ *
+ * Deux remises à zéro, sans coût l'une comme l'autre si rien n'a été ajouté depuis
+ * la précédente : clear écrit les compteurs en place ; reset remplace le tableau,
+ * au prix d'une allocation (depth x width x 8 octets), pour les usages où les
+ * fenêtres tournent presque à chaque ajout (rejeu d'horodatages clairsemés, voir
+ * HeavyHitterDetector). Dans les deux cas, un ajout concurrent d'une remise à zéro
+ * peut être compté dans la fenêtre suivante ; avec reset, il peut aussi être perdu.
+ */
+public class CountMinSketch {
+
+    private volatile AtomicLongArray counters;
+    private volatile boolean dirty; // Au moins un ajout depuis la dernière remise à zéro
+    private final int depth;
+    private final int width;
+    private final int mask;
+
+    /**
+     * @param depth le nombre de lignes (fonctions de hachage)
+     * @param width le nombre de compteurs par ligne (arrondi à la puissance de 2 supérieure)
+     */
+    public CountMinSketch(int depth, int width) {
+        if (depth < 1 || width < 1 || width > (1 << 24)) {
+            throw new IllegalArgumentException("Croquis invalide: " + depth + " x " + width);
+        }
+        this.depth = depth;
+        this.width = Integer.highestOneBit(width) == width ? width : Integer.highestOneBit(width) << 1;
+        this.mask = this.width - 1;
+        this.counters = new AtomicLongArray(depth * this.width);
+    }
+
+    /**
+     * Ajoute une occurrence d'une clé
+     * @param key la clé
+     * @param count le nombre d'occurrences à ajouter
+     * @return l'estimation de la fréquence de la clé après l'ajout
+     */
+    public long add(long key, long count) {
+        long hash = mix(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+
+        AtomicLongArray counters = this.counters;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            long value = counters.addAndGet(row * width + ((h1 + row * h2) & mask), count);
+            estimate = Math.min(estimate, value);
+        }
+        // Marqué après l'écriture : un compteur écrit pendant une remise à zéro sera
+        // toujours effacé par la suivante
+        if (!dirty) {
+            dirty = true;
+        }
+        return estimate;
+    }
+
+    /**
+     * @param key la clé
+     * @return l'estimation de la fréquence de la clé
+     */
+    public long estimate(long key) {
+        long hash = mix(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+
+        AtomicLongArray counters = this.counters;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(row * width + ((h1 + row * h2) & mask)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Remet tous les compteurs à zéro, en place. Un ajout concurrent peut rester
+     * compté dans la fenêtre suivante.
+     */
+    public void clear() {
+        if (dirty) {
+            dirty = false;
+            AtomicLongArray counters = this.counters;
+            for (int i = 0; i < counters.length(); i++) {
+                counters.set(i, 0L);
+            }
+        }
+    }
+
+    /**
+     * Remet tous les compteurs à zéro en remplaçant le tableau : une allocation,
+     * mise à zéro en bloc par la JVM, plutôt qu'une écriture atomique par compteur.
+     * Un ajout concurrent qui a déjà lu l'ancien tableau y écrit : il est perdu. S'il
+     * arrive sur un croquis encore vierge, que reset ne remplace pas, il est compté
+     * dans la fenêtre suivante.
+     */
+    public void reset() {
+        if (dirty) {
+            dirty = false;
+            counters = new AtomicLongArray(counters.length());
+        }
+    }
+
+    /**
+     * @return la mémoire occupée par les compteurs (en octets)
+     */
+    public long getMemoryBytes() {
+        return (long) counters.length() * 8;
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
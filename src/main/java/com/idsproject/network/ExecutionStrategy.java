@@ -0,0 +1,75 @@
+package main.java.com.idsproject.network;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Stratégie d'exécution du traitement des connexions dans le moniteur réseau.
+ */
+public enum ExecutionStrategy {
+
+    /**
+     * Pool fixe de threads plateforme (comportement historique)
+     */
+    FIXED_POOL,
+
+    /**
+     * Un thread virtuel par connexion. Nécessite Java 21 ; sur une JVM plus ancienne,
+     * on se replie sur un pool de threads plateforme non borné.
+     */
+    VIRTUAL_THREADS;
+
+    /**
+     * Crée l'exécuteur correspondant à la stratégie
+     * @param poolSize la taille du pool pour FIXED_POOL
+     * @return l'exécuteur
+     */
+    public ExecutorService newExecutor(int poolSize) {
+        if (this == FIXED_POOL) {
+            return Executors.newFixedThreadPool(poolSize);
+        }
+
+        ExecutorService virtual = newVirtualThreadExecutor();
+        if (virtual != null) {
+            return virtual;
+        }
+
+        System.err.println("Threads virtuels indisponibles sur cette JVM (Java " +
+                Runtime.version().feature() + "), repli sur un pool de threads non borné");
+        return Executors.newCachedThreadPool();
+    }
+
+    /**
+     * Indique si la JVM courante fournit des threads virtuels
+     * @return true si Executors.newVirtualThreadPerTaskExecutor est disponible
+     */
+    public static boolean isVirtualThreadsAvailable() {
+        return findVirtualThreadFactoryMethod() != null;
+    }
+
+    /**
+     * Obtient Executors.newVirtualThreadPerTaskExecutor par réflexion,
+     * le projet devant continuer à compiler avec Java 11
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        Method factory = findVirtualThreadFactoryMethod();
+        if (factory == null) {
+            return null;
+        }
+
+        try {
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static Method findVirtualThreadFactoryMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
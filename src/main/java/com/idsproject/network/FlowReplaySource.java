@@ -0,0 +1,461 @@
+package main.java.com.idsproject.network;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Source de rejeu des fichiers de flux CSV produits par TestDataGenerator
+ * (data/normal_traffic.csv, data/attack_patterns.csv).
+ *
+ * Le fichier est lu par blocs dans un tampon réutilisé et découpé par un tokenizer
+ * sans allocation : les champs sont décodés directement depuis les octets en primitives
+ * (adresses IPv4 en int, ports, octets, horodatage en millisecondes). Rejouée vers un
+ * moniteur, chaque ligne produit un paquet de son pool, livré par lots via
+ * NetworkMonitor.injectPackets ; rejouée vers un simple écouteur (chargement hors
+ * ligne, voir OfflineTrainer), chaque ligne est décodée dans un unique paquet réutilisé,
+ * sans moniteur ni pool. Pour les fichiers étiquetés, le type d'attaque est attaché en métadonnée
+ * (clé ATTACK_TYPE_METADATA) comme vérité terrain.
+ */
+public class FlowReplaySource {
+
+    /**
+     * Clé de métadonnée portant l'étiquette attack_type d'un flux d'attaque
+     */
+    public static final String ATTACK_TYPE_METADATA = "attack_type";
+
+    /**
+     * Cadence du rejeu
+     */
+    public enum ReplayMode {
+        /** Aussi vite que la détection le permet */
+        AS_FAST_AS_POSSIBLE,
+        /** Respecte les écarts d'horodatage du fichier, divisés par le facteur de vitesse */
+        TIMESTAMP_FAITHFUL
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_FIELDS = 16;
+    private static final int BATCH_SIZE = 256;
+
+    // Étiquettes connues, réutilisées pour éviter une allocation par ligne
+    private static final String[] KNOWN_LABELS = {"DoS", "PortScan", "BruteForce"};
+    private static final byte[][] KNOWN_LABEL_BYTES = new byte[KNOWN_LABELS.length][];
+
+    static {
+        for (int i = 0; i < KNOWN_LABELS.length; i++) {
+            KNOWN_LABEL_BYTES[i] = KNOWN_LABELS[i].getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private final Path file;
+    private final ReplayMode mode;
+    private final double speedFactor;
+
+    // Tampon de lecture et positions des champs de la ligne courante
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final int[] fieldStart = new int[MAX_FIELDS];
+    private final int[] fieldEnd = new int[MAX_FIELDS];
+
+    // Fuseau des horodatages locaux du fichier, et décalage de la dernière heure locale lue
+    private ZoneRules zoneRules;
+    private long cachedLocalHour;
+    private long cachedOffsetMillis;
+    private boolean labelled;
+
+    // Statistiques du dernier rejeu
+    private long rowsReplayed;
+    private long attackRows;
+    private long malformedRows;
+
+    /**
+     * @param file le fichier CSV de flux
+     * @param mode la cadence du rejeu
+     * @param speedFactor le facteur d'accélération en mode TIMESTAMP_FAITHFUL (1.0 = temps réel)
+     */
+    public FlowReplaySource(Path file, ReplayMode mode, double speedFactor) {
+        if (speedFactor <= 0) {
+            throw new IllegalArgumentException("Le facteur de vitesse doit être positif: " + speedFactor);
+        }
+        this.file = file;
+        this.mode = mode;
+        this.speedFactor = speedFactor;
+    }
+
+    /**
+     * Rejoue le fichier à travers les écouteurs du moniteur
+     * @param monitor le moniteur dont les écouteurs reçoivent les paquets
+     * @return le nombre de lignes rejouées
+     * @throws IOException si le fichier est illisible
+     */
+    public long replay(NetworkMonitor monitor) throws IOException {
+        return replay(monitor, null, null);
+    }
+
+    /**
+     * Rejoue le fichier vers un écouteur, ligne par ligne, sur le thread appelant.
+     * Toutes les lignes sont décodées dans le même paquet : l'écouteur doit copier
+     * ce dont il a besoin plutôt que conserver le paquet.
+     * @param listener l'écouteur recevant chaque ligne décodée
+     * @return le nombre de lignes rejouées
+     * @throws IOException si le fichier est illisible
+     */
+    public long replay(NetworkMonitor.PacketListener listener) throws IOException {
+        NetworkMonitor.NetworkPacket packet = new NetworkMonitor.NetworkPacket(
+                InetAddress.getLoopbackAddress(), InetAddress.getLoopbackAddress(), 0, 0, 0, 0);
+        return replay(null, listener, packet);
+    }
+
+    /**
+     * Boucle de rejeu : les lignes vont soit au moniteur, par lots de paquets de son pool,
+     * soit à l'écouteur, décodées dans le paquet réutilisé
+     */
+    private long replay(NetworkMonitor monitor, NetworkMonitor.PacketListener listener,
+                        NetworkMonitor.NetworkPacket reused) throws IOException {
+        rowsReplayed = 0;
+        attackRows = 0;
+        malformedRows = 0;
+        labelled = false;
+        zoneRules = ZoneId.systemDefault().getRules();
+        cachedLocalHour = Long.MIN_VALUE;
+
+        List<NetworkMonitor.NetworkPacket> batch = new ArrayList<>(BATCH_SIZE);
+        long firstTimestamp = Long.MIN_VALUE;
+        long startNanos = System.nanoTime();
+        boolean header = true;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer view = ByteBuffer.wrap(buffer);
+            int length = 0;
+
+            while (true) {
+                view.clear().position(length);
+                int read = channel.read(view);
+                if (read > 0) {
+                    length += read;
+                }
+                boolean endOfFile = read < 0;
+
+                // Traite toutes les lignes complètes du tampon
+                int lineStart = 0;
+                int scan = 0;
+                while (true) {
+                    int newline = indexOf((byte) '\n', scan, length);
+                    if (newline < 0) {
+                        if (endOfFile && lineStart < length) {
+                            newline = length; // Dernière ligne sans fin de ligne
+                        } else {
+                            break;
+                        }
+                    }
+
+                    int lineEnd = newline > lineStart && buffer[newline - 1] == '\r' ? newline - 1 : newline;
+                    if (lineEnd > lineStart) {
+                        if (header) {
+                            labelled = tokenize(lineStart, lineEnd) >= 10;
+                            header = false;
+                        } else {
+                            NetworkMonitor.NetworkPacket packet = parseRow(lineStart, lineEnd, monitor, reused);
+                            if (packet != null) {
+                                if (mode == ReplayMode.TIMESTAMP_FAITHFUL) {
+                                    if (firstTimestamp == Long.MIN_VALUE) {
+                                        firstTimestamp = packet.getTimestamp();
+                                    }
+                                    pace(packet.getTimestamp() - firstTimestamp, startNanos, monitor, batch);
+                                }
+                                rowsReplayed++;
+                                if (listener != null) {
+                                    listener.onPacketReceived(packet);
+                                } else {
+                                    batch.add(packet);
+                                    if (batch.size() >= BATCH_SIZE) {
+                                        flush(monitor, batch);
+                                    }
+                                }
+                            }
+                        }
+                    }
+
+                    lineStart = newline + 1;
+                    scan = lineStart;
+                    if (lineStart >= length) {
+                        break;
+                    }
+                }
+
+                if (endOfFile) {
+                    break;
+                }
+
+                // Conserve la ligne incomplète en début de tampon
+                int remaining = Math.max(0, length - lineStart);
+                if (remaining == buffer.length) {
+                    throw new IOException("Ligne trop longue dans " + file);
+                }
+                System.arraycopy(buffer, lineStart, buffer, 0, remaining);
+                length = remaining;
+            }
+        }
+
+        flush(monitor, batch);
+        return rowsReplayed;
+    }
+
+    /**
+     * Attend jusqu'à l'instant de rejeu correspondant à l'écart d'horodatage
+     */
+    private void pace(long elapsedMillis, long startNanos, NetworkMonitor monitor,
+                      List<NetworkMonitor.NetworkPacket> batch) {
+        long targetNanos = startNanos + (long) (elapsedMillis * 1_000_000L / speedFactor);
+        long waitNanos = targetNanos - System.nanoTime();
+        if (waitNanos > 0) {
+            // Livre ce qui est prêt avant d'attendre
+            flush(monitor, batch);
+            while ((waitNanos = targetNanos - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(waitNanos);
+            }
+        }
+    }
+
+    /**
+     * Décode une ligne de données en paquet
+     * @param reused le paquet à remplir, ou null pour en prendre un du pool du moniteur
+     * @return le paquet rempli, ou null si la ligne est invalide
+     */
+    private NetworkMonitor.NetworkPacket parseRow(int start, int end, NetworkMonitor monitor,
+                                                  NetworkMonitor.NetworkPacket reused) {
+        int fields = tokenize(start, end);
+        if (fields < 9 || (labelled && fields < 11)) {
+            malformedRows++;
+            return null;
+        }
+
+        long timestamp = parseTimestamp(fieldStart[0], fieldEnd[0]);
+        int sourceIp = parseIPv4(fieldStart[1], fieldEnd[1]);
+        int destinationIp = parseIPv4(fieldStart[2], fieldEnd[2]);
+        long sourcePort = parseLong(fieldStart[3], fieldEnd[3]);
+        long destinationPort = parseLong(fieldStart[4], fieldEnd[4]);
+        long bytes = parseLong(fieldStart[6], fieldEnd[6]);
+
+        if (timestamp < 0 || sourcePort < 0 || destinationPort < 0 || bytes < 0
+                || (sourceIp == 0 && !isZeroAddress(fieldStart[1], fieldEnd[1]))
+                || (destinationIp == 0 && !isZeroAddress(fieldStart[2], fieldEnd[2]))) {
+            malformedRows++;
+            return null;
+        }
+
+        NetworkMonitor.NetworkPacket packet = reused != null ? reused : monitor.getPacketPool().acquire();
+        packet.setIPv4(sourceIp, destinationIp, (int) sourcePort, (int) destinationPort, timestamp, bytes);
+
+        if (labelled) {
+            // Le champ flags peut contenir des virgules : l'étiquette est l'avant-dernier champ
+            int label = fields - 2;
+            attackRows++;
+            packet.addMetadata(ATTACK_TYPE_METADATA, label(fieldStart[label], fieldEnd[label]));
+        }
+
+        return packet;
+    }
+
+    /**
+     * Découpe la ligne sur les virgules
+     * @return le nombre de champs
+     */
+    private int tokenize(int start, int end) {
+        int count = 0;
+        fieldStart[0] = start;
+        for (int i = start; i < end; i++) {
+            if (buffer[i] == ',') {
+                fieldEnd[count] = i;
+                if (++count == MAX_FIELDS) {
+                    return count;
+                }
+                fieldStart[count] = i + 1;
+            }
+        }
+        fieldEnd[count] = end;
+        return count + 1;
+    }
+
+    private int indexOf(byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return la valeur décimale du champ, ou -1 s'il n'est pas numérique
+     */
+    private long parseLong(int start, int end) {
+        if (start >= end) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * @return l'adresse IPv4 en int (ordre réseau), ou 0 si le champ est invalide
+     */
+    private int parseIPv4(int start, int end) {
+        int address = 0;
+        int octet = 0;
+        int digits = 0;
+        int dots = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buffer[i];
+            if (b == '.') {
+                if (digits == 0 || ++dots > 3) {
+                    return 0;
+                }
+                address = (address << 8) | octet;
+                octet = 0;
+                digits = 0;
+            } else if (b >= '0' && b <= '9' && digits < 3) {
+                octet = octet * 10 + (b - '0');
+                digits++;
+                if (octet > 255) {
+                    return 0;
+                }
+            } else {
+                return 0;
+            }
+        }
+        if (dots != 3 || digits == 0) {
+            return 0;
+        }
+        return (address << 8) | octet;
+    }
+
+    private boolean isZeroAddress(int start, int end) {
+        return end - start == 7 && buffer[start] == '0' && buffer[start + 2] == '0'
+                && buffer[start + 4] == '0' && buffer[start + 6] == '0';
+    }
+
+    /**
+     * Décode "yyyy-MM-dd HH:mm:ss" (heure locale) en millisecondes depuis l'époque.
+     * Le décalage du fuseau est celui de la date lue, pas celui du rejeu : un fichier
+     * enregistré à l'autre saison, ou qui traverse un changement d'heure, reste exact
+     * @return l'horodatage, ou -1 si le champ est invalide
+     */
+    private long parseTimestamp(int start, int end) {
+        if (end - start != 19) {
+            return -1;
+        }
+        long year = parseLong(start, start + 4);
+        long month = parseLong(start + 5, start + 7);
+        long day = parseLong(start + 8, start + 10);
+        long hour = parseLong(start + 11, start + 13);
+        long minute = parseLong(start + 14, start + 16);
+        long second = parseLong(start + 17, start + 19);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 60) {
+            return -1;
+        }
+
+        long seconds = daysFromCivil(year, month, day) * 86400 + hour * 3600 + minute * 60 + second;
+        return seconds * 1000 - offsetMillis(seconds);
+    }
+
+    /**
+     * Décalage du fuseau pour une heure locale, mis en cache par heure. Une heure qui
+     * contient un changement d'heure n'est pas mise en cache : chaque ligne y est convertie
+     * @param localSeconds l'heure locale, en secondes depuis l'époque
+     */
+    private long offsetMillis(long localSeconds) {
+        long localHour = Math.floorDiv(localSeconds, 3600);
+        if (localHour == cachedLocalHour) {
+            return cachedOffsetMillis;
+        }
+
+        LocalDateTime hourStart = LocalDateTime.ofEpochSecond(localHour * 3600, 0, ZoneOffset.UTC);
+        ZoneOffset offset = zoneRules.getOffset(hourStart);
+        if (!offset.equals(zoneRules.getOffset(hourStart.plusSeconds(3599)))) {
+            LocalDateTime local = LocalDateTime.ofEpochSecond(localSeconds, 0, ZoneOffset.UTC);
+            return zoneRules.getOffset(local).getTotalSeconds() * 1000L;
+        }
+        cachedLocalHour = localHour;
+        cachedOffsetMillis = offset.getTotalSeconds() * 1000L;
+        return cachedOffsetMillis;
+    }
+
+    /**
+     * Nombre de jours depuis le 1970-01-01 pour une date du calendrier grégorien
+     */
+    private static long daysFromCivil(long year, long month, long day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = Math.floorDiv(year, 400);
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * @return l'étiquette connue correspondante, ou une nouvelle chaîne pour une étiquette inconnue
+     */
+    private String label(int start, int end) {
+        for (int i = 0; i < KNOWN_LABEL_BYTES.length; i++) {
+            byte[] known = KNOWN_LABEL_BYTES[i];
+            if (known.length == end - start) {
+                int j = 0;
+                while (j < known.length && known[j] == buffer[start + j]) {
+                    j++;
+                }
+                if (j == known.length) {
+                    return KNOWN_LABELS[i];
+                }
+            }
+        }
+        return new String(buffer, start, end - start, StandardCharsets.US_ASCII);
+    }
+
+    private static void flush(NetworkMonitor monitor, List<NetworkMonitor.NetworkPacket> batch) {
+        if (!batch.isEmpty()) {
+            monitor.injectPackets(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * @return le nombre de lignes rejouées lors du dernier rejeu
+     */
+    public long getRowsReplayed() {
+        return rowsReplayed;
+    }
+
+    /**
+     * @return le nombre de lignes étiquetées comme attaque lors du dernier rejeu
+     */
+    public long getAttackRows() {
+        return attackRows;
+    }
+
+    /**
+     * @return le nombre de lignes ignorées car invalides
+     */
+    public long getMalformedRows() {
+        return malformedRows;
+    }
+}
@@ -0,0 +1,396 @@
+package main.java.com.idsproject.network;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Détection agrégée des flux volumineux (heavy hitters), en mémoire constante.
+ *
+ * Chaque paquet est compté selon trois dimensions : l'adresse de destination, le port
+ * de destination et le préfixe source (/24 en IPv4, /48 en IPv6). Les fréquences sont
+ * estimées par des croquis Count-Min sur deux générations d'une fenêtre chacune ;
+ * la génération précédente est pondérée par la part de la fenêtre qui la recouvre
+ * encore. Une attaque volumétrique venant de millions de sources usurpées, dont
+ * aucune ne franchit les seuils par hôte, est ainsi visible sur sa destination,
+ * quelle que soit la quantité d'adresses sources.
+ *
+ * Les K clés les plus fréquentes de chaque dimension sont conservées dans un tas
+ * (voir getTopK), pour l'affichage et le suivi des attaques en cours.
+ *
+ * À chaque rotation, les croquis recyclés sont remis à zéro en place. Un rejeu dont
+ * les horodatages sont clairsemés (un hôte à la fois, voir OfflineTrainer) fait
+ * tourner les fenêtres presque à chaque paquet : les croquis y sont remplacés plutôt
+ * qu'effacés (voir CountMinSketch.reset), et un ajout concurrent peut être perdu.
+ */
+public class HeavyHitterDetector {
+
+    /**
+     * Dimensions d'agrégation
+     */
+    public enum Dimension {
+        DESTINATION_ADDRESS,
+        DESTINATION_PORT,
+        SOURCE_PREFIX
+    }
+
+    private static final int SKETCH_DEPTH = 4;
+    private static final int SKETCH_WIDTH = 2048;
+    private static final int DIMENSIONS = Dimension.values().length;
+
+    private final long windowDuration;
+    private final long[] thresholds;
+    // Deux générations de croquis par dimension, indexées par la parité de la génération
+    private final CountMinSketch[][] sketches = new CountMinSketch[2][DIMENSIONS];
+    private final TopK[] topK = new TopK[DIMENSIONS];
+    private final boolean denseRotations;
+    private volatile long generation = Long.MIN_VALUE;
+    private volatile long latestTime = 0;
+
+    /**
+     * @param windowDuration la durée de la fenêtre de comptage (en millisecondes)
+     * @param destinationThreshold le nombre de paquets par fenêtre vers une même adresse
+     * @param portThreshold le nombre de paquets par fenêtre vers un même port
+     * @param prefixThreshold le nombre de paquets par fenêtre depuis un même préfixe source
+     * @param topK le nombre de clés conservées par dimension
+     */
+    public HeavyHitterDetector(long windowDuration, long destinationThreshold, long portThreshold,
+                               long prefixThreshold, int topK) {
+        this(windowDuration, destinationThreshold, portThreshold, prefixThreshold, topK, false);
+    }
+
+    /**
+     * @param windowDuration la durée de la fenêtre de comptage (en millisecondes)
+     * @param destinationThreshold le nombre de paquets par fenêtre vers une même adresse
+     * @param portThreshold le nombre de paquets par fenêtre vers un même port
+     * @param prefixThreshold le nombre de paquets par fenêtre depuis un même préfixe source
+     * @param topK le nombre de clés conservées par dimension
+     * @param denseRotations true si les fenêtres tournent presque à chaque paquet : les
+     *                       croquis sont alors remplacés plutôt qu'effacés
+     */
+    public HeavyHitterDetector(long windowDuration, long destinationThreshold, long portThreshold,
+                               long prefixThreshold, int topK, boolean denseRotations) {
+        if (windowDuration < 1 || topK < 1) {
+            throw new IllegalArgumentException("Détecteur invalide: " + windowDuration + " ms, top " + topK);
+        }
+        this.windowDuration = windowDuration;
+        this.denseRotations = denseRotations;
+        this.thresholds = new long[] {destinationThreshold, portThreshold, prefixThreshold};
+        for (int g = 0; g < 2; g++) {
+            for (int d = 0; d < DIMENSIONS; d++) {
+                sketches[g][d] = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+            }
+        }
+        for (int d = 0; d < DIMENSIONS; d++) {
+            this.topK[d] = new TopK(topK);
+        }
+    }
+
+    /**
+     * Compte un paquet dans les trois dimensions
+     * @param packet le paquet
+     * @return la clé dont le seuil est le plus largement dépassé, ou null si aucun seuil n'est atteint
+     */
+    public HeavyHitter record(NetworkMonitor.NetworkPacket packet) {
+        long time = packet.getTimestamp();
+        long currentGeneration = rotate(time);
+        double previousWeight = previousWeight(currentGeneration, time);
+        boolean ipv6 = packet.isIPv6();
+
+        HeavyHitter hitter = null;
+        double worstRatio = 1.0;
+
+        for (int d = 0; d < DIMENSIONS; d++) {
+            Dimension dimension = Dimension.values()[d];
+            int family = familyOf(dimension, ipv6);
+            long key = keyOf(dimension, packet);
+            long sketchKey = sketchKey(family, key);
+
+            long count = sketches[(int) (currentGeneration & 1)][d].add(sketchKey, 1)
+                + (long) (sketches[(int) ((currentGeneration - 1) & 1)][d].estimate(sketchKey) * previousWeight);
+
+            topK[d].offer(family, key, count);
+
+            double ratio = count / (double) thresholds[d];
+            if (ratio > worstRatio) {
+                worstRatio = ratio;
+                hitter = new HeavyHitter(dimension, family, key, count, thresholds[d]);
+            }
+        }
+        return hitter;
+    }
+
+    /**
+     * Retourne les clés les plus fréquentes d'une dimension, par fréquence décroissante
+     * @param dimension la dimension
+     * @return les clés suivies, avec leur fréquence estimée sur la fenêtre courante
+     */
+    public List<HeavyHitter> getTopK(Dimension dimension) {
+        int d = dimension.ordinal();
+        long time = latestTime;
+        long currentGeneration = generation;
+        double previousWeight = previousWeight(currentGeneration, time);
+
+        List<HeavyHitter> hitters = new ArrayList<>();
+        for (long[] entry : topK[d].snapshot()) {
+            int family = (int) entry[0];
+            long key = entry[1];
+            long sketchKey = sketchKey(family, key);
+            long count = sketches[(int) (currentGeneration & 1)][d].estimate(sketchKey)
+                + (long) (sketches[(int) ((currentGeneration - 1) & 1)][d].estimate(sketchKey) * previousWeight);
+            hitters.add(new HeavyHitter(dimension, family, key, count, thresholds[d]));
+        }
+        hitters.sort((a, b) -> Long.compare(b.getCount(), a.getCount()));
+        return hitters;
+    }
+
+    /**
+     * @return la mémoire occupée par les croquis (en octets)
+     */
+    public long getMemoryBytes() {
+        return 2L * DIMENSIONS * sketches[0][0].getMemoryBytes();
+    }
+
+    /**
+     * Passe à la génération de l'instant donné si nécessaire
+     * @return la génération courante
+     */
+    private long rotate(long time) {
+        if (time > latestTime) {
+            latestTime = time;
+        }
+
+        long target = Math.floorDiv(time, windowDuration);
+        long current = generation;
+        if (target <= current) {
+            return current; // Les paquets en retard sont comptés dans la génération courante
+        }
+
+        synchronized (this) {
+            current = generation;
+            if (target > current) {
+                // La génération la plus ancienne est recyclée ; après un saut, tout est effacé
+                for (int d = 0; d < DIMENSIONS; d++) {
+                    recycle(sketches[(int) (target & 1)][d]);
+                    if (current == Long.MIN_VALUE || target > current + 1) {
+                        recycle(sketches[(int) ((target - 1) & 1)][d]);
+                    }
+                }
+                generation = target;
+                for (int d = 0; d < DIMENSIONS; d++) {
+                    topK[d].decay();
+                }
+            }
+            return generation;
+        }
+    }
+
+    private void recycle(CountMinSketch sketch) {
+        if (denseRotations) {
+            sketch.reset();
+        } else {
+            sketch.clear();
+        }
+    }
+
+    /**
+     * Poids de la génération précédente : la part de la fenêtre glissante qui la recouvre encore
+     */
+    private double previousWeight(long currentGeneration, long time) {
+        long elapsed = time - currentGeneration * windowDuration;
+        return Math.max(0.0, 1.0 - elapsed / (double) windowDuration);
+    }
+
+    private static int familyOf(Dimension dimension, boolean ipv6) {
+        if (dimension == Dimension.DESTINATION_PORT) {
+            return 0;
+        }
+        return ipv6 ? 6 : 4;
+    }
+
+    private static long keyOf(Dimension dimension, NetworkMonitor.NetworkPacket packet) {
+        switch (dimension) {
+            case DESTINATION_ADDRESS:
+                // IPv6 : agrégé au /64
+                return packet.isIPv6() ? packet.getDestinationHigh() : packet.getDestinationIPv4() & 0xFFFFFFFFL;
+            case DESTINATION_PORT:
+                return packet.getDestinationPort();
+            default:
+                return packet.isIPv6() ? packet.getSourceHigh() >>> 16 : (packet.getSourceIPv4() & 0xFFFFFFFFL) >>> 8;
+        }
+    }
+
+    private static long sketchKey(int family, long key) {
+        return key * 31 + family;
+    }
+
+    /**
+     * Tas minimum des K clés les plus fréquentes d'une dimension.
+     * Le minimum est lisible sans verrou, ce qui évite de verrouiller pour
+     * les clés trop peu fréquentes pour y entrer.
+     */
+    private static class TopK {
+        private final int[] families;
+        private final long[] keys;
+        private final long[] counts;
+        private int size;
+        private volatile long minimum = 0;
+
+        TopK(int capacity) {
+            families = new int[capacity];
+            keys = new long[capacity];
+            counts = new long[capacity];
+        }
+
+        void offer(int family, long key, long count) {
+            if (count <= minimum) {
+                return;
+            }
+
+            synchronized (this) {
+                for (int i = 0; i < size; i++) {
+                    if (keys[i] == key && families[i] == family) {
+                        if (count > counts[i]) {
+                            counts[i] = count;
+                            siftDown(i);
+                        }
+                        updateMinimum();
+                        return;
+                    }
+                }
+
+                if (size < keys.length) {
+                    families[size] = family;
+                    keys[size] = key;
+                    counts[size] = count;
+                    siftUp(size++);
+                } else if (count > counts[0]) {
+                    families[0] = family;
+                    keys[0] = key;
+                    counts[0] = count;
+                    siftDown(0);
+                }
+                updateMinimum();
+            }
+        }
+
+        /**
+         * Au changement de génération, les fréquences mémorisées sont périmées :
+         * elles sont remises à zéro pour que de nouvelles clés puissent entrer
+         */
+        synchronized void decay() {
+            for (int i = 0; i < size; i++) {
+                counts[i] = 0;
+            }
+            minimum = 0;
+        }
+
+        synchronized List<long[]> snapshot() {
+            List<long[]> entries = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                entries.add(new long[] {families[i], keys[i]});
+            }
+            return entries;
+        }
+
+        private void updateMinimum() {
+            minimum = size < keys.length ? 0 : counts[0];
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (counts[parent] <= counts[i]) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && counts[left] < counts[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && counts[right] < counts[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int family = families[a];
+            families[a] = families[b];
+            families[b] = family;
+            long key = keys[a];
+            keys[a] = keys[b];
+            keys[b] = key;
+            long count = counts[a];
+            counts[a] = counts[b];
+            counts[b] = count;
+        }
+    }
+
+    /**
+     * Clé fréquente d'une dimension et sa fréquence estimée sur la fenêtre
+     */
+    public static class HeavyHitter {
+        private final Dimension dimension;
+        private final int family;
+        private final long key;
+        private final long count;
+        private final long threshold;
+
+        HeavyHitter(Dimension dimension, int family, long key, long count, long threshold) {
+            this.dimension = dimension;
+            this.family = family;
+            this.key = key;
+            this.count = count;
+            this.threshold = threshold;
+        }
+
+        public Dimension getDimension() { return dimension; }
+        public long getCount() { return count; }
+        public long getThreshold() { return threshold; }
+
+        /**
+         * @return la clé sous forme lisible (adresse, port ou préfixe)
+         */
+        public String getLabel() {
+            switch (dimension) {
+                case DESTINATION_ADDRESS:
+                    return family == 6 ? formatIPv6Prefix(key, 64) : formatIPv4(key);
+                case DESTINATION_PORT:
+                    return "port " + key;
+                default:
+                    return family == 6 ? formatIPv6Prefix(key << 16, 48) : formatIPv4(key << 8) + "/24";
+            }
+        }
+
+        private static String formatIPv4(long address) {
+            return ((address >>> 24) & 0xFF) + "." + ((address >>> 16) & 0xFF) + "."
+                + ((address >>> 8) & 0xFF) + "." + (address & 0xFF);
+        }
+
+        private static String formatIPv6Prefix(long high, int length) {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < length / 16; i++) {
+                builder.append(Long.toHexString((high >>> (48 - 16 * i)) & 0xFFFF)).append(':');
+            }
+            return builder.append(":/").append(length).toString();
+        }
+
+        @Override
+        public String toString() {
+            return getLabel() + " (" + count + " paquets)";
+        }
+    }
+}
@@ -0,0 +1,483 @@
+package main.java.com.idsproject.network;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Table des hôtes hors tas, à adressage ouvert, indexée par l'adresse source compactée
+ * (famille + 128 bits, voir NetworkPacket).
+ *
+ * Tous les emplacements ont la même taille et sont alloués d'un seul bloc dans un
+ * ByteBuffer direct : un en-tête (état, clé, dernière activité) suivi d'une zone de
+ * données libre dont la disposition appartient aux utilisateurs de la table
+ * (PacketAnalyzer, IDS). La mémoire est donc fixée à la construction et aucun objet
+ * n'est alloué par hôte, même sous une inondation d'adresses usurpées.
+ *
+ * Le sondage est linéaire et borné à MAX_PROBES emplacements : lorsqu'aucun
+ * emplacement n'est libre dans cette fenêtre, la politique d'éviction décide entre
+ * remplacer l'hôte le moins récemment actif de la fenêtre (EVICT_OLDEST) ou refuser
+ * le nouvel hôte (REJECT_NEW).
+ *
+ * Les hôtes inactifs sont libérés par une roue temporelle (timing wheel) dont les
+ * listes sont chaînées dans l'en-tête même des emplacements : chaque hôte y est
+ * inscrit une seule fois, à son insertion, et son trafic ne touche ensuite que sa
+ * dernière activité. Lorsque le curseur atteint un créneau, l'échéance de chacun de
+ * ses hôtes est relue : un hôte resté actif est replacé plus loin, les autres sont
+ * libérés. Un hôte est ainsi libéré peu après son échéance, quelle que soit la
+ * capacité de la table, et chaque appel d'expire traite une tranche de travail bornée.
+ *
+ * Concurrence : la recherche est sans verrou ; l'accès aux données d'un emplacement
+ * se fait sous un verrou parmi un ensemble de verrous répartis (lock / unlock),
+ * chacun couvrant des blocs de MAX_PROBES emplacements consécutifs. Une fenêtre de
+ * sondage chevauche donc au plus deux blocs : l'insertion ne prend que ces deux
+ * verrous, dans l'ordre de leurs indices, et les insertions de fenêtres disjointes
+ * progressent en parallèle. En dehors de l'insertion, un thread ne doit jamais
+ * verrouiller un second emplacement tant qu'il en détient un. La roue a son propre
+ * verrou : l'insertion le prend en détenant celui de l'emplacement, l'expiration ne
+ * fait que tenter (tryLock) celui des emplacements qu'elle libère.
+ */
+public class HostTable {
+
+    /**
+     * Politique appliquée lorsque la fenêtre de sondage d'un nouvel hôte est pleine
+     */
+    public enum EvictionPolicy {
+        EVICT_OLDEST,  // Remplace l'hôte le moins récemment actif de la fenêtre
+        REJECT_NEW     // Conserve les hôtes existants ; le nouvel hôte n'est pas suivi
+    }
+
+    public static final int MAX_PROBES = 32;
+
+    private static final int EMPTY = 0;
+    private static final int LIVE = 1;
+    private static final int DELETED = 2;
+
+    // En-tête d'un emplacement
+    private static final int STATE_OFFSET = 0;
+    private static final int FAMILY_OFFSET = 4;
+    private static final int HIGH_OFFSET = 8;
+    private static final int LOW_OFFSET = 16;
+    private static final int LAST_SEEN_OFFSET = 24;
+    private static final int WHEEL_NEXT_OFFSET = 32; // Emplacement suivant dans le créneau de la roue
+    private static final int HEADER_SIZE = 40;
+
+    // Roue d'expiration : WHEEL_SLOTS créneaux couvrant WHEEL_SPAN fois le délai d'inactivité
+    private static final int WHEEL_SLOTS = 64;
+    private static final int WHEEL_SPAN = 4;
+    private static final int NO_SLOT = -1;
+
+    private static final int MAX_LOCK_STRIPES = 4096;
+    private static final int STRIPE_SHIFT = Integer.numberOfTrailingZeros(MAX_PROBES);
+
+    private static final VarHandle STATE =
+        MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final ByteBuffer buffer;
+    private final int capacity;
+    private final int mask;
+    private final int slotSize;
+    private final EvictionPolicy evictionPolicy;
+    private final ReentrantLock[] stripes;
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+
+    // Roue d'expiration, sous wheelLock : tête de liste de chaque créneau
+    private final long idleDelay;
+    private final long wheelSlotDuration;
+    private final int[] wheelHeads = new int[WHEEL_SLOTS];
+    private final ReentrantLock wheelLock = new ReentrantLock();
+    private long cursorTick = Long.MIN_VALUE; // Créneau en cours de traitement
+
+    /**
+     * @param capacity le nombre d'emplacements (arrondi à la puissance de 2 supérieure)
+     * @param payloadSize la taille de la zone de données de chaque emplacement (en octets)
+     * @param idleDelay la durée d'inactivité au-delà de laquelle un hôte est libéré (en millisecondes)
+     * @param evictionPolicy la politique d'éviction lorsque la table est pleine
+     */
+    public HostTable(int capacity, int payloadSize, long idleDelay, EvictionPolicy evictionPolicy) {
+        if (capacity < 1 || capacity > (1 << 24) || payloadSize < 0 || idleDelay < 1) {
+            throw new IllegalArgumentException("Table invalide: " + capacity + " x " + payloadSize
+                    + " octets, inactivité " + idleDelay + " ms");
+        }
+        this.capacity = roundUpToPowerOfTwo(capacity);
+        this.mask = this.capacity - 1;
+        this.slotSize = (HEADER_SIZE + payloadSize + 7) & ~7;
+
+        long bytes = (long) this.capacity * slotSize;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Table trop grande: " + bytes + " octets");
+        }
+        this.buffer = ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+        this.evictionPolicy = evictionPolicy;
+
+        // Un verrou par bloc de MAX_PROBES emplacements, au plus MAX_LOCK_STRIPES
+        int blocks = Math.max(1, this.capacity >>> STRIPE_SHIFT);
+        this.stripes = new ReentrantLock[Math.min(blocks, MAX_LOCK_STRIPES)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+
+        this.idleDelay = idleDelay;
+        this.wheelSlotDuration = Math.max(1, idleDelay * WHEEL_SPAN / WHEEL_SLOTS);
+        Arrays.fill(wheelHeads, NO_SLOT);
+    }
+
+    /**
+     * Trouve ou insère l'hôte source d'un paquet et verrouille son emplacement
+     * @param packet le paquet
+     * @return l'emplacement verrouillé, ou -1 si l'hôte a été refusé (REJECT_NEW)
+     */
+    public int lock(NetworkMonitor.NetworkPacket packet) {
+        return lock(packet.isIPv6() ? 6 : 4, packet.getSourceHigh(), packet.getSourceLow(), packet.getTimestamp());
+    }
+
+    /**
+     * Trouve ou insère un hôte et verrouille son emplacement.
+     * L'appelant doit appeler unlock une fois les données lues ou modifiées.
+     *
+     * @param family la famille d'adresse (4 ou 6)
+     * @param high les 64 bits de poids fort de l'adresse
+     * @param low les 64 bits de poids faible de l'adresse
+     * @param now l'instant courant, utilisé comme activité initiale d'un nouvel hôte
+     * @return l'emplacement verrouillé, ou -1 si l'hôte a été refusé (REJECT_NEW)
+     */
+    public int lock(int family, long high, long low, long now) {
+        int home = hash(family, high, low) & mask;
+
+        while (true) {
+            int slot = find(home, family, high, low);
+            if (slot < 0) {
+                return insert(home, family, high, low, now);
+            }
+
+            ReentrantLock stripe = stripe(slot);
+            stripe.lock();
+            // L'emplacement a pu être libéré ou réattribué entre-temps
+            if (state(slot) == LIVE && matches(slot, family, high, low)) {
+                return slot;
+            }
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Libère le verrou d'un emplacement obtenu par lock
+     * @param slot l'emplacement
+     */
+    public void unlock(int slot) {
+        stripe(slot).unlock();
+    }
+
+    /**
+     * @return le tampon hébergeant les emplacements
+     */
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @param slot l'emplacement
+     * @return la position de la zone de données de l'emplacement dans le tampon
+     */
+    public int payloadOffset(int slot) {
+        return slot * slotSize + HEADER_SIZE;
+    }
+
+    /**
+     * @param slot un emplacement verrouillé
+     * @return l'instant de dernière activité de l'hôte
+     */
+    public long getLastSeen(int slot) {
+        return buffer.getLong(slot * slotSize + LAST_SEEN_OFFSET);
+    }
+
+    /**
+     * @param slot un emplacement verrouillé
+     * @param time l'instant de dernière activité de l'hôte
+     */
+    public void setLastSeen(int slot, long time) {
+        buffer.putLong(slot * slotSize + LAST_SEEN_OFFSET, time);
+    }
+
+    /**
+     * Libère les hôtes dont l'échéance (dernière activité + délai d'inactivité) est
+     * passée, en traitant les créneaux échus de la roue. Le travail d'un appel est
+     * borné ; le retard éventuel est rattrapé aux appels suivants. Un emplacement
+     * verrouillé est replacé au créneau suivant, et si un autre thread expire déjà,
+     * l'appel rend la main immédiatement.
+     *
+     * @param now l'instant courant
+     * @param budget le nombre maximal d'unités de travail (hôtes ou créneaux vides)
+     * @return le nombre d'hôtes libérés
+     */
+    public int expire(long now, int budget) {
+        if (!wheelLock.tryLock()) {
+            return 0;
+        }
+
+        try {
+            long nowTick = tick(now);
+            if (size.get() == 0) {
+                // Rien à expirer : le curseur peut sauter directement
+                cursorTick = Math.max(cursorTick, nowTick);
+                return 0;
+            }
+
+            int expired = 0;
+            int work = 0;
+
+            // Seuls les créneaux strictement passés sont entièrement échus
+            while (work < budget && cursorTick < nowTick) {
+                int wheelSlot = wheelIndex(cursorTick);
+                int slot = wheelHeads[wheelSlot];
+                work++;
+
+                if (slot == NO_SLOT) {
+                    cursorTick++;
+                    continue;
+                }
+                wheelHeads[wheelSlot] = buffer.getInt(slot * slotSize + WHEEL_NEXT_OFFSET);
+
+                ReentrantLock stripe = stripe(slot);
+                if (!stripe.tryLock()) {
+                    link(slot, cursorTick + 1);
+                    continue;
+                }
+                try {
+                    long deadline = getLastSeen(slot) + idleDelay;
+                    if (deadline <= now) {
+                        STATE.setRelease(buffer, slot * slotSize + STATE_OFFSET, DELETED);
+                        size.decrementAndGet();
+                        expired++;
+                    } else {
+                        link(slot, tick(deadline));
+                    }
+                } finally {
+                    stripe.unlock();
+                }
+            }
+            return expired;
+        } finally {
+            wheelLock.unlock();
+        }
+    }
+
+    /**
+     * @return le nombre d'hôtes suivis
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * @return le nombre d'emplacements
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return la mémoire hors tas occupée par la table (en octets)
+     */
+    public long getMemoryBytes() {
+        return (long) capacity * slotSize;
+    }
+
+    /**
+     * @return le nombre d'hôtes remplacés faute de place
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * @return le nombre d'hôtes refusés faute de place
+     */
+    public long getRejectionCount() {
+        return rejections.get();
+    }
+
+    /**
+     * Recherche sans verrou d'un hôte dans sa fenêtre de sondage
+     */
+    private int find(int home, int family, long high, long low) {
+        for (int i = 0; i < MAX_PROBES; i++) {
+            int slot = (home + i) & mask;
+            int state = state(slot);
+            if (state == EMPTY) {
+                return -1;
+            }
+            if (state == LIVE && matches(slot, family, high, low)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Insère un hôte (ou retrouve celui inséré entre-temps par un autre thread)
+     * et retourne son emplacement verrouillé. Les verrous des blocs couverts par la
+     * fenêtre de sondage sont pris pour toute l'insertion, puis seul celui de
+     * l'emplacement retourné est conservé.
+     */
+    private int insert(int home, int family, long high, long low, long now) {
+        int first = stripeIndex(home);
+        int last = stripeIndex((home + MAX_PROBES - 1) & mask);
+        int lower = Math.min(first, last);
+        int upper = Math.max(first, last);
+        stripes[lower].lock();
+        if (upper != lower) {
+            stripes[upper].lock();
+        }
+
+        int kept = -1;
+        try {
+            int free = -1;
+            int oldest = -1;
+            long oldestSeen = Long.MAX_VALUE;
+
+            for (int i = 0; i < MAX_PROBES; i++) {
+                int slot = (home + i) & mask;
+                int state = state(slot);
+                if (state == EMPTY) {
+                    if (free < 0) {
+                        free = slot;
+                    }
+                    break;
+                }
+                if (state == DELETED) {
+                    if (free < 0) {
+                        free = slot;
+                    }
+                    continue;
+                }
+                if (matches(slot, family, high, low)) {
+                    // Inséré par un autre thread depuis la recherche sans verrou
+                    kept = stripeIndex(slot);
+                    return slot;
+                }
+                long lastSeen = getLastSeen(slot);
+                if (lastSeen < oldestSeen) {
+                    oldestSeen = lastSeen;
+                    oldest = slot;
+                }
+            }
+
+            int target = free;
+            if (target < 0) {
+                if (evictionPolicy == EvictionPolicy.REJECT_NEW || oldest < 0) {
+                    rejections.incrementAndGet();
+                    return -1;
+                }
+                target = oldest;
+            }
+
+            kept = stripeIndex(target);
+            boolean replaced = state(target) == LIVE;
+            if (replaced) {
+                evictions.incrementAndGet();
+            } else {
+                size.incrementAndGet();
+            }
+
+            int position = target * slotSize;
+            buffer.putInt(position + FAMILY_OFFSET, family);
+            buffer.putLong(position + HIGH_OFFSET, high);
+            buffer.putLong(position + LOW_OFFSET, low);
+            buffer.putLong(position + LAST_SEEN_OFFSET, now);
+            for (int offset = HEADER_SIZE; offset < slotSize; offset += 8) {
+                buffer.putLong(position + offset, 0L);
+            }
+            // Publie la clé pour les recherches sans verrou
+            STATE.setRelease(buffer, position + STATE_OFFSET, LIVE);
+
+            // Un emplacement remplacé est déjà dans la roue : son échéance sera relue
+            if (!replaced) {
+                schedule(target, now);
+            }
+            return target;
+        } finally {
+            if (lower != kept) {
+                stripes[lower].unlock();
+            }
+            if (upper != lower && upper != kept) {
+                stripes[upper].unlock();
+            }
+        }
+    }
+
+    /**
+     * Inscrit un nouvel hôte dans la roue d'expiration.
+     * Appelé sous le verrou de son emplacement.
+     */
+    private void schedule(int slot, long now) {
+        wheelLock.lock();
+        try {
+            if (cursorTick == Long.MIN_VALUE) {
+                cursorTick = tick(now);
+            }
+            link(slot, tick(now + idleDelay));
+        } finally {
+            wheelLock.unlock();
+        }
+    }
+
+    /**
+     * Chaîne un emplacement dans le créneau d'un tick, borné à l'horizon de la roue.
+     * Appelé sous wheelLock.
+     */
+    private void link(int slot, long targetTick) {
+        long target = Math.max(targetTick, cursorTick);
+        target = Math.min(target, cursorTick + WHEEL_SLOTS - 1);
+        int wheelSlot = wheelIndex(target);
+        buffer.putInt(slot * slotSize + WHEEL_NEXT_OFFSET, wheelHeads[wheelSlot]);
+        wheelHeads[wheelSlot] = slot;
+    }
+
+    private long tick(long time) {
+        return Math.floorDiv(time, wheelSlotDuration);
+    }
+
+    private static int wheelIndex(long tick) {
+        return (int) Math.floorMod(tick, (long) WHEEL_SLOTS);
+    }
+
+    private int state(int slot) {
+        return (int) STATE.getAcquire(buffer, slot * slotSize + STATE_OFFSET);
+    }
+
+    private boolean matches(int slot, int family, long high, long low) {
+        int position = slot * slotSize;
+        return buffer.getLong(position + LOW_OFFSET) == low
+            && buffer.getLong(position + HIGH_OFFSET) == high
+            && buffer.getInt(position + FAMILY_OFFSET) == family;
+    }
+
+    private ReentrantLock stripe(int slot) {
+        return stripes[stripeIndex(slot)];
+    }
+
+    private int stripeIndex(int slot) {
+        return (slot >>> STRIPE_SHIFT) & (stripes.length - 1);
+    }
+
+    static int hash(int family, long high, long low) {
+        long h = (high * 0x9E3779B97F4A7C15L) ^ low ^ family;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private static int roundUpToPowerOfTwo(int value) {
+        int highest = Integer.highestOneBit(value);
+        return highest == value ? value : highest << 1;
+    }
+}
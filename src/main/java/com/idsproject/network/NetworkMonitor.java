@@ -1,14 +1,20 @@
 package main.java.com.idsproject.network;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -18,20 +24,126 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * Capture et analyse les paquets réseau en temps réel.
  */
 public class NetworkMonitor {
+    private static final int[] DEFAULT_PORTS = {80, 443, 22, 21, 25, 3306, 8080}; // Ports couramment utilisés
+    
+    private static final int WORKER_POOL_SIZE = 10;
+    private static final int MAX_BATCH_SIZE = 256; // Nombre maximal de paquets livrés par lot
+    private static final int PACKET_POOL_SIZE = 4096;
+    private static final int PAYLOAD_POOL_SIZE = 1024;       // Captures de charge utile simultanées
+    private static final int DEFAULT_PAYLOAD_BYTES = 2048;   // Charge utile maximale capturée par connexion
+    private static final int DEFAULT_PAYLOAD_TIMEOUT = 200;  // Attente maximale des données (ms)
+    private static final int READ_CHUNK_SIZE = 4096;         // Lecture bloquante, par morceaux
+    
     private final AtomicBoolean isRunning = new AtomicBoolean(false);
     private final ExecutorService executorService;
+    private final ExecutorService acceptorService;
     private final Map<InetAddress, ConnectionStats> connectionStatsMap;
-    private final List<PacketListener> packetListeners;
-    private final int[] monitoredPorts = {80, 443, 22, 21, 25, 3306, 8080}; // Ports couramment utilisés
-    private ServerSocket serverSocket;
+    private final List<BatchPacketListener> packetListeners;
+    private final int[] monitoredPorts;
+    private final AcceptMode acceptMode;
+    private final List<ServerSocket> serverSockets = new CopyOnWriteArrayList<>();
+    private SelectorAcceptor selectorAcceptor;
+    private final PacketPool packetPool;
+    private PacketRingBuffer ringBuffer;
+    private int ringConsumers;
+    private PayloadPool payloadPool;            // Alloué au démarrage, null si la capture est désactivée
+    private int payloadBytes;
+    private int payloadTimeout;
+    private final ThreadLocal<byte[]> readScratch;
+    
+    /**
+     * Mode d'acceptation des connexions entrantes
+     */
+    public enum AcceptMode {
+        /** Un thread bloqué sur accept() par port surveillé */
+        BLOCKING,
+        /** Un seul thread et un Selector pour tous les ports surveillés */
+        NIO
+    }
     
     /**
      * Constructeur initialisant le moniteur réseau
      */
     public NetworkMonitor() {
-        this.executorService = Executors.newFixedThreadPool(10);
+        this(DEFAULT_PORTS, AcceptMode.BLOCKING);
+    }
+    
+    /**
+     * Constructeur avec ports et mode d'acceptation configurables
+     * @param monitoredPorts les ports à surveiller
+     * @param acceptMode le mode d'acceptation des connexions
+     */
+    public NetworkMonitor(int[] monitoredPorts, AcceptMode acceptMode) {
+        this(monitoredPorts, acceptMode, ExecutionStrategy.FIXED_POOL);
+    }
+    
+    /**
+     * Constructeur complet
+     * @param monitoredPorts les ports à surveiller
+     * @param acceptMode le mode d'acceptation des connexions
+     * @param executionStrategy la stratégie d'exécution du traitement des connexions
+     */
+    public NetworkMonitor(int[] monitoredPorts, AcceptMode acceptMode, ExecutionStrategy executionStrategy) {
+        this.monitoredPorts = monitoredPorts.clone();
+        this.acceptMode = acceptMode;
+        // Les boucles d'acceptation et d'analyse ne doivent pas occuper les workers
+        this.acceptorService = Executors.newCachedThreadPool();
+        this.executorService = executionStrategy.newExecutor(WORKER_POOL_SIZE);
         this.connectionStatsMap = new ConcurrentHashMap<>();
-        this.packetListeners = new ArrayList<>();
+        this.packetListeners = new CopyOnWriteArrayList<>();
+        this.packetPool = new PacketPool(PACKET_POOL_SIZE);
+        this.readScratch = ThreadLocal.withInitial(() -> new byte[READ_CHUNK_SIZE]);
+        // En mode bloquant, la lecture de la charge utile occupe un worker jusqu'à
+        // l'expiration du délai : sur le pool fixe, quelques connexions muettes
+        // suffiraient à l'épuiser. La capture n'y est donc active que sur demande.
+        boolean blockingPool = acceptMode == AcceptMode.BLOCKING && executionStrategy == ExecutionStrategy.FIXED_POOL;
+        configurePayloadCapture(blockingPool ? 0 : DEFAULT_PAYLOAD_BYTES, DEFAULT_PAYLOAD_TIMEOUT);
+    }
+    
+    /**
+     * Configure la capture des charges utiles : les premiers octets envoyés par chaque
+     * connexion sont lus dans un tampon direct recyclé (voir PayloadPool) et livrés avec
+     * le paquet, pour la recherche de signatures. Doit être appelé avant startMonitoring(),
+     * qui alloue les tampons.
+     *
+     * La capture est active par défaut, sauf en mode BLOCKING sur le pool fixe
+     * (FIXED_POOL) : chaque lecture y bloque un worker jusqu'à timeoutMillis.
+     * @param maxBytes le nombre maximal d'octets capturés par connexion, ou 0 pour désactiver la capture
+     * @param timeoutMillis l'attente maximale des données d'une connexion (en millisecondes)
+     */
+    public void setPayloadCapture(int maxBytes, int timeoutMillis) {
+        if (isRunning.get()) {
+            throw new IllegalStateException("La capture doit être configurée avant le démarrage de la surveillance");
+        }
+        configurePayloadCapture(maxBytes, timeoutMillis);
+    }
+    
+    /**
+     * Enregistre la configuration de la capture ; le pool de tampons n'est alloué qu'au
+     * démarrage, si bien qu'un moniteur jamais démarré (rejeu, tests) n'occupe aucune
+     * mémoire directe
+     */
+    private void configurePayloadCapture(int maxBytes, int timeoutMillis) {
+        this.payloadBytes = Math.max(0, maxBytes);
+        this.payloadTimeout = Math.max(1, timeoutMillis);
+        this.payloadPool = null;
+    }
+    
+    /**
+     * Intercale un tampon circulaire entre la capture et les écouteurs.
+     * La capture publie dans le tampon sans jamais attendre la détection,
+     * et des threads consommateurs dédiés notifient les écouteurs.
+     * Doit être appelé avant startMonitoring().
+     * @param capacity la capacité du tampon
+     * @param waitStrategy la stratégie d'attente des consommateurs
+     * @param consumers le nombre de threads consommateurs
+     */
+    public void enableRingBuffer(int capacity, PacketRingBuffer.WaitStrategy waitStrategy, int consumers) {
+        if (isRunning.get()) {
+            throw new IllegalStateException("Le tampon doit être configuré avant le démarrage de la surveillance");
+        }
+        this.ringBuffer = new PacketRingBuffer(capacity, waitStrategy);
+        this.ringConsumers = Math.max(1, consumers);
     }
     
     /**
@@ -41,12 +153,41 @@ public class NetworkMonitor {
         if (isRunning.compareAndSet(false, true)) {
             System.out.println("Démarrage de la surveillance du réseau...");
             
-            for (int port : monitoredPorts) {
-                startPortMonitoring(port);
+            if (payloadBytes > 0 && payloadPool == null) {
+                payloadPool = new PayloadPool(PAYLOAD_POOL_SIZE, payloadBytes);
+            }
+            
+            if (ringBuffer != null) {
+                startRingConsumers();
+            }
+            
+            if (acceptMode == AcceptMode.NIO) {
+                startSelectorMonitoring();
+            } else {
+                for (int port : monitoredPorts) {
+                    startPortMonitoring(port);
+                }
             }
             
             // Démarrer un thread pour analyser les statistiques de connexion périodiquement
-            executorService.submit(this::analyzeConnectionStats);
+            acceptorService.submit(this::analyzeConnectionStats);
+        }
+    }
+    
+    /**
+     * Démarre les threads qui vident le tampon circulaire vers les écouteurs, par lots
+     */
+    private void startRingConsumers() {
+        for (int i = 0; i < ringConsumers; i++) {
+            Thread consumer = new Thread(() -> {
+                List<NetworkPacket> batch = new ArrayList<>(MAX_BATCH_SIZE);
+                while (ringBuffer.drainTo(batch, MAX_BATCH_SIZE, isRunning) > 0) {
+                    dispatch(batch);
+                    batch.clear();
+                }
+            }, "ids-dispatch-" + i);
+            consumer.setDaemon(true);
+            consumer.start();
         }
     }
     
@@ -55,9 +196,10 @@ public class NetworkMonitor {
      * @param port Le port à surveiller
      */
     private void startPortMonitoring(int port) {
-        executorService.submit(() -> {
+        acceptorService.submit(() -> {
             try {
-                serverSocket = new ServerSocket(port);
+                ServerSocket serverSocket = new ServerSocket(port);
+                serverSockets.add(serverSocket);
                 System.out.println("Surveillance du port " + port + " démarrée");
                 
                 while (isRunning.get()) {
@@ -80,6 +222,112 @@ public class NetworkMonitor {
         });
     }
     
+    /**
+     * Démarre la surveillance de tous les ports sur un seul thread sélecteur NIO
+     */
+    private void startSelectorMonitoring() {
+        selectorAcceptor = new SelectorAcceptor(monitoredPorts, this::handleAcceptedChannel,
+                this::handlePayloadRead, payloadTimeout, isRunning);
+        try {
+            int bound = selectorAcceptor.open();
+            System.out.println("Sélecteur NIO actif sur " + bound + " port(s)");
+        } catch (IOException e) {
+            System.err.println("Impossible d'ouvrir le sélecteur NIO: " + e.getMessage());
+            return;
+        }
+        
+        Thread selectorThread = new Thread(selectorAcceptor, "ids-selector");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+    
+    /**
+     * Gère une connexion acceptée par le sélecteur NIO.
+     * Appelée sur le thread du sélecteur : on se contente d'extraire les adresses ;
+     * si la capture est active, la lecture de la charge utile est confiée au sélecteur,
+     * sinon le canal est fermé aussitôt. La notification des écouteurs est confiée
+     * au tampon circulaire s'il est actif, aux workers sinon.
+     * @param channel Le canal du client
+     */
+    private void handleAcceptedChannel(SocketChannel channel) {
+        try {
+            Socket socket = channel.socket();
+            NetworkPacket packet = packetPool.acquire().set(
+                    socket.getInetAddress(),
+                    socket.getLocalAddress(),
+                    socket.getPort(),
+                    socket.getLocalPort(),
+                    System.currentTimeMillis(),
+                    0
+            );
+            
+            ByteBuffer buffer = payloadPool != null ? payloadPool.acquire() : null;
+            if (buffer != null) {
+                if (selectorAcceptor.readPayload(channel, buffer, packet)) {
+                    return; // Publication à la fin de la lecture (handlePayloadRead)
+                }
+                payloadPool.release(buffer);
+            }
+            
+            channel.close();
+            publishAccepted(packet);
+        } catch (IOException e) {
+            System.err.println("Erreur lors du traitement de la connexion: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Termine une capture NIO (données complètes, fin de flux ou délai écoulé) :
+     * ferme le canal et publie le paquet avec sa charge utile.
+     * Appelée sur le thread du sélecteur.
+     * @param channel Le canal du client
+     * @param buffer Le tampon de capture, rempli jusqu'à sa position
+     * @param attachment Le paquet de la connexion
+     */
+    private void handlePayloadRead(SocketChannel channel, ByteBuffer buffer, Object attachment) {
+        NetworkPacket packet = (NetworkPacket) attachment;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Erreur lors de la fermeture de la connexion: " + e.getMessage());
+        }
+        
+        attachCapturedPayload(packet, buffer);
+        publishAccepted(packet);
+    }
+    
+    /**
+     * Publie le paquet d'une connexion acceptée par le sélecteur
+     */
+    private void publishAccepted(NetworkPacket packet) {
+        if (ringBuffer != null) {
+            connectionStatsMap.computeIfAbsent(
+                    packet.getSourceAddress(), k -> new ConnectionStats()).incrementConnectionCount();
+            notifyPacketReceived(packet);
+            return;
+        }
+        
+        executorService.submit(() -> {
+            connectionStatsMap.computeIfAbsent(
+                    packet.getSourceAddress(), k -> new ConnectionStats()).incrementConnectionCount();
+            notifyPacketReceived(packet);
+        });
+    }
+    
+    /**
+     * Associe au paquet les octets capturés (la taille du paquet devient leur nombre),
+     * ou rend le tampon au pool si la connexion n'a rien envoyé
+     */
+    private void attachCapturedPayload(NetworkPacket packet, ByteBuffer buffer) {
+        buffer.flip();
+        if (buffer.hasRemaining()) {
+            packet.setSize(buffer.remaining());
+            packet.attachPayload(buffer, payloadPool);
+        } else {
+            payloadPool.release(buffer);
+        }
+    }
+    
     /**
      * Gère une nouvelle connexion
      * @param clientSocket La socket du client
@@ -96,21 +344,24 @@ public class NetworkMonitor {
                 stats.incrementConnectionCount();
                 
                 // Crée un objet NetworkPacket pour cette connexion
-                NetworkPacket packet = new NetworkPacket(
+                NetworkPacket packet = packetPool.acquire().set(
                         clientAddress,
                         clientSocket.getLocalAddress(),
                         clientPort,
                         clientSocket.getLocalPort(),
                         System.currentTimeMillis(),
-                        0 // La taille sera mise à jour lorsque les données seront lues
+                        0 // Mise à jour si une charge utile est capturée
                 );
                 
-                // Notifie les listeners
-                notifyPacketReceived(packet);
+                // Lit les premiers octets envoyés, puis ferme la connexion
+                try {
+                    capturePayload(clientSocket, packet);
+                } finally {
+                    clientSocket.close();
+                }
                 
-                // En conditions réelles, on lirait les données du socket ici
-                // Pour la simulation, on ferme simplement la connexion
-                clientSocket.close();
+                // Notifie les listeners (le paquet est recyclé ensuite)
+                notifyPacketReceived(packet);
                 
             } catch (IOException e) {
                 System.err.println("Erreur lors du traitement de la connexion: " + e.getMessage());
@@ -118,6 +369,39 @@ public class NetworkMonitor {
         });
     }
     
+    /**
+     * Lit la charge utile d'une socket bloquante, jusqu'à la taille des tampons du pool,
+     * la fin du flux ou l'expiration du délai de capture
+     */
+    private void capturePayload(Socket socket, NetworkPacket packet) {
+        ByteBuffer buffer = payloadPool != null ? payloadPool.acquire() : null;
+        if (buffer == null) {
+            return;
+        }
+        
+        byte[] scratch = readScratch.get();
+        long deadline = System.currentTimeMillis() + payloadTimeout;
+        try {
+            InputStream input = socket.getInputStream();
+            while (buffer.hasRemaining()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                socket.setSoTimeout((int) remaining);
+                int read = input.read(scratch, 0, Math.min(scratch.length, buffer.remaining()));
+                if (read < 0) {
+                    break;
+                }
+                buffer.put(scratch, 0, read);
+            }
+        } catch (IOException e) {
+            // Délai écoulé (SocketTimeoutException) ou connexion interrompue : on garde ce qui a été lu
+        }
+        
+        attachCapturedPayload(packet, buffer);
+    }
+    
     /**
      * Analyse périodiquement les statistiques de connexion pour détecter des comportements suspects
      */
@@ -156,14 +440,20 @@ public class NetworkMonitor {
         if (isRunning.compareAndSet(true, false)) {
             System.out.println("Arrêt de la surveillance du réseau...");
             
-            if (serverSocket != null && !serverSocket.isClosed()) {
+            for (ServerSocket serverSocket : serverSockets) {
                 try {
                     serverSocket.close();
                 } catch (IOException e) {
                     System.err.println("Erreur lors de la fermeture du socket serveur: " + e.getMessage());
                 }
             }
+            serverSockets.clear();
+            
+            if (selectorAcceptor != null) {
+                selectorAcceptor.wakeup();
+            }
             
+            acceptorService.shutdownNow();
             executorService.shutdown();
         }
     }
@@ -173,72 +463,374 @@ public class NetworkMonitor {
      * @param listener L'écouteur à ajouter
      */
     public void addPacketListener(PacketListener listener) {
+        packetListeners.add(new SinglePacketAdapter(listener));
+    }
+    
+    /**
+     * Ajoute un écouteur recevant les paquets par lots
+     * @param listener L'écouteur à ajouter
+     */
+    public void addBatchPacketListener(BatchPacketListener listener) {
         packetListeners.add(listener);
     }
     
     /**
-     * Notifie tous les écouteurs qu'un paquet a été reçu
+     * Notifie tous les écouteurs qu'un paquet a été reçu, directement ou
+     * via le tampon circulaire s'il est actif (le paquet est alors rejeté si le tampon est plein)
      * @param packet Le paquet reçu
      */
     private void notifyPacketReceived(NetworkPacket packet) {
-        for (PacketListener listener : packetListeners) {
-            listener.onPacketReceived(packet);
+        if (ringBuffer != null) {
+            if (!ringBuffer.offer(packet)) {
+                packet.release();
+            }
+        } else {
+            dispatch(Collections.singletonList(packet));
+        }
+    }
+    
+    /**
+     * Livre un lot de paquets à tous les écouteurs, puis recycle les paquets
+     * @param batch Les paquets reçus
+     */
+    private void dispatch(List<NetworkPacket> batch) {
+        for (BatchPacketListener listener : packetListeners) {
+            listener.onPacketBatch(batch);
         }
+        
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).release();
+        }
+    }
+    
+    /**
+     * Injecte un lot de paquets provenant d'une source hors ligne (fichier de capture, rejeu).
+     * Les écouteurs sont notifiés sur le thread appelant, sans passer par le tampon
+     * circulaire : la source avance au rythme de la détection et aucun paquet n'est rejeté.
+     * Les paquets issus du pool sont recyclés après la notification.
+     * @param batch Les paquets à livrer
+     */
+    public void injectPackets(List<NetworkPacket> batch) {
+        dispatch(batch);
+    }
+    
+    /**
+     * @return le pool de paquets recyclés par ce moniteur
+     */
+    public PacketPool getPacketPool() {
+        return packetPool;
+    }
+    
+    /**
+     * @return le pool des tampons de capture des charges utiles, ou null si la capture est
+     *         désactivée ou si la surveillance n'a pas encore démarré
+     */
+    public PayloadPool getPayloadPool() {
+        return payloadPool;
+    }
+    
+    /**
+     * @return le nombre de paquets en attente dans le tampon circulaire (0 s'il est inactif)
+     */
+    public int getRingBufferDepth() {
+        return ringBuffer != null ? ringBuffer.getDepth() : 0;
     }
     
     /**
-     * Interface pour les écouteurs de paquets
+     * @return le nombre de paquets rejetés par le tampon circulaire plein
+     */
+    public long getDroppedPackets() {
+        return ringBuffer != null ? ringBuffer.getDroppedCount() : 0;
+    }
+    
+    /**
+     * @return la capacité du tampon circulaire (0 s'il est inactif)
+     */
+    public int getRingBufferCapacity() {
+        return ringBuffer != null ? ringBuffer.getCapacity() : 0;
+    }
+    
+    /**
+     * Interface pour les écouteurs de paquets.
+     * Les paquets sont recyclés après la notification : un écouteur
+     * doit copier ce dont il a besoin plutôt que conserver le paquet.
      */
     public interface PacketListener {
         void onPacketReceived(NetworkPacket packet);
     }
     
     /**
-     * Classe interne pour représenter un paquet réseau
+     * Interface pour les écouteurs recevant les paquets par lots.
+     * Le lot et ses paquets ne sont valides que pendant l'appel : ils ne doivent pas être conservés.
+     */
+    public interface BatchPacketListener {
+        void onPacketBatch(List<NetworkPacket> batch);
+    }
+    
+    /**
+     * Adapte un écouteur paquet par paquet au contrat par lots
+     */
+    private static class SinglePacketAdapter implements BatchPacketListener {
+        private final PacketListener delegate;
+        
+        SinglePacketAdapter(PacketListener delegate) {
+            this.delegate = delegate;
+        }
+        
+        @Override
+        public void onPacketBatch(List<NetworkPacket> batch) {
+            for (int i = 0; i < batch.size(); i++) {
+                delegate.onPacketReceived(batch.get(i));
+            }
+        }
+    }
+    
+    /**
+     * Classe interne pour représenter un paquet réseau.
+     * Les adresses sont encodées en primitives (un int pour IPv4, deux long pour IPv6)
+     * afin que les sources à haut débit puissent remplir et recycler les paquets
+     * sans allocation ; les getters InetAddress restent disponibles comme vue
+     * de compatibilité, construite paresseusement.
      */
     public static class NetworkPacket {
-        private final InetAddress sourceAddress;
-        private final InetAddress destinationAddress;
-        private final int sourcePort;
-        private final int destinationPort;
-        private final long timestamp;
+        private static final int IPV4 = 4;
+        private static final int IPV6 = 6;
+        
+        private int addressFamily;
+        private long sourceHigh;        // 64 bits de poids fort (IPv6 uniquement)
+        private long sourceLow;         // Adresse IPv4 ou 64 bits de poids faible (IPv6)
+        private long destinationHigh;
+        private long destinationLow;
+        private int sourcePort;
+        private int destinationPort;
+        private long timestamp;
         private long size;
-        private final Map<String, Object> metadata;
+        private Map<String, Object> metadata;       // Alloué au premier usage
+        private InetAddress sourceAddressView;      // Vues construites à la demande
+        private InetAddress destinationAddressView;
+        private PacketPool pool;                    // Pool propriétaire, null si non recyclable
+        private ByteBuffer payload;                 // Charge utile capturée, null si aucune
+        private PayloadPool payloadPool;            // Pool du tampon de la charge utile, null si non recyclable
         
         public NetworkPacket(InetAddress sourceAddress, InetAddress destinationAddress, 
                             int sourcePort, int destinationPort, long timestamp, long size) {
-            this.sourceAddress = sourceAddress;
-            this.destinationAddress = destinationAddress;
+            set(sourceAddress, destinationAddress, sourcePort, destinationPort, timestamp, size);
+        }
+        
+        /**
+         * Constructeur réservé au pool de paquets
+         */
+        NetworkPacket(PacketPool pool) {
+            this.pool = pool;
+        }
+        
+        /**
+         * Remplit le paquet à partir d'adresses InetAddress
+         * @return ce paquet
+         */
+        public NetworkPacket set(InetAddress sourceAddress, InetAddress destinationAddress,
+                                 int sourcePort, int destinationPort, long timestamp, long size) {
+            byte[] source = sourceAddress.getAddress();
+            byte[] destination = destinationAddress.getAddress();
+            
+            if (source.length == 4 && destination.length == 4) {
+                setIPv4(toInt(source), toInt(destination), sourcePort, destinationPort, timestamp, size);
+            } else {
+                byte[] source16 = toIPv6Bytes(source);
+                byte[] destination16 = toIPv6Bytes(destination);
+                setIPv6(toLong(source16, 0), toLong(source16, 8), toLong(destination16, 0), toLong(destination16, 8),
+                        sourcePort, destinationPort, timestamp, size);
+            }
+            
+            this.sourceAddressView = sourceAddress;
+            this.destinationAddressView = destinationAddress;
+            return this;
+        }
+        
+        /**
+         * Remplit le paquet avec des adresses IPv4 encodées en int (ordre réseau)
+         * @return ce paquet
+         */
+        public NetworkPacket setIPv4(int sourceAddress, int destinationAddress,
+                                     int sourcePort, int destinationPort, long timestamp, long size) {
+            this.addressFamily = IPV4;
+            this.sourceHigh = 0;
+            this.sourceLow = sourceAddress & 0xFFFFFFFFL;
+            this.destinationHigh = 0;
+            this.destinationLow = destinationAddress & 0xFFFFFFFFL;
+            setCommon(sourcePort, destinationPort, timestamp, size);
+            return this;
+        }
+        
+        /**
+         * Remplit le paquet avec des adresses IPv6 encodées en deux long (ordre réseau)
+         * @return ce paquet
+         */
+        public NetworkPacket setIPv6(long sourceHigh, long sourceLow, long destinationHigh, long destinationLow,
+                                     int sourcePort, int destinationPort, long timestamp, long size) {
+            this.addressFamily = IPV6;
+            this.sourceHigh = sourceHigh;
+            this.sourceLow = sourceLow;
+            this.destinationHigh = destinationHigh;
+            this.destinationLow = destinationLow;
+            setCommon(sourcePort, destinationPort, timestamp, size);
+            return this;
+        }
+        
+        private void setCommon(int sourcePort, int destinationPort, long timestamp, long size) {
             this.sourcePort = sourcePort;
             this.destinationPort = destinationPort;
             this.timestamp = timestamp;
             this.size = size;
-            this.metadata = new HashMap<>();
+            this.sourceAddressView = null;
+            this.destinationAddressView = null;
+            if (metadata != null) {
+                metadata.clear();
+            }
+            releasePayload();
         }
         
         // Getters
-        public InetAddress getSourceAddress() { return sourceAddress; }
-        public InetAddress getDestinationAddress() { return destinationAddress; }
+        public InetAddress getSourceAddress() {
+            if (sourceAddressView == null) {
+                sourceAddressView = toInetAddress(addressFamily == IPV6, sourceHigh, sourceLow);
+            }
+            return sourceAddressView;
+        }
+        
+        public InetAddress getDestinationAddress() {
+            if (destinationAddressView == null) {
+                destinationAddressView = toInetAddress(addressFamily == IPV6, destinationHigh, destinationLow);
+            }
+            return destinationAddressView;
+        }
+        
         public int getSourcePort() { return sourcePort; }
         public int getDestinationPort() { return destinationPort; }
         public long getTimestamp() { return timestamp; }
         public long getSize() { return size; }
         
+        // Accès primitifs aux adresses
+        public boolean isIPv6() { return addressFamily == IPV6; }
+        public int getSourceIPv4() { return (int) sourceLow; }
+        public int getDestinationIPv4() { return (int) destinationLow; }
+        public long getSourceHigh() { return sourceHigh; }
+        public long getSourceLow() { return sourceLow; }
+        public long getDestinationHigh() { return destinationHigh; }
+        public long getDestinationLow() { return destinationLow; }
+        
         public void setSize(long size) { this.size = size; }
         
+        /**
+         * Retourne la charge utile capturée, entre la position et la limite du tampon.
+         * Le tampon n'est valide que pendant la notification des écouteurs : il est rendu
+         * à son pool avec le paquet. Il ne doit pas être modifié, ni sa position déplacée.
+         * @return la charge utile, ou null si aucune n'a été capturée
+         */
+        public ByteBuffer getPayload() {
+            return payload;
+        }
+        
+        /**
+         * Associe une charge utile au paquet (tampon non recyclé, par exemple pour un rejeu)
+         * @param payload les octets, entre la position et la limite du tampon
+         * @return ce paquet
+         */
+        public NetworkPacket setPayload(ByteBuffer payload) {
+            releasePayload();
+            this.payload = payload;
+            return this;
+        }
+        
+        /**
+         * Associe une charge utile issue d'un pool, rendue à la libération du paquet
+         */
+        void attachPayload(ByteBuffer payload, PayloadPool payloadPool) {
+            setPayload(payload);
+            this.payloadPool = payloadPool;
+        }
+        
+        private void releasePayload() {
+            if (payloadPool != null) {
+                payloadPool.release(payload);
+                payloadPool = null;
+            }
+            payload = null;
+        }
+        
         public void addMetadata(String key, Object value) {
+            if (metadata == null) {
+                metadata = new HashMap<>(4);
+            }
             metadata.put(key, value);
         }
         
         public Object getMetadata(String key) {
-            return metadata.get(key);
+            return metadata != null ? metadata.get(key) : null;
+        }
+        
+        /**
+         * Rend le paquet à son pool une fois tous les écouteurs notifiés,
+         * ainsi que le tampon de sa charge utile.
+         * Le paquet lui-même n'est pas recyclé s'il a été créé par constructeur public.
+         */
+        public void release() {
+            releasePayload();
+            if (pool != null) {
+                pool.release(this);
+            }
+        }
+        
+        static InetAddress toInetAddress(boolean ipv6, long high, long low) {
+            byte[] bytes;
+            if (ipv6) {
+                bytes = new byte[16];
+                for (int i = 0; i < 8; i++) {
+                    bytes[i] = (byte) (high >>> (56 - 8 * i));
+                    bytes[8 + i] = (byte) (low >>> (56 - 8 * i));
+                }
+            } else {
+                bytes = new byte[] {(byte) (low >>> 24), (byte) (low >>> 16), (byte) (low >>> 8), (byte) low};
+            }
+            
+            try {
+                return InetAddress.getByAddress(bytes);
+            } catch (UnknownHostException e) {
+                throw new IllegalStateException("Adresse invalide", e); // Impossible : longueur toujours valide
+            }
+        }
+        
+        private static int toInt(byte[] bytes) {
+            return ((bytes[0] & 0xFF) << 24) | ((bytes[1] & 0xFF) << 16) | ((bytes[2] & 0xFF) << 8) | (bytes[3] & 0xFF);
+        }
+        
+        private static long toLong(byte[] bytes, int offset) {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (bytes[offset + i] & 0xFF);
+            }
+            return value;
+        }
+        
+        /**
+         * Convertit une adresse en 16 octets (IPv4 mappée en IPv6 si nécessaire)
+         */
+        private static byte[] toIPv6Bytes(byte[] address) {
+            if (address.length == 16) {
+                return address;
+            }
+            byte[] mapped = new byte[16];
+            mapped[10] = (byte) 0xFF;
+            mapped[11] = (byte) 0xFF;
+            System.arraycopy(address, 0, mapped, 12, 4);
+            return mapped;
         }
         
         @Override
         public String toString() {
             return String.format("Paquet [%s:%d -> %s:%d, taille=%d octets, horodatage=%d]",
-                    sourceAddress.getHostAddress(), sourcePort,
-                    destinationAddress.getHostAddress(), destinationPort,
+                    getSourceAddress().getHostAddress(), sourcePort,
+                    getDestinationAddress().getHostAddress(), destinationPort,
                     size, timestamp);
         }
     }
@@ -1,9 +1,9 @@
 package main.java.com.idsproject.network;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.nio.ByteBuffer;
 import java.net.InetAddress;
 
 /**
@@ -14,14 +14,102 @@ public class PacketAnalyzer {
     
     // Fenêtre de temps pour l'analyse (en millisecondes)
     private static final long TIME_WINDOW = 10000; // 10 secondes
+    private static final int BUCKET_COUNT = 10; // Nombre de seaux de la fenêtre glissante
+    private static final long BUCKET_DURATION = TIME_WINDOW / BUCKET_COUNT;
+    
+    // Expiration des hôtes inactifs : délai d'inactivité et travail borné par appel
+    private static final long EXPIRY_DELAY = TIME_WINDOW * 2;
+    private static final int EXPIRY_SLICE = 256;
+    
+    // Capacité par défaut de la table des hôtes
+    public static final int DEFAULT_HOST_CAPACITY = 16384;
     
     // Seuils de détection
     private static final int CONNECTION_THRESHOLD = 50; // Nombre de connexions par fenêtre de temps
     private static final int PORT_SCAN_THRESHOLD = 15; // Nombre de ports différents scannés
+    private static final int HOST_SCAN_THRESHOLD = 20; // Nombre d'hôtes différents sondés
     private static final int BANDWIDTH_THRESHOLD = 10000000; // 10 MB/s
     
-    // Stockage des statistiques par adresse IP
-    private final Map<InetAddress, HostStats> hostStatsMap = new ConcurrentHashMap<>();
+    // Seuils de détection agrégée, toutes sources confondues (paquets par fenêtre de temps)
+    private static final int AGGREGATE_DESTINATION_THRESHOLD = 5000; // Vers une même adresse
+    private static final int AGGREGATE_PORT_THRESHOLD = 5000; // Vers un même port
+    private static final int AGGREGATE_PREFIX_THRESHOLD = 2000; // Depuis un même préfixe source
+    private static final int HEAVY_HITTER_TOP_K = 16;
+    
+    // Stockage des statistiques par adresse IP, hors tas
+    private final HostTable hostTable;
+    
+    // Vue réutilisable sur les statistiques d'un emplacement, une par thread
+    private final ThreadLocal<HostStats> statsViews = ThreadLocal.withInitial(HostStats::new);
+    
+    // Zone d'extension de secours pour un hôte que la table n'a pas pu accueillir, une par thread
+    private final int extensionSize;
+    private final ThreadLocal<ByteBuffer> transientExtensions;
+    
+    // Détection agrégée des flux volumineux, en mémoire constante
+    private final HeavyHitterDetector heavyHitters;
+    
+    // Horodatage du paquet le plus récent : l'horloge de l'analyse suit les paquets,
+    // ce qui rend les fenêtres valides aussi pour les rejeux de captures
+    private volatile long latestTimestamp = 0;
+    
+    /**
+     * Crée un analyseur avec une table des hôtes de capacité par défaut
+     */
+    public PacketAnalyzer() {
+        this(DEFAULT_HOST_CAPACITY, HostTable.EvictionPolicy.EVICT_OLDEST, 0);
+    }
+    
+    /**
+     * Crée un analyseur dont la table des hôtes réserve, après les statistiques
+     * de l'analyseur, une zone d'extension pour d'autres composants (voir IDS)
+     * 
+     * @param hostCapacity le nombre d'hôtes suivis au maximum
+     * @param evictionPolicy la politique appliquée lorsque la table est pleine
+     * @param extensionSize la taille de la zone d'extension par hôte (en octets)
+     */
+    public PacketAnalyzer(int hostCapacity, HostTable.EvictionPolicy evictionPolicy, int extensionSize) {
+        this(hostCapacity, evictionPolicy, extensionSize, false);
+    }
+    
+    /**
+     * Crée un analyseur avec zone d'extension, en choisissant la remise à zéro des
+     * croquis de la détection agrégée
+     * 
+     * @param hostCapacity le nombre d'hôtes suivis au maximum
+     * @param evictionPolicy la politique appliquée lorsque la table est pleine
+     * @param extensionSize la taille de la zone d'extension par hôte (en octets)
+     * @param denseRotations true si les fenêtres de la détection agrégée tournent presque
+     *                       à chaque paquet (voir HeavyHitterDetector)
+     */
+    public PacketAnalyzer(int hostCapacity, HostTable.EvictionPolicy evictionPolicy, int extensionSize,
+                          boolean denseRotations) {
+        this.heavyHitters = new HeavyHitterDetector(TIME_WINDOW, AGGREGATE_DESTINATION_THRESHOLD,
+                AGGREGATE_PORT_THRESHOLD, AGGREGATE_PREFIX_THRESHOLD, HEAVY_HITTER_TOP_K, denseRotations);
+        this.hostTable = new HostTable(hostCapacity, HostStats.SIZE + extensionSize, EXPIRY_DELAY, evictionPolicy);
+        this.extensionSize = extensionSize;
+        this.transientExtensions = ThreadLocal.withInitial(() -> ByteBuffer.allocate(extensionSize));
+    }
+    
+    /**
+     * Composant qui tient son propre état par hôte dans la zone d'extension de la table
+     * des hôtes (voir IDS). Il est appelé pour chaque paquet, sous le verrou de
+     * l'emplacement de l'hôte pris pour l'analyse : entre l'analyse et la mise à jour
+     * de l'extension, l'hôte ne peut être ni remplacé ni recherché une seconde fois.
+     * Pour un hôte que la table n'a pas pu accueillir, la zone est une zone de secours
+     * propre au thread, remise à zéro à chaque appel de l'analyse.
+     */
+    public interface HostExtension {
+        /**
+         * @param packet le paquet analysé
+         * @param result le résultat de son analyse, détection agrégée comprise
+         * @param buffer le tampon qui contient la zone d'extension de l'hôte
+         * @param offset la position de la zone d'extension dans le tampon
+         * @return le résultat retenu pour le paquet (le même, ou un résultat qui le remplace)
+         */
+        AnalysisResult onAnalyzed(NetworkMonitor.NetworkPacket packet, AnalysisResult result,
+                                  ByteBuffer buffer, int offset);
+    }
     
     /**
      * Analyse un paquet réseau et détermine s'il fait partie d'une activité suspecte
@@ -30,24 +118,191 @@ public class PacketAnalyzer {
      * @return Un objet AnalysisResult contenant le résultat de l'analyse
      */
     public AnalysisResult analyzePacket(NetworkMonitor.NetworkPacket packet) {
-        InetAddress sourceAddress = packet.getSourceAddress();
-        
+        return analyzePacket(packet, null);
+    }
+    
+    /**
+     * Analyse un paquet réseau, puis met à jour une extension sous le même verrou de l'hôte
+     * 
+     * @param packet Le paquet réseau à analyser
+     * @param extension le composant appelé avec le résultat, ou null
+     * @return Le résultat de l'analyse, tel que retenu par l'extension
+     */
+    public AnalysisResult analyzePacket(NetworkMonitor.NetworkPacket packet, HostExtension extension) {
         // Obtient ou crée les statistiques pour cette adresse
-        HostStats stats = hostStatsMap.computeIfAbsent(
-            sourceAddress, k -> new HostStats());
+        int slot = hostTable.lock(packet);
+        
+        // Met à jour les statistiques et construit le résultat de l'analyse
+        AnalysisResult result;
+        try {
+            HostStats stats = slot < 0 ? null : statsViews.get().wrap(hostTable, slot);
+            ByteBuffer buffer = extensionBuffer(slot);
+            result = analyzeLocked(packet, stats, extension, buffer, extensionOffset(slot));
+        } finally {
+            if (slot >= 0) {
+                hostTable.unlock(slot);
+            }
+        }
+        advanceClock(packet.getTimestamp());
+        
+        // Nettoie les anciennes entrées
+        cleanupOldEntries();
+        
+        return result;
+    }
+    
+    /**
+     * Analyse les paquets d'un même hôte source en une seule passe, et met à jour une
+     * extension après chaque paquet, sous un seul verrouillage de l'emplacement de l'hôte.
+     * Ne nettoie pas les anciennes entrées : l'appelant doit appeler
+     * cleanupOldEntries() une fois le lot complet traité.
+     * 
+     * @param batch le lot de paquets
+     * @param groups les groupes du lot par hôte source (voir SourceGroups.group)
+     * @param group le numéro du groupe à analyser
+     * @param extension le composant appelé avec chaque résultat, ou null
+     * @param results reçoit un résultat par paquet du groupe, tel que retenu par l'extension,
+     *                dans l'ordre du groupe (la liste est vidée au préalable)
+     */
+    public void analyzeHostGroup(List<NetworkMonitor.NetworkPacket> batch, SourceGroups groups, int group,
+                                 HostExtension extension, List<AnalysisResult> results) {
+        results.clear();
+        int from = groups.groupStart(group);
+        int to = groups.groupEnd(group);
+        long lastPacketTime = 0;
+        int slot = hostTable.lock(batch.get(groups.packetIndex(from)));
         
-        // Met à jour les statistiques
-        stats.addPacket(packet);
+        try {
+            HostStats stats = slot < 0 ? null : statsViews.get().wrap(hostTable, slot);
+            ByteBuffer buffer = extensionBuffer(slot);
+            int offset = extensionOffset(slot);
+            for (int i = from; i < to; i++) {
+                NetworkMonitor.NetworkPacket packet = batch.get(groups.packetIndex(i));
+                results.add(analyzeLocked(packet, stats, extension, buffer, offset));
+                lastPacketTime = Math.max(lastPacketTime, packet.getTimestamp());
+            }
+        } finally {
+            if (slot >= 0) {
+                hostTable.unlock(slot);
+            }
+        }
+        
+        advanceClock(lastPacketTime);
+    }
+    
+    /**
+     * Analyse un paquet sous le verrou de son hôte. La détection agrégée a lieu elle
+     * aussi sous le verrou, pour que l'extension reçoive le résultat définitif
+     * @param stats les statistiques de l'hôte, ou null s'il n'est pas suivi
+     */
+    private AnalysisResult analyzeLocked(NetworkMonitor.NetworkPacket packet, HostStats stats,
+                                         HostExtension extension, ByteBuffer buffer, int offset) {
+        AnalysisResult result;
+        if (stats == null) {
+            result = untrackedResult(packet);
+        } else {
+            stats.addPacket(packet);
+            result = buildResult(stats, packet);
+        }
+        result = checkAggregate(packet, result);
+        return extension != null ? extension.onAnalyzed(packet, result, buffer, offset) : result;
+    }
+    
+    /**
+     * Tampon de la zone d'extension d'un emplacement : celui de la table, ou la zone de
+     * secours du thread, remise à zéro, si l'hôte n'est pas suivi
+     */
+    private ByteBuffer extensionBuffer(int slot) {
+        if (slot >= 0) {
+            return hostTable.getBuffer();
+        }
+        ByteBuffer buffer = transientExtensions.get();
+        Arrays.fill(buffer.array(), (byte) 0);
+        return buffer;
+    }
+    
+    private int extensionOffset(int slot) {
+        return slot >= 0 ? hostTable.payloadOffset(slot) + HostStats.SIZE : 0;
+    }
+    
+    /**
+     * Compte le paquet dans la détection agrégée. Une détection par hôte reste
+     * prioritaire ; sinon, un seuil agrégé franchi donne une attaque distribuée.
+     */
+    private AnalysisResult checkAggregate(NetworkMonitor.NetworkPacket packet, AnalysisResult hostResult) {
+        HeavyHitterDetector.HeavyHitter hitter = heavyHitters.record(packet);
+        if (hitter == null || hostResult.isAttackDetected()) {
+            return hostResult;
+        }
         
+        AnalysisResult result = new AnalysisResult();
+        result.setAttackDetected(true);
+        result.setAttackType("DistributedDoS");
+        // Plus le volume dépasse le seuil, plus la confiance est élevée
+        result.setConfidence(Math.min(1.0, (hitter.getCount() - hitter.getThreshold()) / 
+                (double)(hitter.getThreshold() * 2)));
+        switch (hitter.getDimension()) {
+            case SOURCE_PREFIX:
+                result.setDescription("Attaque distribuée détectée - " + hitter.getCount() + 
+                        " paquets depuis " + hitter.getLabel() + " en " + (TIME_WINDOW / 1000) + " secondes");
+                break;
+            default:
+                result.setDescription("Attaque distribuée détectée - " + hitter.getCount() + 
+                        " paquets vers " + hitter.getLabel() + " en " + (TIME_WINDOW / 1000) + " secondes");
+        }
+        result.setSource(packet);
+        return result;
+    }
+    
+    /**
+     * Retourne les clés les plus fréquentes de la détection agrégée
+     * @param dimension la dimension (destination, port, préfixe source)
+     * @return les clés suivies, par fréquence décroissante
+     */
+    public List<HeavyHitterDetector.HeavyHitter> getHeavyHitters(HeavyHitterDetector.Dimension dimension) {
+        return heavyHitters.getTopK(dimension);
+    }
+    
+    /**
+     * @return la table des hôtes partagée par l'analyseur et ses extensions
+     */
+    public HostTable getHostTable() {
+        return hostTable;
+    }
+    
+    /**
+     * @return la position de la zone d'extension dans la zone de données d'un emplacement
+     */
+    public int getExtensionOffset() {
+        return HostStats.SIZE;
+    }
+    
+    /**
+     * @return la taille de la zone d'extension par hôte (en octets)
+     */
+    public int getExtensionSize() {
+        return extensionSize;
+    }
+    
+    /**
+     * Fait avancer l'horloge de l'analyse (sans jamais reculer)
+     */
+    private void advanceClock(long timestamp) {
+        if (timestamp > latestTimestamp) {
+            latestTimestamp = timestamp;
+        }
+    }
+    
+    /**
+     * Construit le résultat de l'analyse à partir des statistiques courantes d'un hôte
+     */
+    private AnalysisResult buildResult(HostStats stats, NetworkMonitor.NetworkPacket packet) {
         // Vérifie les différents types d'attaques potentielles
         boolean isDosAttack = checkForDosAttack(stats);
         boolean isPortScan = checkForPortScan(stats);
+        boolean isHostScan = checkForHostScan(stats);
         boolean isBandwidthAbuse = checkForBandwidthAbuse(stats);
         
-        // Nettoie les anciennes entrées
-        cleanupOldEntries();
-        
-        // Construit le résultat de l'analyse
         AnalysisResult result = new AnalysisResult();
         
         if (isDosAttack) {
@@ -63,6 +318,12 @@ public class PacketAnalyzer {
             result.setConfidence(calculateConfidence(stats, "PortScan"));
             result.setDescription("Scan de ports détecté - " + 
                     stats.getUniqueDestinationPorts() + " ports scannés");
+        } else if (isHostScan) {
+            result.setAttackDetected(true);
+            result.setAttackType("HorizontalScan");
+            result.setConfidence(calculateConfidence(stats, "HorizontalScan"));
+            result.setDescription("Balayage d'hôtes détecté - " + 
+                    stats.getUniqueDestinationHosts() + " hôtes sondés");
         } else if (isBandwidthAbuse) {
             result.setAttackDetected(true);
             result.setAttackType("BandwidthAbuse");
@@ -76,7 +337,20 @@ public class PacketAnalyzer {
             result.setDescription("Trafic normal");
         }
         
-        result.setSourceAddress(sourceAddress);
+        result.setSource(packet);
+        return result;
+    }
+    
+    /**
+     * Résultat d'un paquet dont l'hôte source n'a pas pu être suivi (table pleine)
+     */
+    private AnalysisResult untrackedResult(NetworkMonitor.NetworkPacket packet) {
+        AnalysisResult result = new AnalysisResult();
+        result.setAttackDetected(false);
+        result.setAttackType("None");
+        result.setConfidence(0.0);
+        result.setDescription("Hôte non suivi - table des hôtes pleine");
+        result.setSource(packet);
         return result;
     }
     
@@ -94,6 +368,14 @@ public class PacketAnalyzer {
         return stats.getUniqueDestinationPorts() > PORT_SCAN_THRESHOLD;
     }
     
+    /**
+     * Vérifie si les statistiques d'un hôte indiquent un balayage horizontal
+     * (un même service sondé sur de nombreux hôtes)
+     */
+    private boolean checkForHostScan(HostStats stats) {
+        return stats.getUniqueDestinationHosts() > HOST_SCAN_THRESHOLD;
+    }
+    
     /**
      * Vérifie si les statistiques d'un hôte indiquent un abus de bande passante
      */
@@ -116,6 +398,11 @@ public class PacketAnalyzer {
                 return Math.min(1.0, (stats.getUniqueDestinationPorts() - PORT_SCAN_THRESHOLD) / 
                         (double)(PORT_SCAN_THRESHOLD * 2));
                 
+            case "HorizontalScan":
+                // Plus le nombre d'hôtes sondés dépasse le seuil, plus la confiance est élevée
+                return Math.min(1.0, (stats.getUniqueDestinationHosts() - HOST_SCAN_THRESHOLD) / 
+                        (double)(HOST_SCAN_THRESHOLD * 2));
+                
             case "BandwidthAbuse":
                 // Plus la bande passante dépasse le seuil, plus la confiance est élevée
                 return Math.min(1.0, (stats.getBandwidth() - BANDWIDTH_THRESHOLD) / 
@@ -127,56 +414,234 @@ public class PacketAnalyzer {
     }
     
     /**
-     * Nettoie les entrées trop anciennes pour être pertinentes
+     * Nettoie les entrées trop anciennes pour être pertinentes.
+     * Seule une tranche bornée de la roue d'expiration de la table est traitée à
+     * chaque appel : le coût ne dépend pas du nombre d'hôtes suivis, et le retard
+     * éventuel est rattrapé lors des appels suivants.
+     */
+    public void cleanupOldEntries() {
+        hostTable.expire(latestTimestamp, EXPIRY_SLICE);
+    }
+    
+    /**
+     * @return le nombre d'hôtes actuellement suivis
      */
-    private void cleanupOldEntries() {
-        long currentTime = System.currentTimeMillis();
-        hostStatsMap.entrySet().removeIf(entry -> {
-            return currentTime - entry.getValue().getLastPacketTime() > TIME_WINDOW * 2;
-        });
+    public int getTrackedHostCount() {
+        return hostTable.size();
     }
     
     /**
-     * Classe interne pour stocker les statistiques d'un hôte
+     * Vue sur les statistiques d'un hôte, stockées dans un emplacement de la table
+     * des hôtes, sur la fenêtre glissante des TIME_WINDOW dernières millisecondes.
+     * Les compteurs sont des anneaux de seaux (voir SlidingWindowCounter) : un hôte
+     * actif depuis des heures n'est jugé que sur son activité récente.
+     * Les ports et hôtes de destination distincts sont estimés par des croquis de
+     * cardinalité (voir WindowedCardinality) : exacts sous les seuils de détection,
+     * et de taille fixe même pour un balayage complet des 65536 ports.
+     * La vue n'est utilisée que sous le verrou de l'emplacement.
      */
     private static class HostStats {
-        private final AtomicInteger connectionCount = new AtomicInteger(0);
-        private final Map<Integer, Boolean> destinationPorts = new HashMap<>();
-        private long totalBytes = 0;
-        private long firstPacketTime = 0;
-        private long lastPacketTime = 0;
+        // Disposition dans la zone de données de l'emplacement
+        private static final int INITIALIZED_OFFSET = 0;
+        private static final int FIRST_PACKET_OFFSET = 8;
+        private static final int CONNECTIONS_OFFSET = 16;
+        private static final int BYTES_OFFSET = CONNECTIONS_OFFSET + SlidingWindowCounter.sizeOf(BUCKET_COUNT);
+        private static final int PORTS_OFFSET = BYTES_OFFSET + SlidingWindowCounter.sizeOf(BUCKET_COUNT);
+        private static final int HOSTS_OFFSET = PORTS_OFFSET + WindowedCardinality.SIZE;
+        static final int SIZE = HOSTS_OFFSET + WindowedCardinality.SIZE;
+        
+        private final SlidingWindowCounter connections = new SlidingWindowCounter(BUCKET_COUNT, BUCKET_DURATION, null, 0);
+        private final SlidingWindowCounter bytes = new SlidingWindowCounter(BUCKET_COUNT, BUCKET_DURATION, null, 0);
+        private final WindowedCardinality destinationPorts = new WindowedCardinality(TIME_WINDOW, null, 0);
+        private final WindowedCardinality destinationHosts = new WindowedCardinality(TIME_WINDOW, null, 0);
+        private HostTable table;
+        private ByteBuffer buffer;
+        private int slot;
+        private int base;
+        
+        /**
+         * Positionne la vue sur un emplacement verrouillé, en initialisant
+         * les compteurs d'un hôte nouvellement inséré
+         */
+        HostStats wrap(HostTable table, int slot) {
+            this.table = table;
+            this.buffer = table.getBuffer();
+            this.slot = slot;
+            this.base = table.payloadOffset(slot);
+            
+            connections.wrap(buffer, base + CONNECTIONS_OFFSET);
+            bytes.wrap(buffer, base + BYTES_OFFSET);
+            destinationPorts.wrap(buffer, base + PORTS_OFFSET);
+            destinationHosts.wrap(buffer, base + HOSTS_OFFSET);
+            
+            if (buffer.getInt(base + INITIALIZED_OFFSET) == 0) {
+                connections.clear();
+                bytes.clear();
+                destinationPorts.clear();
+                destinationHosts.clear();
+                buffer.putLong(base + FIRST_PACKET_OFFSET, 0L);
+                buffer.putInt(base + INITIALIZED_OFFSET, 1);
+            }
+            return this;
+        }
         
         public void addPacket(NetworkMonitor.NetworkPacket packet) {
-            long currentTime = System.currentTimeMillis();
+            long currentTime = packet.getTimestamp();
             
-            if (firstPacketTime == 0) {
-                firstPacketTime = currentTime;
+            if (buffer.getLong(base + FIRST_PACKET_OFFSET) == 0) {
+                buffer.putLong(base + FIRST_PACKET_OFFSET, currentTime);
             }
             
-            connectionCount.incrementAndGet();
-            destinationPorts.put(packet.getDestinationPort(), true);
-            totalBytes += packet.getSize();
-            lastPacketTime = currentTime;
+            connections.add(currentTime, 1);
+            bytes.add(currentTime, packet.getSize());
+            
+            destinationPorts.add(currentTime, packet.getDestinationPort());
+            if (packet.isIPv6()) {
+                destinationHosts.add(currentTime, packet.getDestinationHigh(), packet.getDestinationLow());
+            } else {
+                destinationHosts.add(currentTime, packet.getDestinationIPv4() & 0xFFFFFFFFL);
+            }
+            
+            table.setLastSeen(slot, Math.max(table.getLastSeen(slot), currentTime));
         }
         
         public int getConnectionCount() {
-            return connectionCount.get();
+            return (int) connections.sum(getLastPacketTime());
         }
         
         public int getUniqueDestinationPorts() {
-            return destinationPorts.size();
+            return (int) destinationPorts.estimate(getLastPacketTime());
+        }
+        
+        public int getUniqueDestinationHosts() {
+            return (int) destinationHosts.estimate(getLastPacketTime());
         }
         
         public long getBandwidth() {
-            long timespan = lastPacketTime - firstPacketTime;
-            if (timespan <= 0) return 0;
+            long lastPacketTime = getLastPacketTime();
+            
+            // Durée observée, limitée à la fenêtre, et d'au moins un seau
+            long timespan = Math.min(lastPacketTime - buffer.getLong(base + FIRST_PACKET_OFFSET) + BUCKET_DURATION, TIME_WINDOW);
             
             // Bande passante en octets par seconde
-            return (totalBytes * 1000) / timespan;
+            return (bytes.sum(lastPacketTime) * 1000) / timespan;
         }
         
         public long getLastPacketTime() {
-            return lastPacketTime;
+            return table.getLastSeen(slot);
+        }
+    }
+    
+    /**
+     * Groupes d'un lot de paquets par hôte source, sur la clé primitive des paquets
+     * (famille, adresse) : ni InetAddress, ni table associative, ni liste par groupe.
+     * Les groupes suivent l'ordre de première apparition de leur hôte, et chaque groupe
+     * l'ordre d'arrivée de ses paquets. Les tableaux sont réutilisés d'un lot à l'autre :
+     * une instance par thread, valide jusqu'au regroupement suivant.
+     */
+    public static final class SourceGroups {
+        private int[] order = new int[0];           // Indices des paquets du lot, groupe par groupe
+        private int[] groupOf = new int[0];         // Groupe de chaque paquet du lot
+        private int[] groupStarts = new int[1];     // Début de chaque groupe dans order (+ sentinelle)
+        private int[] firstPackets = new int[0];    // Premier paquet de chaque groupe, porteur de la clé
+        private int[] table = new int[0];           // Adressage ouvert : groupe + 1, 0 si libre
+        private int groupCount;
+        
+        /**
+         * Regroupe les paquets d'un lot par hôte source
+         * @param batch les paquets à regrouper
+         * @return ces groupes
+         */
+        public SourceGroups group(List<NetworkMonitor.NetworkPacket> batch) {
+            int size = batch.size();
+            ensureCapacity(size);
+            Arrays.fill(table, 0);
+            int mask = table.length - 1;
+            groupCount = 0;
+            
+            for (int i = 0; i < size; i++) {
+                NetworkMonitor.NetworkPacket packet = batch.get(i);
+                int family = packet.isIPv6() ? 6 : 4;
+                int index = HostTable.hash(family, packet.getSourceHigh(), packet.getSourceLow()) & mask;
+                while (true) {
+                    int entry = table[index];
+                    if (entry == 0) {
+                        // Nouvel hôte dans ce lot
+                        firstPackets[groupCount] = i;
+                        groupStarts[groupCount + 1] = 0;
+                        table[index] = ++groupCount;
+                        groupOf[i] = groupCount - 1;
+                        break;
+                    }
+                    if (sameSource(packet, batch.get(firstPackets[entry - 1]))) {
+                        groupOf[i] = entry - 1;
+                        break;
+                    }
+                    index = (index + 1) & mask;
+                }
+                groupStarts[groupOf[i] + 1]++;
+            }
+            
+            // Tri par dénombrement, stable : l'ordre d'arrivée est conservé dans chaque groupe
+            groupStarts[0] = 0;
+            for (int g = 0; g < groupCount; g++) {
+                groupStarts[g + 1] += groupStarts[g];
+            }
+            for (int i = 0; i < size; i++) {
+                order[groupStarts[groupOf[i]]++] = i;
+            }
+            for (int g = groupCount; g > 0; g--) {
+                groupStarts[g] = groupStarts[g - 1];
+            }
+            groupStarts[0] = 0;
+            return this;
+        }
+        
+        /**
+         * @return le nombre de groupes, donc d'hôtes sources distincts du lot
+         */
+        public int groupCount() {
+            return groupCount;
+        }
+        
+        /**
+         * @return la position du premier paquet d'un groupe (voir packetIndex)
+         */
+        public int groupStart(int group) {
+            return groupStarts[group];
+        }
+        
+        /**
+         * @return la position qui suit le dernier paquet d'un groupe (voir packetIndex)
+         */
+        public int groupEnd(int group) {
+            return groupStarts[group + 1];
+        }
+        
+        /**
+         * @param position une position entre groupStart et groupEnd d'un groupe
+         * @return l'indice du paquet correspondant dans le lot
+         */
+        public int packetIndex(int position) {
+            return order[position];
+        }
+        
+        private void ensureCapacity(int size) {
+            if (order.length < size) {
+                order = new int[size];
+                groupOf = new int[size];
+                groupStarts = new int[size + 1];
+                firstPackets = new int[size];
+            }
+            int tableSize = Math.max(2, Integer.highestOneBit(Math.max(1, size)) << 2);
+            if (table.length != tableSize) {
+                table = new int[tableSize];
+            }
+        }
+        
+        private static boolean sameSource(NetworkMonitor.NetworkPacket a, NetworkMonitor.NetworkPacket b) {
+            return a.getSourceLow() == b.getSourceLow() && a.getSourceHigh() == b.getSourceHigh()
+                && a.isIPv6() == b.isIPv6();
         }
     }
     
@@ -188,7 +653,10 @@ public class PacketAnalyzer {
         private String attackType;
         private double confidence;
         private String description;
-        private InetAddress sourceAddress;
+        private int sourceFamily;                   // 4 ou 6 si la source est encodée, 0 sinon
+        private long sourceHigh;
+        private long sourceLow;
+        private InetAddress sourceAddress;          // Vue construite à la demande
         
         // Getters and setters
         public boolean isAttackDetected() { return attackDetected; }
@@ -203,8 +671,28 @@ public class PacketAnalyzer {
         public String getDescription() { return description; }
         public void setDescription(String description) { this.description = description; }
         
-        public InetAddress getSourceAddress() { return sourceAddress; }
-        public void setSourceAddress(InetAddress sourceAddress) { this.sourceAddress = sourceAddress; }
+        public InetAddress getSourceAddress() {
+            if (sourceAddress == null && sourceFamily != 0) {
+                sourceAddress = NetworkMonitor.NetworkPacket.toInetAddress(sourceFamily == 6, sourceHigh, sourceLow);
+            }
+            return sourceAddress;
+        }
+        
+        public void setSourceAddress(InetAddress sourceAddress) {
+            this.sourceAddress = sourceAddress;
+            this.sourceFamily = 0;
+        }
+        
+        /**
+         * Retient l'adresse source d'un paquet sous sa forme primitive : le paquet peut
+         * être recyclé ensuite, et la vue InetAddress n'est construite qu'à la demande
+         */
+        public void setSource(NetworkMonitor.NetworkPacket packet) {
+            this.sourceFamily = packet.isIPv6() ? 6 : 4;
+            this.sourceHigh = packet.getSourceHigh();
+            this.sourceLow = packet.getSourceLow();
+            this.sourceAddress = null;
+        }
         
         @Override
         public String toString() {
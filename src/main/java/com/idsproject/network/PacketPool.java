@@ -0,0 +1,63 @@
+package main.java.com.idsproject.network;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool borné de paquets réutilisables.
+ * Les paquets libres sont conservés dans un tampon circulaire sans verrou ;
+ * lorsque le pool est vide, un nouveau paquet est alloué (et compté), et
+ * lorsqu'il est plein, le paquet rendu est simplement abandonné au ramasse-miettes.
+ *
+ * Un paquet obtenu par acquire() appartient au pipeline jusqu'à ce que tous les
+ * écouteurs aient été notifiés ; il est alors rendu au pool par le moniteur.
+ */
+public class PacketPool {
+
+    private final PacketRingBuffer freePackets;
+    private final AtomicLong allocations = new AtomicLong();
+
+    /**
+     * @param capacity le nombre de paquets préalloués et conservés au maximum
+     */
+    public PacketPool(int capacity) {
+        this.freePackets = new PacketRingBuffer(capacity, PacketRingBuffer.WaitStrategy.BUSY_SPIN);
+        for (int i = 0; i < freePackets.getCapacity(); i++) {
+            freePackets.offer(new NetworkMonitor.NetworkPacket(this));
+        }
+    }
+
+    /**
+     * Obtient un paquet libre, à remplir par l'une des méthodes set
+     * @return un paquet recyclé, ou un nouveau paquet si le pool est vide
+     */
+    public NetworkMonitor.NetworkPacket acquire() {
+        NetworkMonitor.NetworkPacket packet = freePackets.poll();
+        if (packet == null) {
+            allocations.incrementAndGet();
+            packet = new NetworkMonitor.NetworkPacket(this);
+        }
+        return packet;
+    }
+
+    /**
+     * Rend un paquet au pool
+     * @param packet le paquet, qui ne doit plus être utilisé par l'appelant
+     */
+    void release(NetworkMonitor.NetworkPacket packet) {
+        freePackets.offer(packet);
+    }
+
+    /**
+     * @return le nombre de paquets disponibles dans le pool
+     */
+    public int getAvailable() {
+        return freePackets.getDepth();
+    }
+
+    /**
+     * @return le nombre de paquets alloués faute de paquet libre
+     */
+    public long getAllocationCount() {
+        return allocations.get();
+    }
+}
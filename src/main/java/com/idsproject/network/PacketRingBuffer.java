@@ -0,0 +1,213 @@
+package main.java.com.idsproject.network;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Tampon circulaire borné et sans verrou entre la capture et la détection.
+ * Les emplacements sont préalloués ; chaque emplacement porte un numéro de séquence
+ * qui indique s'il est libre pour le producteur ou prêt pour un consommateur.
+ * La publication ne bloque jamais : si le tampon est plein, le paquet est rejeté
+ * et compté, afin que la capture ne dépende jamais de la vitesse de détection.
+ *
+ * Conçu pour un producteur (le thread du sélecteur NIO) et plusieurs consommateurs,
+ * la réservation par CAS tolère aussi plusieurs producteurs (mode bloquant).
+ */
+public class PacketRingBuffer {
+
+    /**
+     * Stratégie d'attente d'un consommateur lorsque le tampon est vide
+     */
+    public enum WaitStrategy {
+        /** Attente active : latence minimale, consomme un cœur par consommateur */
+        BUSY_SPIN,
+        /** Cède le processeur entre deux tentatives */
+        YIELD,
+        /** Suspend brièvement le thread : économe en CPU, latence plus élevée */
+        PARK;
+
+        private static final long PARK_NANOS = 50_000; // 50 µs
+        private static final int SPIN_TRIES = 100;
+
+        /**
+         * Attend avant la prochaine tentative de lecture
+         * @param idleCount nombre de tentatives infructueuses consécutives
+         */
+        void idle(int idleCount) {
+            if (this == BUSY_SPIN || idleCount < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else if (this == YIELD) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+    }
+
+    private final NetworkMonitor.NetworkPacket[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+
+    private final AtomicLong tail = new AtomicLong(); // Prochaine position d'écriture
+    private final AtomicLong head = new AtomicLong(); // Prochaine position de lecture
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * @param capacity la capacité demandée, arrondie à la puissance de deux supérieure
+     * @param waitStrategy la stratégie d'attente des consommateurs
+     */
+    public PacketRingBuffer(int capacity, WaitStrategy waitStrategy) {
+        if (capacity < 2 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Capacité invalide: " + capacity);
+        }
+
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new NetworkMonitor.NetworkPacket[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        this.waitStrategy = waitStrategy;
+
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Publie un paquet sans jamais bloquer
+     * @param packet le paquet à publier
+     * @return false si le tampon était plein et que le paquet a été rejeté
+     */
+    public boolean offer(NetworkMonitor.NetworkPacket packet) {
+        long position = tail.get();
+
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[index] = packet;
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // L'emplacement n'a pas encore été libéré : le tampon est plein
+                dropped.incrementAndGet();
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Retire un paquet sans attendre
+     * @return le paquet, ou null si le tampon est vide
+     */
+    public NetworkMonitor.NetworkPacket poll() {
+        long position = head.get();
+
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - (position + 1);
+
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    NetworkMonitor.NetworkPacket packet = slots[index];
+                    slots[index] = null;
+                    sequences.lazySet(index, position + mask + 1);
+                    return packet;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    /**
+     * Retire un paquet en attendant selon la stratégie configurée
+     * @param running l'indicateur d'activité ; l'attente cesse lorsqu'il passe à false
+     * @return le paquet, ou null si l'attente a été interrompue par l'arrêt
+     */
+    public NetworkMonitor.NetworkPacket take(AtomicBoolean running) {
+        int idleCount = 0;
+        while (running.get()) {
+            NetworkMonitor.NetworkPacket packet = poll();
+            if (packet != null) {
+                return packet;
+            }
+            waitStrategy.idle(idleCount);
+            if (idleCount < Integer.MAX_VALUE) {
+                idleCount++;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Attend au moins un paquet puis vide le tampon dans un lot, sans dépasser la taille maximale
+     * @param batch la liste recevant les paquets retirés
+     * @param maxBatchSize la taille maximale du lot
+     * @param running l'indicateur d'activité ; l'attente cesse lorsqu'il passe à false
+     * @return le nombre de paquets ajoutés au lot (0 si l'attente a été interrompue par l'arrêt)
+     */
+    public int drainTo(List<NetworkMonitor.NetworkPacket> batch, int maxBatchSize, AtomicBoolean running) {
+        NetworkMonitor.NetworkPacket first = take(running);
+        if (first == null) {
+            return 0;
+        }
+        batch.add(first);
+
+        int count = 1;
+        NetworkMonitor.NetworkPacket packet;
+        while (count < maxBatchSize && (packet = poll()) != null) {
+            batch.add(packet);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return le nombre de paquets en attente de consommation
+     */
+    public int getDepth() {
+        long depth = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(depth, slots.length));
+    }
+
+    /**
+     * @return la capacité effective du tampon
+     */
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * @return le nombre total de paquets publiés
+     */
+    public long getPublishedCount() {
+        return tail.get();
+    }
+
+    /**
+     * @return le nombre total de paquets rejetés faute de place
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return la stratégie d'attente des consommateurs
+     */
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+}
@@ -0,0 +1,80 @@
+package main.java.com.idsproject.network;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool borné de tampons directs pour la capture des charges utiles.
+ * Tous les tampons sont découpés dans une seule allocation hors tas, faite une fois :
+ * la mémoire de capture est fixe et aucun tampon n'est alloué par connexion.
+ * Lorsque le pool est vide, la charge utile n'est simplement pas capturée (et la
+ * pénurie est comptée) : la capture ne doit jamais faire grossir la mémoire.
+ */
+public class PayloadPool {
+
+    private final ArrayBlockingQueue<ByteBuffer> freeBuffers;
+    private final int bufferSize;
+    private final AtomicLong exhaustions = new AtomicLong();
+
+    /**
+     * @param bufferCount le nombre de tampons
+     * @param bufferSize la taille de chaque tampon (en octets), soit la charge utile maximale capturée
+     */
+    public PayloadPool(int bufferCount, int bufferSize) {
+        if (bufferCount < 1 || bufferSize < 1) {
+            throw new IllegalArgumentException("Pool invalide: " + bufferCount + " x " + bufferSize + " octets");
+        }
+        this.bufferSize = bufferSize;
+        this.freeBuffers = new ArrayBlockingQueue<>(bufferCount);
+
+        ByteBuffer memory = ByteBuffer.allocateDirect(bufferCount * bufferSize);
+        for (int i = 0; i < bufferCount; i++) {
+            memory.limit((i + 1) * bufferSize).position(i * bufferSize);
+            freeBuffers.offer(memory.slice());
+        }
+    }
+
+    /**
+     * Obtient un tampon libre, vidé
+     * @return un tampon de bufferSize octets, ou null si le pool est vide
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = freeBuffers.poll();
+        if (buffer == null) {
+            exhaustions.incrementAndGet();
+            return null;
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Rend un tampon au pool
+     * @param buffer le tampon, qui ne doit plus être utilisé par l'appelant
+     */
+    void release(ByteBuffer buffer) {
+        freeBuffers.offer(buffer);
+    }
+
+    /**
+     * @return la taille de chaque tampon (en octets)
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @return le nombre de tampons disponibles
+     */
+    public int getAvailable() {
+        return freeBuffers.size();
+    }
+
+    /**
+     * @return le nombre de captures abandonnées faute de tampon libre
+     */
+    public long getExhaustionCount() {
+        return exhaustions.get();
+    }
+}
@@ -0,0 +1,558 @@
+package main.java.com.idsproject.network;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lecteur de fichiers de capture pcap et pcapng pour rejouer du trafic enregistré.
+ * Le fichier est projeté en mémoire par fenêtres (FileChannel.map) et les en-têtes
+ * Ethernet/IPv4/IPv6/TCP/UDP sont décodés directement dans la projection, sans copie.
+ * Les paquets décodés proviennent du pool du moniteur et sont livrés par lots
+ * à la chaîne d'écouteurs existante via NetworkMonitor.injectPackets.
+ */
+public class PcapReader {
+
+    // Nombres magiques des formats
+    private static final int PCAP_MAGIC_MICROS = 0xA1B2C3D4;
+    private static final int PCAP_MAGIC_NANOS = 0xA1B23C4D;
+    private static final int PCAPNG_SECTION_HEADER = 0x0A0D0D0A;
+    private static final int PCAPNG_BYTE_ORDER_MAGIC = 0x1A2B3C4D;
+
+    // Blocs pcapng utilisés
+    private static final int PCAPNG_INTERFACE_DESCRIPTION = 0x00000001;
+    private static final int PCAPNG_SIMPLE_PACKET = 0x00000003;
+    private static final int PCAPNG_ENHANCED_PACKET = 0x00000006;
+    private static final int PCAPNG_OPTION_TSRESOL = 9;
+
+    // Types de lien
+    private static final int LINKTYPE_NULL = 0;
+    private static final int LINKTYPE_ETHERNET = 1;
+    private static final int LINKTYPE_RAW = 101;
+    private static final int LINKTYPE_LINUX_SLL = 113;
+    private static final int DLT_RAW_BSD = 12;     // Valeurs historiques de LINKTYPE_RAW
+    private static final int DLT_RAW_OPENBSD = 14;
+
+    // Types Ethernet et protocoles IP
+    private static final int ETHERTYPE_IPV4 = 0x0800;
+    private static final int ETHERTYPE_IPV6 = 0x86DD;
+    private static final int ETHERTYPE_VLAN = 0x8100;
+    private static final int ETHERTYPE_QINQ = 0x88A8;
+    private static final int PROTOCOL_TCP = 6;
+    private static final int PROTOCOL_UDP = 17;
+
+    private static final long WINDOW_SIZE = 1L << 30; // Fenêtres de projection de 1 Gio
+    private static final int BATCH_SIZE = 256;
+
+    private final Path file;
+
+    // Fenêtre de projection courante
+    private FileChannel channel;
+    private long fileSize;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private boolean swapped; // Ordre des octets du fichier différent du big-endian
+
+    // Interfaces pcapng de la section courante
+    private final List<Interface> interfaces = new ArrayList<>();
+
+    // Statistiques de lecture
+    private long packetsEmitted;
+    private long framesSkipped;
+
+    /**
+     * @param file le fichier pcap ou pcapng à lire
+     */
+    public PcapReader(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Rejoue le fichier à pleine vitesse à travers les écouteurs du moniteur
+     * @param monitor le moniteur dont les écouteurs reçoivent les paquets
+     * @return le nombre de paquets émis
+     * @throws IOException si le fichier est illisible ou dans un format inconnu
+     */
+    public long replay(NetworkMonitor monitor) throws IOException {
+        packetsEmitted = 0;
+        framesSkipped = 0;
+        List<NetworkMonitor.NetworkPacket> batch = new ArrayList<>(BATCH_SIZE);
+
+        try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel = fileChannel;
+            fileSize = fileChannel.size();
+            window = null;
+
+            if (fileSize < 24) {
+                throw new IOException("Fichier de capture trop court: " + file);
+            }
+
+            map(0);
+            int magic = window.getInt(0);
+            if (magic == PCAPNG_SECTION_HEADER) {
+                readPcapng(monitor, batch);
+            } else {
+                readPcap(monitor, batch);
+            }
+
+            flush(monitor, batch);
+        } finally {
+            channel = null;
+            window = null;
+        }
+
+        return packetsEmitted;
+    }
+
+    /**
+     * Lit un fichier pcap classique
+     */
+    private void readPcap(NetworkMonitor monitor, List<NetworkMonitor.NetworkPacket> batch) throws IOException {
+        int magic = window.getInt(0);
+        boolean nanos;
+        if (magic == PCAP_MAGIC_MICROS || magic == PCAP_MAGIC_NANOS) {
+            swapped = false;
+            nanos = magic == PCAP_MAGIC_NANOS;
+        } else if (Integer.reverseBytes(magic) == PCAP_MAGIC_MICROS || Integer.reverseBytes(magic) == PCAP_MAGIC_NANOS) {
+            swapped = true;
+            nanos = Integer.reverseBytes(magic) == PCAP_MAGIC_NANOS;
+        } else {
+            throw new IOException("Format de capture inconnu: " + file);
+        }
+
+        int linkType = fileInt(20) & 0x0FFFFFFF;
+        long position = 24;
+
+        while (position + 16 <= fileSize) {
+            ensure(position, 16);
+            int offset = (int) (position - windowStart);
+            long seconds = fileInt(offset) & 0xFFFFFFFFL;
+            long fraction = fileInt(offset + 4) & 0xFFFFFFFFL;
+            int capturedLength = fileInt(offset + 8);
+            long originalLength = fileInt(offset + 12) & 0xFFFFFFFFL;
+
+            if (capturedLength < 0 || position + 16 + capturedLength > fileSize) {
+                System.err.println("Enregistrement tronqué à la position " + position + ", arrêt de la lecture");
+                return;
+            }
+
+            ensure(position + 16, capturedLength);
+            long timestamp = seconds * 1000 + (nanos ? fraction / 1_000_000 : fraction / 1_000);
+            decodeFrame(linkType, (int) (position + 16 - windowStart), capturedLength, originalLength, timestamp,
+                    monitor, batch);
+
+            position += 16 + capturedLength;
+        }
+    }
+
+    /**
+     * Lit un fichier pcapng (sections, interfaces, paquets simples et améliorés)
+     */
+    private void readPcapng(NetworkMonitor monitor, List<NetworkMonitor.NetworkPacket> batch) throws IOException {
+        long position = 0;
+
+        while (position + 12 <= fileSize) {
+            ensure(position, 12);
+            int offset = (int) (position - windowStart);
+            int blockType = window.getInt(offset);
+
+            if (blockType == PCAPNG_SECTION_HEADER) {
+                // Nouvelle section : l'ordre des octets peut changer
+                int byteOrderMagic = window.getInt(offset + 8);
+                swapped = byteOrderMagic != PCAPNG_BYTE_ORDER_MAGIC;
+                interfaces.clear();
+            } else {
+                blockType = fileInt(offset);
+            }
+
+            int blockLength = fileInt(offset + 4);
+            if (blockLength < 12 || position + blockLength > fileSize) {
+                System.err.println("Bloc pcapng invalide à la position " + position + ", arrêt de la lecture");
+                return;
+            }
+
+            ensure(position, blockLength);
+            offset = (int) (position - windowStart);
+
+            switch (blockType) {
+                case PCAPNG_INTERFACE_DESCRIPTION:
+                    readInterfaceDescription(offset, blockLength);
+                    break;
+                case PCAPNG_ENHANCED_PACKET:
+                    readEnhancedPacket(offset, blockLength, monitor, batch);
+                    break;
+                case PCAPNG_SIMPLE_PACKET:
+                    if (!interfaces.isEmpty() && interfaces.get(0).lastTimestamp < 0 && !interfaces.get(0).wallClock) {
+                        // Premier paquet simple sans horodatage connu : la recherche peut déplacer la fenêtre
+                        Interface description = interfaces.get(0);
+                        description.lastTimestamp = firstEnhancedTimestamp(position + blockLength);
+                        description.wallClock = description.lastTimestamp < 0;
+                        ensure(position, blockLength);
+                        offset = (int) (position - windowStart);
+                    }
+                    readSimplePacket(offset, blockLength, monitor, batch);
+                    break;
+                default:
+                    // Blocs de statistiques, de noms, etc. : ignorés
+                    break;
+            }
+
+            position += blockLength;
+        }
+    }
+
+    /**
+     * Enregistre le type de lien et la résolution d'horodatage d'une interface
+     */
+    private void readInterfaceDescription(int offset, int blockLength) {
+        int linkType = fileShort(offset + 8);
+        int tsresol = 6; // Microsecondes par défaut
+
+        // Options : code (2), longueur (2), valeur alignée sur 4 octets
+        int option = offset + 16;
+        int end = offset + blockLength - 4;
+        while (option + 4 <= end) {
+            int code = fileShort(option);
+            int length = fileShort(option + 2);
+            if (code == 0) {
+                break;
+            }
+            if (code == PCAPNG_OPTION_TSRESOL && length >= 1) {
+                tsresol = window.get(option + 4) & 0xFF;
+            }
+            option += 4 + ((length + 3) & ~3);
+        }
+
+        interfaces.add(new Interface(linkType, tsresol));
+    }
+
+    /**
+     * Cherche, dans la suite de la section, l'horodatage du premier paquet amélioré de
+     * l'interface 0, celle des paquets simples
+     * @param position le début du bloc qui suit
+     * @return l'horodatage en millisecondes, ou -1 si la section n'en a aucun
+     */
+    private long firstEnhancedTimestamp(long position) throws IOException {
+        while (position + 12 <= fileSize) {
+            ensure(position, 12);
+            int offset = (int) (position - windowStart);
+            if (window.getInt(offset) == PCAPNG_SECTION_HEADER) {
+                break;
+            }
+            int blockType = fileInt(offset);
+            int blockLength = fileInt(offset + 4);
+            if (blockLength < 12 || position + blockLength > fileSize) {
+                break;
+            }
+            if (blockType == PCAPNG_ENHANCED_PACKET && blockLength >= 32) {
+                ensure(position, 20);
+                offset = (int) (position - windowStart);
+                if (fileInt(offset + 8) == 0) {
+                    long rawTimestamp = ((fileInt(offset + 12) & 0xFFFFFFFFL) << 32) | (fileInt(offset + 16) & 0xFFFFFFFFL);
+                    return toMillis(rawTimestamp, interfaces.get(0).tsresol);
+                }
+            }
+            position += blockLength;
+        }
+        return -1;
+    }
+
+    private void readEnhancedPacket(int offset, int blockLength, NetworkMonitor monitor,
+                                    List<NetworkMonitor.NetworkPacket> batch) {
+        int interfaceId = fileInt(offset + 8);
+        if (interfaceId < 0 || interfaceId >= interfaces.size()) {
+            framesSkipped++;
+            return;
+        }
+
+        Interface description = interfaces.get(interfaceId);
+        long rawTimestamp = ((fileInt(offset + 12) & 0xFFFFFFFFL) << 32) | (fileInt(offset + 16) & 0xFFFFFFFFL);
+        int capturedLength = Math.min(fileInt(offset + 20), blockLength - 32);
+        long originalLength = fileInt(offset + 24) & 0xFFFFFFFFL;
+        if (capturedLength < 0) {
+            framesSkipped++;
+            return;
+        }
+
+        description.lastTimestamp = toMillis(rawTimestamp, description.tsresol);
+        decodeFrame(description.linkType, offset + 28, capturedLength, originalLength,
+                description.lastTimestamp, monitor, batch);
+    }
+
+    private void readSimplePacket(int offset, int blockLength, NetworkMonitor monitor,
+                                  List<NetworkMonitor.NetworkPacket> batch) {
+        if (interfaces.isEmpty()) {
+            framesSkipped++;
+            return;
+        }
+
+        long originalLength = fileInt(offset + 8) & 0xFFFFFFFFL;
+        int capturedLength = (int) Math.min(originalLength, blockLength - 16);
+        // Les paquets simples n'ont pas d'horodatage : ils prennent celui du dernier
+        // paquet amélioré de leur interface, pour rester dans les fenêtres de l'analyse.
+        // Dans une section sans aucun horodatage, les fenêtres suivent le temps réel.
+        Interface description = interfaces.get(0);
+        long timestamp = description.wallClock ? System.currentTimeMillis() : description.lastTimestamp;
+        decodeFrame(description.linkType, offset + 12, capturedLength, originalLength, timestamp, monitor, batch);
+    }
+
+    /**
+     * Convertit un horodatage pcapng en millisecondes selon la résolution de l'interface
+     */
+    private static long toMillis(long timestamp, int tsresol) {
+        int exponent = tsresol & 0x7F;
+        if ((tsresol & 0x80) != 0) {
+            // Résolution en puissance de 2
+            long seconds = timestamp >>> exponent;
+            long fraction = timestamp & ((1L << exponent) - 1);
+            return seconds * 1000 + ((fraction * 1000) >>> exponent);
+        }
+
+        if (exponent >= 3) {
+            long divisor = 1;
+            for (int i = 3; i < exponent; i++) {
+                divisor *= 10;
+            }
+            return timestamp / divisor;
+        }
+
+        long multiplier = 1;
+        for (int i = exponent; i < 3; i++) {
+            multiplier *= 10;
+        }
+        return timestamp * multiplier;
+    }
+
+    /**
+     * Décode une trame et émet un paquet si elle transporte de l'IPv4 ou de l'IPv6
+     * @param offset position de la trame dans la fenêtre courante
+     */
+    private void decodeFrame(int linkType, int offset, int length, long originalLength, long timestamp,
+                             NetworkMonitor monitor, List<NetworkMonitor.NetworkPacket> batch) {
+        int etherType;
+        int network;
+
+        switch (linkType) {
+            case LINKTYPE_ETHERNET:
+                if (length < 14) {
+                    framesSkipped++;
+                    return;
+                }
+                etherType = window.getShort(offset + 12) & 0xFFFF;
+                network = offset + 14;
+                // Étiquettes VLAN 802.1Q / 802.1ad
+                while ((etherType == ETHERTYPE_VLAN || etherType == ETHERTYPE_QINQ) && network + 4 <= offset + length) {
+                    etherType = window.getShort(network + 2) & 0xFFFF;
+                    network += 4;
+                }
+                break;
+            case LINKTYPE_LINUX_SLL:
+                if (length < 16) {
+                    framesSkipped++;
+                    return;
+                }
+                etherType = window.getShort(offset + 14) & 0xFFFF;
+                network = offset + 16;
+                break;
+            case LINKTYPE_NULL:
+                if (length < 4) {
+                    framesSkipped++;
+                    return;
+                }
+                // Famille d'adresses dans l'ordre de l'hôte de capture : on se fie à la version IP
+                etherType = 0;
+                network = offset + 4;
+                break;
+            case LINKTYPE_RAW:
+            case DLT_RAW_BSD:
+            case DLT_RAW_OPENBSD:
+                etherType = 0;
+                network = offset;
+                break;
+            default:
+                framesSkipped++;
+                return;
+        }
+
+        int end = offset + length;
+        if (network >= end) {
+            framesSkipped++;
+            return;
+        }
+
+        if (etherType == 0) {
+            int version = (window.get(network) & 0xF0) >>> 4;
+            etherType = version == 4 ? ETHERTYPE_IPV4 : version == 6 ? ETHERTYPE_IPV6 : -1;
+        }
+
+        if (etherType == ETHERTYPE_IPV4) {
+            decodeIPv4(network, end, originalLength, timestamp, monitor, batch);
+        } else if (etherType == ETHERTYPE_IPV6) {
+            decodeIPv6(network, end, originalLength, timestamp, monitor, batch);
+        } else {
+            framesSkipped++;
+        }
+    }
+
+    private void decodeIPv4(int offset, int end, long originalLength, long timestamp,
+                            NetworkMonitor monitor, List<NetworkMonitor.NetworkPacket> batch) {
+        if (offset + 20 > end) {
+            framesSkipped++;
+            return;
+        }
+
+        int headerLength = (window.get(offset) & 0x0F) * 4;
+        if (headerLength < 20) {
+            // IHL invalide : les ports seraient lus dans l'en-tête IP
+            framesSkipped++;
+            return;
+        }
+        int protocol = window.get(offset + 9) & 0xFF;
+        boolean firstFragment = (window.getShort(offset + 6) & 0x1FFF) == 0;
+        int source = window.getInt(offset + 12);
+        int destination = window.getInt(offset + 16);
+
+        int transport = offset + headerLength;
+        int sourcePort = 0;
+        int destinationPort = 0;
+        if (firstFragment && (protocol == PROTOCOL_TCP || protocol == PROTOCOL_UDP) && transport + 4 <= end) {
+            sourcePort = window.getShort(transport) & 0xFFFF;
+            destinationPort = window.getShort(transport + 2) & 0xFFFF;
+        }
+
+        NetworkMonitor.NetworkPacket packet = monitor.getPacketPool().acquire();
+        packet.setIPv4(source, destination, sourcePort, destinationPort, timestamp, originalLength);
+        emit(packet, monitor, batch);
+    }
+
+    private void decodeIPv6(int offset, int end, long originalLength, long timestamp,
+                            NetworkMonitor monitor, List<NetworkMonitor.NetworkPacket> batch) {
+        if (offset + 40 > end) {
+            framesSkipped++;
+            return;
+        }
+
+        int nextHeader = window.get(offset + 6) & 0xFF;
+        long sourceHigh = window.getLong(offset + 8);
+        long sourceLow = window.getLong(offset + 16);
+        long destinationHigh = window.getLong(offset + 24);
+        long destinationLow = window.getLong(offset + 32);
+
+        // Saute les en-têtes d'extension courants
+        int transport = offset + 40;
+        boolean firstFragment = true;
+        while (transport + 8 <= end && isIPv6ExtensionHeader(nextHeader)) {
+            if (nextHeader == 44) {
+                firstFragment = (window.getShort(transport + 2) & 0xFFF8) == 0;
+                nextHeader = window.get(transport) & 0xFF;
+                transport += 8;
+            } else if (nextHeader == 51) {
+                int length = ((window.get(transport + 1) & 0xFF) + 2) * 4;
+                nextHeader = window.get(transport) & 0xFF;
+                transport += length;
+            } else {
+                int length = ((window.get(transport + 1) & 0xFF) + 1) * 8;
+                nextHeader = window.get(transport) & 0xFF;
+                transport += length;
+            }
+        }
+
+        int sourcePort = 0;
+        int destinationPort = 0;
+        if (firstFragment && (nextHeader == PROTOCOL_TCP || nextHeader == PROTOCOL_UDP) && transport + 4 <= end) {
+            sourcePort = window.getShort(transport) & 0xFFFF;
+            destinationPort = window.getShort(transport + 2) & 0xFFFF;
+        }
+
+        NetworkMonitor.NetworkPacket packet = monitor.getPacketPool().acquire();
+        packet.setIPv6(sourceHigh, sourceLow, destinationHigh, destinationLow,
+                sourcePort, destinationPort, timestamp, originalLength);
+        emit(packet, monitor, batch);
+    }
+
+    private static boolean isIPv6ExtensionHeader(int nextHeader) {
+        return nextHeader == 0 || nextHeader == 43 || nextHeader == 44 || nextHeader == 51 || nextHeader == 60;
+    }
+
+    private void emit(NetworkMonitor.NetworkPacket packet, NetworkMonitor monitor,
+                      List<NetworkMonitor.NetworkPacket> batch) {
+        batch.add(packet);
+        packetsEmitted++;
+        if (batch.size() >= BATCH_SIZE) {
+            flush(monitor, batch);
+        }
+    }
+
+    private static void flush(NetworkMonitor monitor, List<NetworkMonitor.NetworkPacket> batch) {
+        if (!batch.isEmpty()) {
+            monitor.injectPackets(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Garantit que l'intervalle [position, position + length) est dans la fenêtre projetée
+     */
+    private void ensure(long position, int length) throws IOException {
+        if (length > WINDOW_SIZE) {
+            throw new IOException("Enregistrement trop grand (" + length + " octets) à la position " + position);
+        }
+        if (position < windowStart || position + length > windowStart + window.capacity()) {
+            map(position);
+        }
+    }
+
+    private void map(long position) throws IOException {
+        long size = Math.min(WINDOW_SIZE, fileSize - position);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        window.order(ByteOrder.BIG_ENDIAN);
+        windowStart = position;
+    }
+
+    /**
+     * Lit un entier dans l'ordre des octets du fichier (les en-têtes réseau restent big-endian)
+     */
+    private int fileInt(int offset) {
+        int value = window.getInt(offset);
+        return swapped ? Integer.reverseBytes(value) : value;
+    }
+
+    private int fileShort(int offset) {
+        short value = window.getShort(offset);
+        return (swapped ? Short.reverseBytes(value) : value) & 0xFFFF;
+    }
+
+    /**
+     * Interface pcapng : type de lien, résolution et dernier horodatage lu
+     */
+    private static final class Interface {
+        final int linkType;
+        final int tsresol;
+        long lastTimestamp = -1; // Millisecondes, -1 tant qu'aucun paquet amélioré n'est lu
+        boolean wallClock;       // Aucun paquet amélioré dans la section : horloge murale
+
+        Interface(int linkType, int tsresol) {
+            this.linkType = linkType;
+            this.tsresol = tsresol;
+        }
+    }
+
+    /**
+     * @return le nombre de paquets émis lors de la dernière lecture
+     */
+    public long getPacketsEmitted() {
+        return packetsEmitted;
+    }
+
+    /**
+     * @return le nombre de trames ignorées (non IP, tronquées ou de type de lien inconnu)
+     */
+    public long getFramesSkipped() {
+        return framesSkipped;
+    }
+}
@@ -0,0 +1,279 @@
+package main.java.com.idsproject.network;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Accepteur NIO : un seul thread et un seul Selector possèdent tous les
+ * ServerSocketChannel surveillés et acceptent les connexions sans bloquer.
+ * Le coût d'une acceptation ne dépend plus du nombre de ports surveillés.
+ *
+ * Le même thread lit les charges utiles des connexions acceptées (voir readPayload) :
+ * chaque lecture se termine quand le tampon est plein, à la fin du flux ou à
+ * l'expiration du délai de capture, sans jamais bloquer la boucle de sélection.
+ */
+class SelectorAcceptor implements Runnable {
+
+    /**
+     * Rappel invoqué sur le thread du sélecteur pour chaque connexion acceptée
+     */
+    interface ConnectionHandler {
+        void onAccepted(SocketChannel channel);
+    }
+
+    /**
+     * Rappel invoqué sur le thread du sélecteur à la fin de la lecture d'une charge utile.
+     * Le canal reste ouvert : il appartient au destinataire.
+     */
+    interface ReadHandler {
+        void onPayloadRead(SocketChannel channel, ByteBuffer buffer, Object attachment);
+    }
+
+    private final int[] ports;
+    private final ConnectionHandler handler;
+    private final ReadHandler readHandler;
+    private final long readTimeout;
+    private final AtomicBoolean running;
+    // Lectures en cours, par échéance croissante (le délai est le même pour toutes)
+    private final ArrayDeque<PendingRead> pendingReads = new ArrayDeque<>();
+    private Selector selector;
+
+    /**
+     * @param ports les ports à surveiller
+     * @param handler le traitement appliqué à chaque connexion acceptée
+     * @param readHandler le traitement appliqué à chaque charge utile lue
+     * @param readTimeout le délai maximal de lecture d'une charge utile (en millisecondes)
+     * @param running indicateur partagé avec le moniteur réseau
+     */
+    SelectorAcceptor(int[] ports, ConnectionHandler handler, ReadHandler readHandler,
+                     long readTimeout, AtomicBoolean running) {
+        this.ports = ports;
+        this.handler = handler;
+        this.readHandler = readHandler;
+        this.readTimeout = readTimeout;
+        this.running = running;
+    }
+
+    /**
+     * Ouvre le sélecteur et enregistre un canal d'écoute par port
+     * @return le nombre de ports effectivement surveillés
+     * @throws IOException si le sélecteur ne peut pas être ouvert
+     */
+    int open() throws IOException {
+        selector = Selector.open();
+        int bound = 0;
+
+        for (int port : ports) {
+            if (register(port) || (port < 1024 && register(port + 8000))) {
+                bound++;
+            }
+        }
+
+        return bound;
+    }
+
+    /**
+     * Enregistre un canal d'écoute non bloquant sur le sélecteur
+     * @param port le port à surveiller
+     * @return true si le port a pu être ouvert
+     */
+    private boolean register(int port) {
+        ServerSocketChannel channel = null;
+        try {
+            channel = ServerSocketChannel.open();
+            channel.configureBlocking(false);
+            channel.bind(new InetSocketAddress(port), 1024);
+            channel.register(selector, SelectionKey.OP_ACCEPT);
+            System.out.println("Surveillance du port " + port + " démarrée (NIO)");
+            return true;
+        } catch (IOException e) {
+            System.err.println("Impossible de surveiller le port " + port + ": " + e.getMessage());
+            closeQuietly(channel);
+            return false;
+        }
+    }
+
+    /**
+     * Lit la charge utile d'une connexion acceptée, sans bloquer.
+     * Doit être appelé sur le thread du sélecteur (depuis ConnectionHandler).
+     * @param channel le canal du client
+     * @param buffer le tampon à remplir
+     * @param attachment l'objet rendu avec le tampon au ReadHandler
+     * @return false si le canal n'a pas pu être enregistré (l'appelant garde le canal et le tampon)
+     */
+    boolean readPayload(SocketChannel channel, ByteBuffer buffer, Object attachment) {
+        PendingRead read = new PendingRead(channel, buffer, attachment, System.currentTimeMillis() + readTimeout);
+        try {
+            channel.configureBlocking(false);
+            read.key = channel.register(selector, SelectionKey.OP_READ, read);
+        } catch (IOException e) {
+            return false;
+        }
+        pendingReads.add(read);
+        return true;
+    }
+
+    /**
+     * Boucle de sélection : accepte toutes les connexions en attente sur chaque canal prêt,
+     * lit les charges utiles disponibles et termine les lectures dont le délai est écoulé
+     */
+    @Override
+    public void run() {
+        try {
+            while (running.get()) {
+                PendingRead oldest = pendingReads.peek();
+                if (oldest == null) {
+                    selector.select();
+                } else {
+                    selector.select(Math.max(1, oldest.deadline - System.currentTimeMillis()));
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        acceptAll((ServerSocketChannel) key.channel());
+                    } else if (key.isReadable()) {
+                        readAvailable((PendingRead) key.attachment());
+                    }
+                }
+
+                expireReads(System.currentTimeMillis());
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running.get()) {
+                System.err.println("Erreur dans la boucle du sélecteur: " + e.getMessage());
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Vide la file d'attente d'acceptation d'un canal prêt
+     */
+    private void acceptAll(ServerSocketChannel serverChannel) {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (IOException e) {
+                System.err.println("Erreur lors de l'acceptation d'une connexion: " + e.getMessage());
+                return;
+            }
+
+            if (channel == null) {
+                return;
+            }
+
+            handler.onAccepted(channel);
+        }
+    }
+
+    /**
+     * Lit les octets disponibles ; la lecture se termine si le tampon est plein ou le flux fini
+     */
+    private void readAvailable(PendingRead read) {
+        try {
+            int count = read.channel.read(read.buffer);
+            if (count < 0 || !read.buffer.hasRemaining()) {
+                complete(read);
+            }
+        } catch (IOException e) {
+            complete(read); // Connexion interrompue : on garde ce qui a été lu
+        }
+    }
+
+    /**
+     * Termine les lectures dont le délai est écoulé ; les lectures déjà terminées
+     * sont retirées de la file lorsqu'elles arrivent en tête
+     */
+    private void expireReads(long now) {
+        PendingRead read;
+        while ((read = pendingReads.peek()) != null && (read.completed || read.deadline <= now)) {
+            pendingReads.poll();
+            complete(read);
+        }
+    }
+
+    private void complete(PendingRead read) {
+        if (read.completed) {
+            return;
+        }
+        read.completed = true;
+        read.key.cancel();
+        readHandler.onPayloadRead(read.channel, read.buffer, read.attachment);
+    }
+
+    /**
+     * Réveille la boucle de sélection pour qu'elle constate l'arrêt
+     */
+    void wakeup() {
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Ferme tous les canaux d'écoute et le sélecteur
+     */
+    private void close() {
+        if (selector == null || !selector.isOpen()) {
+            return;
+        }
+
+        for (SelectionKey key : selector.keys()) {
+            closeQuietly(key.channel());
+        }
+
+        try {
+            selector.close();
+        } catch (IOException e) {
+            System.err.println("Erreur lors de la fermeture du sélecteur: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lecture de charge utile en cours
+     */
+    private static class PendingRead {
+        final SocketChannel channel;
+        final ByteBuffer buffer;
+        final Object attachment;
+        final long deadline;
+        SelectionKey key;
+        boolean completed;
+
+        PendingRead(SocketChannel channel, ByteBuffer buffer, Object attachment, long deadline) {
+            this.channel = channel;
+            this.buffer = buffer;
+            this.attachment = attachment;
+            this.deadline = deadline;
+        }
+    }
+
+    private static void closeQuietly(Channel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Ignorer : le canal est abandonné
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package main.java.com.idsproject.network;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Compteur sur fenêtre glissante, composé d'un anneau de seaux de durée fixe.
+ * Chaque seau accumule les valeurs d'un intervalle ; en avançant, la fenêtre
+ * vide les seaux expirés et les retire d'un total maintenu en continu.
+ * L'ajout et la lecture sont en O(1) (au plus un tour d'anneau lors d'un saut
+ * dans le temps) et la mémoire est constante.
+ *
+ * Comme CardinalitySketch, le compteur peut être une vue sur une zone d'un tampon
+ * partagé (voir wrap), par exemple un emplacement de HostTable.
+ *
+ * Non thread-safe : l'appelant synchronise l'accès (voir PacketAnalyzer.HostStats).
+ */
+public class SlidingWindowCounter {
+
+    // Disposition : index du seau le plus récent (long), total (long), puis les seaux
+    private static final int EPOCH_OFFSET = 0;
+    private static final int TOTAL_OFFSET = 8;
+    private static final int BUCKETS_OFFSET = 16;
+
+    private final int bucketCount;
+    private final long bucketDuration;
+    private ByteBuffer buffer;
+    private int base;
+
+    /**
+     * @param bucketCount le nombre de seaux de la fenêtre
+     * @param bucketDuration la durée d'un seau (en millisecondes)
+     */
+    public SlidingWindowCounter(int bucketCount, long bucketDuration) {
+        this(bucketCount, bucketDuration, ByteBuffer.allocate(sizeOf(bucketCount)), 0);
+        clear();
+    }
+
+    /**
+     * Crée une vue sur un compteur existant (ou à initialiser par clear)
+     * @param bucketCount le nombre de seaux de la fenêtre
+     * @param bucketDuration la durée d'un seau (en millisecondes)
+     * @param buffer le tampon hébergeant le compteur
+     * @param base la position du compteur dans le tampon
+     */
+    public SlidingWindowCounter(int bucketCount, long bucketDuration, ByteBuffer buffer, int base) {
+        if (bucketCount < 1 || bucketDuration < 1) {
+            throw new IllegalArgumentException("Fenêtre invalide: " + bucketCount + " x " + bucketDuration + " ms");
+        }
+        this.bucketCount = bucketCount;
+        this.bucketDuration = bucketDuration;
+        wrap(buffer, base);
+    }
+
+    /**
+     * @param bucketCount le nombre de seaux
+     * @return la taille en octets d'un compteur
+     */
+    public static int sizeOf(int bucketCount) {
+        return BUCKETS_OFFSET + bucketCount * 8;
+    }
+
+    /**
+     * Repositionne la vue sur un autre compteur, sans allocation
+     * @param buffer le tampon hébergeant le compteur
+     * @param base la position du compteur dans le tampon
+     * @return cette vue
+     */
+    public SlidingWindowCounter wrap(ByteBuffer buffer, int base) {
+        this.buffer = buffer;
+        this.base = base;
+        return this;
+    }
+
+    /**
+     * Vide le compteur
+     */
+    public void clear() {
+        buffer.putLong(base + EPOCH_OFFSET, Long.MIN_VALUE);
+        buffer.putLong(base + TOTAL_OFFSET, 0L);
+        for (int i = 0; i < bucketCount; i++) {
+            buffer.putLong(bucketPosition(i), 0L);
+        }
+    }
+
+    /**
+     * Ajoute une valeur à l'instant donné
+     * @param time l'instant (en millisecondes)
+     * @param value la valeur à ajouter (peut être négative)
+     */
+    public void add(long time, long value) {
+        long epoch = Math.floorDiv(time, bucketDuration);
+        advance(epoch);
+
+        if (epoch <= currentEpoch() - bucketCount) {
+            return; // Trop ancien : hors de la fenêtre
+        }
+
+        int position = bucketPosition(index(epoch));
+        buffer.putLong(position, buffer.getLong(position) + value);
+        buffer.putLong(base + TOTAL_OFFSET, buffer.getLong(base + TOTAL_OFFSET) + value);
+    }
+
+    /**
+     * Retourne la somme sur la fenêtre se terminant à l'instant donné
+     * @param time l'instant (en millisecondes)
+     * @return la somme des valeurs de la fenêtre
+     */
+    public long sum(long time) {
+        advance(Math.floorDiv(time, bucketDuration));
+        return buffer.getLong(base + TOTAL_OFFSET);
+    }
+
+    /**
+     * Indique si un instant passé appartient encore à la fenêtre courante
+     * @param time l'instant à tester (en millisecondes)
+     * @return true si un ajout à cet instant serait encore compté
+     */
+    public boolean isInWindow(long time) {
+        return Math.floorDiv(time, bucketDuration) > currentEpoch() - bucketCount;
+    }
+
+    /**
+     * @return la durée couverte par la fenêtre (en millisecondes)
+     */
+    public long getWindowDuration() {
+        return bucketDuration * bucketCount;
+    }
+
+    private long currentEpoch() {
+        return buffer.getLong(base + EPOCH_OFFSET);
+    }
+
+    /**
+     * Fait avancer la fenêtre jusqu'au seau donné, en vidant les seaux expirés
+     */
+    private void advance(long epoch) {
+        long currentEpoch = currentEpoch();
+        if (currentEpoch == Long.MIN_VALUE) {
+            buffer.putLong(base + EPOCH_OFFSET, epoch);
+            return;
+        }
+        if (epoch <= currentEpoch) {
+            return;
+        }
+
+        long total = buffer.getLong(base + TOTAL_OFFSET);
+        long steps = Math.min(epoch - currentEpoch, bucketCount);
+        for (long i = 1; i <= steps; i++) {
+            int expired = bucketPosition(index(currentEpoch + i));
+            total -= buffer.getLong(expired);
+            buffer.putLong(expired, 0L);
+        }
+        buffer.putLong(base + TOTAL_OFFSET, total);
+        buffer.putLong(base + EPOCH_OFFSET, epoch);
+    }
+
+    private int bucketPosition(int index) {
+        return base + BUCKETS_OFFSET + index * 8;
+    }
+
+    private int index(long epoch) {
+        return (int) Math.floorMod(epoch, (long) bucketCount);
+    }
+}
@@ -0,0 +1,169 @@
+package main.java.com.idsproject.network;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Nombre de valeurs distinctes sur une fenêtre glissante, en mémoire fixe.
+ *
+ * Le temps est découpé en générations d'une demi-fenêtre. Deux croquis sont
+ * maintenus : celui de la génération courante et l'union de la génération
+ * précédente et de la courante. Lors d'un changement de génération, l'union
+ * repart de la génération qui s'achève : l'estimation couvre ainsi toujours
+ * entre une demi-fenêtre et une fenêtre complète d'historique, sans calcul
+ * d'union à la lecture.
+ *
+ * Comme CardinalitySketch, l'objet peut être une vue sur une zone d'un tampon partagé.
+ * Non thread-safe : l'appelant synchronise l'accès.
+ */
+public class WindowedCardinality {
+
+    private static final int GENERATION_OFFSET = 0;
+    private static final int CURRENT_OFFSET = 8;
+    private static final int COMBINED_OFFSET = CURRENT_OFFSET + CardinalitySketch.SIZE;
+
+    /** Taille en octets */
+    public static final int SIZE = COMBINED_OFFSET + CardinalitySketch.SIZE;
+
+    private final long generationDuration;
+    private final CardinalitySketch current = new CardinalitySketch(null, 0);
+    private final CardinalitySketch combined = new CardinalitySketch(null, 0);
+    private ByteBuffer buffer;
+    private int base;
+
+    /**
+     * Crée un compteur vide dans son propre tampon
+     * @param windowDuration la durée de la fenêtre (en millisecondes)
+     */
+    public WindowedCardinality(long windowDuration) {
+        this(windowDuration, ByteBuffer.allocate(SIZE), 0);
+        clear();
+    }
+
+    /**
+     * Crée une vue sur un compteur existant (ou à initialiser par clear)
+     * @param windowDuration la durée de la fenêtre (en millisecondes)
+     * @param buffer le tampon hébergeant le compteur
+     * @param base la position du compteur dans le tampon
+     */
+    public WindowedCardinality(long windowDuration, ByteBuffer buffer, int base) {
+        if (windowDuration < 2) {
+            throw new IllegalArgumentException("Fenêtre invalide: " + windowDuration + " ms");
+        }
+        this.generationDuration = windowDuration / 2;
+        wrap(buffer, base);
+    }
+
+    /**
+     * Repositionne la vue sur un autre compteur, sans allocation
+     * @param buffer le tampon hébergeant le compteur
+     * @param base la position du compteur dans le tampon
+     * @return cette vue
+     */
+    public WindowedCardinality wrap(ByteBuffer buffer, int base) {
+        this.buffer = buffer;
+        this.base = base;
+        current.wrap(buffer, base + CURRENT_OFFSET);
+        combined.wrap(buffer, base + COMBINED_OFFSET);
+        return this;
+    }
+
+    /**
+     * Vide le compteur
+     */
+    public void clear() {
+        buffer.putLong(base + GENERATION_OFFSET, Long.MIN_VALUE);
+        current.clear();
+        combined.clear();
+    }
+
+    /**
+     * Ajoute une valeur à l'instant donné
+     * @param time l'instant (en millisecondes)
+     * @param value la valeur
+     */
+    public void add(long time, long value) {
+        long age = advance(time);
+        if (age == 0) {
+            current.add(value);
+        }
+        if (age <= 1) {
+            combined.add(value);
+        }
+    }
+
+    /**
+     * Ajoute une adresse de 128 bits à l'instant donné
+     * @param time l'instant (en millisecondes)
+     * @param high les 64 bits de poids fort
+     * @param low les 64 bits de poids faible
+     */
+    public void add(long time, long high, long low) {
+        long age = advance(time);
+        if (age == 0) {
+            current.add(high, low);
+        }
+        if (age <= 1) {
+            combined.add(high, low);
+        }
+    }
+
+    /**
+     * Retourne le nombre estimé de valeurs distinctes sur la fenêtre se terminant à l'instant donné
+     * @param time l'instant (en millisecondes)
+     * @return l'estimation
+     */
+    public long estimate(long time) {
+        advance(time);
+        return combined.estimate();
+    }
+
+    /**
+     * Fusionne un autre compteur dans celui-ci (union des fenêtres),
+     * par exemple pour combiner des partitions tenues par des threads distincts.
+     * Seul ce que l'autre compteur a vu dans la fenêtre courante est fusionné :
+     * s'il est en retard d'une génération, seule sa génération courante entre dans
+     * l'union ; s'il est plus ancien, il n'apporte rien.
+     * @param other le compteur à fusionner, qui n'est pas modifié
+     */
+    public void merge(WindowedCardinality other) {
+        long otherGeneration = other.buffer.getLong(other.base + GENERATION_OFFSET);
+        if (otherGeneration == Long.MIN_VALUE) {
+            return;
+        }
+        long generation = buffer.getLong(base + GENERATION_OFFSET);
+        if (generation == Long.MIN_VALUE || otherGeneration > generation) {
+            advance(otherGeneration * generationDuration);
+            generation = otherGeneration;
+        }
+
+        if (otherGeneration == generation) {
+            current.merge(other.current);
+            combined.merge(other.combined);
+        } else if (otherGeneration == generation - 1) {
+            combined.merge(other.current);
+        }
+    }
+
+    /**
+     * Passe à la génération de l'instant donné si nécessaire
+     * @return l'âge de l'instant en générations (0 pour la génération courante,
+     *         1 pour la précédente, qui n'est plus comptée que dans l'union)
+     */
+    private long advance(long time) {
+        long generation = Math.floorDiv(time, generationDuration);
+        long currentGeneration = buffer.getLong(base + GENERATION_OFFSET);
+
+        if (generation <= currentGeneration) {
+            return currentGeneration - generation;
+        }
+
+        if (currentGeneration != Long.MIN_VALUE && generation == currentGeneration + 1) {
+            combined.copyFrom(current);
+        } else {
+            combined.clear();
+        }
+        current.clear();
+        buffer.putLong(base + GENERATION_OFFSET, generation);
+        return 0;
+    }
+}
@@ -0,0 +1,339 @@
+package main.java.com.idsproject.rl;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Apprentissage asynchrone par rejeu d'expériences.
+ *
+ * Les threads de décision déposent leurs transitions (état, action, récompense, état
+ * suivant) dans une file bornée et sans verrou, dont les états sont préalloués et
+ * recopiés : l'enregistrement ne bloque et n'alloue jamais ; si la file est pleine,
+ * la transition est rejetée et comptée. Un thread d'entraînement unique vide la file
+ * par lots, applique chaque transition au modèle (Learner), la conserve dans une
+ * mémoire de rejeu, et rejoue à chaque lot des transitions passées tirées au hasard.
+ *
+ * La politique utilisée par la décision est un instantané immuable (PolicySnapshot),
+ * republié au plus toutes les publishIntervalMillis lorsque le modèle a changé. Sous
+ * forte charge, l'apprentissage peut être ralenti (setThrottle) sans effet sur la
+ * latence de décision : seules des transitions sont alors perdues.
+ */
+public class ExperienceReplayTrainer {
+
+    public static final int DEFAULT_CAPACITY = 16384;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    public static final int DEFAULT_MEMORY_SIZE = 16384;
+    public static final int DEFAULT_REPLAY_SIZE = 64;
+    public static final long DEFAULT_PUBLISH_INTERVAL_MS = 200;
+
+    private static final long IDLE_PARK_NANOS = 1_000_000; // 1 ms
+    private static final Action[] ACTIONS = Action.values();
+
+    private final Learner learner;
+    private final int batchSize;
+    private final int replaySize;
+    private final long publishIntervalNanos;
+
+    // File des transitions : plusieurs producteurs, un consommateur (le thread d'entraînement).
+    // Même protocole de séquences que PacketRingBuffer.
+    private final State[] queueStates;
+    private final byte[] queueActions;
+    private final double[] queueRewards;
+    private final State[] queueNextStates;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    private final AtomicLong dropped = new AtomicLong();
+
+    // Mémoire de rejeu, utilisée par le seul thread d'entraînement
+    private final State[] memoryStates;
+    private final byte[] memoryActions;
+    private final double[] memoryRewards;
+    private final State[] memoryNextStates;
+    private int memoryCount;
+    private int memoryNext;
+
+    private volatile PolicySnapshot policy;
+    private volatile long updates;
+    private volatile long replayed;
+    private volatile long throttleMillis;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private Thread trainerThread;
+
+    /**
+     * Constructeur avec les paramètres par défaut
+     * @param learner le modèle entraîné
+     */
+    public ExperienceReplayTrainer(Learner learner) {
+        this(learner, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_MEMORY_SIZE, DEFAULT_REPLAY_SIZE,
+                DEFAULT_PUBLISH_INTERVAL_MS);
+    }
+
+    /**
+     * @param learner le modèle entraîné
+     * @param capacity la capacité de la file des transitions, arrondie à la puissance de deux supérieure
+     * @param batchSize le nombre maximal de nouvelles transitions appliquées par lot
+     * @param memorySize le nombre de transitions conservées pour le rejeu
+     * @param replaySize le nombre de transitions passées rejouées par lot (0 : pas de rejeu)
+     * @param publishIntervalMillis l'intervalle minimal entre deux publications de la politique
+     */
+    public ExperienceReplayTrainer(Learner learner, int capacity, int batchSize, int memorySize,
+                                   int replaySize, long publishIntervalMillis) {
+        if (capacity < 2 || capacity > (1 << 30) || batchSize < 1 || memorySize < 1 || replaySize < 0) {
+            throw new IllegalArgumentException("Paramètres d'entraînement invalides");
+        }
+
+        this.learner = learner;
+        this.batchSize = batchSize;
+        this.replaySize = replaySize;
+        this.publishIntervalNanos = TimeUnit.MILLISECONDS.toNanos(publishIntervalMillis);
+
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.queueStates = newStates(size);
+        this.queueActions = new byte[size];
+        this.queueRewards = new double[size];
+        this.queueNextStates = newStates(size);
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+
+        this.memoryStates = newStates(memorySize);
+        this.memoryActions = new byte[memorySize];
+        this.memoryRewards = new double[memorySize];
+        this.memoryNextStates = newStates(memorySize);
+
+        this.policy = learner.snapshot(0);
+    }
+
+    /**
+     * Démarre le thread d'entraînement
+     */
+    public void start() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        trainerThread = new Thread(this::run, "ids-rl-trainer");
+        trainerThread.setDaemon(true);
+        trainerThread.start();
+    }
+
+    /**
+     * Arrête le thread d'entraînement, après avoir appliqué les transitions en attente
+     * et publié la politique qui en résulte
+     */
+    public void stop() {
+        if (!running.compareAndSet(true, false)) {
+            return;
+        }
+        LockSupport.unpark(trainerThread);
+        try {
+            trainerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Enregistre une transition sans jamais bloquer ni allouer
+     * @param state l'état dans lequel l'action a été décidée
+     * @param action l'action effectuée
+     * @param reward la récompense reçue
+     * @param nextState l'état suivant
+     * @return false si la file était pleine et que la transition a été rejetée
+     */
+    public boolean record(State state, Action action, double reward, State nextState) {
+        long position = tail.get();
+
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    queueStates[index].copyFrom(state);
+                    queueActions[index] = (byte) action.ordinal();
+                    queueRewards[index] = reward;
+                    queueNextStates[index].copyFrom(nextState);
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // L'emplacement n'a pas encore été consommé : la file est pleine
+                dropped.incrementAndGet();
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Applique un lot : au plus batchSize transitions de la file, puis replaySize
+     * transitions tirées de la mémoire de rejeu. Appelée par le thread d'entraînement ;
+     * ne peut être appelée directement que si celui-ci n'est pas démarré.
+     * @return le nombre de nouvelles transitions appliquées
+     */
+    public int trainBatch() {
+        int applied = 0;
+        long position = head;
+
+        while (applied < batchSize) {
+            int index = (int) (position & mask);
+            if (sequences.get(index) != position + 1) {
+                break; // File vide
+            }
+
+            // La transition est recopiée dans la mémoire avant de libérer l'emplacement
+            int m = remember(queueStates[index], queueActions[index], queueRewards[index], queueNextStates[index]);
+            sequences.lazySet(index, position + mask + 1);
+            position++;
+
+            learner.update(memoryStates[m], ACTIONS[memoryActions[m]], memoryRewards[m], memoryNextStates[m]);
+            applied++;
+        }
+        head = position;
+
+        if (applied > 0 && memoryCount > 0) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < replaySize; i++) {
+                int m = random.nextInt(memoryCount);
+                learner.update(memoryStates[m], ACTIONS[memoryActions[m]], memoryRewards[m], memoryNextStates[m]);
+            }
+            replayed += replaySize;
+        }
+        updates += applied;
+        return applied;
+    }
+
+    /**
+     * Fige le modèle courant et le publie comme nouvelle politique
+     * @return l'instantané publié
+     */
+    public PolicySnapshot publishPolicy() {
+        PolicySnapshot snapshot = learner.snapshot(policy.getVersion() + 1);
+        policy = snapshot;
+        return snapshot;
+    }
+
+    /**
+     * Boucle du thread d'entraînement
+     */
+    private void run() {
+        long lastPublish = System.nanoTime();
+        long publishedUpdates = 0;
+
+        while (running.get()) {
+            int applied = trainBatch();
+
+            long now = System.nanoTime();
+            if (updates != publishedUpdates && now - lastPublish >= publishIntervalNanos) {
+                publishPolicy();
+                publishedUpdates = updates;
+                lastPublish = now;
+            }
+
+            if (applied == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            } else if (throttleMillis > 0) {
+                try {
+                    Thread.sleep(throttleMillis);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        }
+
+        // Transitions restantes et dernière politique
+        while (trainBatch() > 0) {
+            // Vide la file
+        }
+        if (updates != publishedUpdates) {
+            publishPolicy();
+        }
+    }
+
+    /**
+     * Conserve une transition dans la mémoire de rejeu, en remplaçant la plus ancienne
+     * @return l'index de la transition dans la mémoire
+     */
+    private int remember(State state, byte action, double reward, State nextState) {
+        int m = memoryNext;
+        memoryStates[m].copyFrom(state);
+        memoryActions[m] = action;
+        memoryRewards[m] = reward;
+        memoryNextStates[m].copyFrom(nextState);
+        memoryNext = (m + 1) % memoryStates.length;
+        if (memoryCount < memoryStates.length) {
+            memoryCount++;
+        }
+        return m;
+    }
+
+    private static State[] newStates(int count) {
+        State[] states = new State[count];
+        for (int i = 0; i < count; i++) {
+            states[i] = new State();
+        }
+        return states;
+    }
+
+    /**
+     * Ralentit l'entraînement : pause après chaque lot appliqué
+     * @param pauseMillis la durée de la pause (0 : aucune)
+     */
+    public void setThrottle(long pauseMillis) {
+        this.throttleMillis = Math.max(0, pauseMillis);
+    }
+
+    /**
+     * @return la politique publiée courante
+     */
+    public PolicySnapshot getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return le modèle entraîné
+     */
+    public Learner getLearner() {
+        return learner;
+    }
+
+    /**
+     * @return le nombre de transitions en attente d'entraînement
+     */
+    public int getDepth() {
+        long depth = tail.get() - head;
+        return (int) Math.max(0, Math.min(depth, mask + 1));
+    }
+
+    /**
+     * @return le nombre de transitions rejetées faute de place dans la file
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return le nombre de nouvelles transitions appliquées à la table Q
+     */
+    public long getUpdateCount() {
+        return updates;
+    }
+
+    /**
+     * @return le nombre de transitions rejouées depuis la mémoire
+     */
+    public long getReplayedCount() {
+        return replayed;
+    }
+}
@@ -0,0 +1,75 @@
+package main.java.com.idsproject.rl;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Algorithme d'apprentissage par renforcement utilisé par l'IDS.
+ * Deux implémentations sont disponibles : QLearning (table Q sur une grille d'états)
+ * et LinearQLearning (approximation linéaire sur State.toFeatureVector).
+ *
+ * Les implémentations peuvent être utilisées par plusieurs threads à la fois.
+ */
+public interface Learner {
+
+    /**
+     * Sélectionne une action basée sur l'état actuel en utilisant la politique epsilon-greedy
+     * @param state l'état actuel
+     * @return l'action sélectionnée
+     */
+    Action selectAction(State state);
+
+    /**
+     * Retourne la meilleure action pour un état donné
+     * @param state l'état
+     * @return l'action de plus grande valeur Q
+     */
+    Action getBestAction(State state);
+
+    /**
+     * Retourne la valeur Q estimée pour une paire état-action
+     * @param state l'état
+     * @param action l'action
+     * @return la valeur Q
+     */
+    double getQValue(State state, Action action);
+
+    /**
+     * Met à jour le modèle en fonction de la récompense reçue
+     * @param state l'état actuel
+     * @param action l'action effectuée
+     * @param reward la récompense reçue
+     * @param nextState l'état suivant
+     */
+    void update(State state, Action action, double reward, State nextState);
+
+    /**
+     * Fige la politique gloutonne courante
+     * @param version le numéro de version de l'instantané
+     * @return l'instantané, indépendant des mises à jour ultérieures
+     */
+    PolicySnapshot snapshot(long version);
+
+    /**
+     * @return le paramètre d'exploration
+     */
+    double getEpsilon();
+
+    /**
+     * @return le nombre de paramètres appris (valeurs Q ou poids), voir LearnerStore
+     */
+    int getParameterCount();
+
+    /**
+     * Écrit les paramètres appris, sous forme de bits de double. Peut être appelée
+     * pendant l'apprentissage : chaque valeur est lue atomiquement, sans arrêter les
+     * mises à jour
+     * @param out le tampon de destination (getParameterCount() * 8 octets)
+     */
+    void writeParameters(ByteBuffer out);
+
+    /**
+     * Remplace les paramètres appris par ceux écrits par writeParameters
+     * @param in le tampon source (getParameterCount() * 8 octets)
+     */
+    void readParameters(ByteBuffer in);
+}
@@ -0,0 +1,224 @@
+package main.java.com.idsproject.rl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * Sauvegarde des paramètres appris (table Q ou poids) dans un fichier binaire compact,
+ * pour reprendre l'apprentissage au redémarrage au lieu de repartir de zéro.
+ *
+ * Format (ordre d'octets natif) : un en-tête de HEADER_SIZE octets (MAGIC, VERSION,
+ * type de modèle, forme, nombre d'actions, nombre de paramètres, date de la sauvegarde,
+ * CRC32C des paramètres), puis les paramètres sous forme de bits de double.
+ *
+ * Chaque sauvegarde est écrite dans un fichier temporaire projeté en mémoire, forcée
+ * sur disque, puis renommée atomiquement : après un arrêt brutal, le fichier contient
+ * toujours une sauvegarde complète, l'ancienne ou la nouvelle. Le CRC protège en plus
+ * contre un fichier abîmé ; un fichier illisible ou d'un autre modèle est ignoré.
+ *
+ * La sauvegarde lit les paramètres pendant que l'apprentissage continue (chaque valeur
+ * est lue atomiquement, voir Learner.writeParameters) : elle ne suspend ni la
+ * décision ni l'entraînement, au prix d'une photographie qui n'est pas figée à un
+ * instant unique, ce qui est sans conséquence pour des valeurs Q.
+ */
+public class LearnerStore {
+
+    private static final int MAGIC = 0x49445351;   // "IDSQ"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 40;
+
+    // Types de modèle
+    private static final int TABULAR = 1;
+    private static final int LINEAR = 2;
+
+    private final Path file;
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> scheduledSaves;
+
+    /**
+     * @param file le fichier de sauvegarde (son répertoire est créé à la première écriture)
+     */
+    public LearnerStore(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Recharge les paramètres d'une sauvegarde dans un modèle, s'ils lui correspondent
+     * (même type, même forme). À appeler avant que le modèle ne serve à décider.
+     * @param learner le modèle à initialiser
+     * @return true si les paramètres ont été rechargés, false s'il n'y a pas de
+     *         sauvegarde utilisable (le modèle est alors laissé tel quel)
+     */
+    public boolean load(Learner learner) {
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("taille " + size);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            ByteBuffer in = mapped.order(ByteOrder.nativeOrder());
+
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                throw new IllegalArgumentException("format inconnu");
+            }
+            int kind = in.getInt();
+            int shape = in.getInt();
+            int actions = in.getInt();
+            int count = in.getInt();
+            in.getLong(); // Date de la sauvegarde
+            int crc = in.getInt();
+            in.getInt(); // Alignement
+
+            if (kind != kindOf(learner) || shape != shapeOf(learner) || actions != Action.values().length
+                    || count != learner.getParameterCount()) {
+                System.err.println("Sauvegarde d'apprentissage ignorée (" + file + "): autre modèle");
+                return false;
+            }
+            if ((long) count * Long.BYTES != in.remaining()) {
+                throw new IllegalArgumentException("taille des paramètres incohérente");
+            }
+
+            CRC32C checksum = new CRC32C();
+            checksum.update(in.duplicate());
+            if ((int) checksum.getValue() != crc) {
+                throw new IllegalArgumentException("somme de contrôle invalide");
+            }
+
+            learner.readParameters(in);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Sauvegarde d'apprentissage ignorée (" + file + "): " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Sauvegarde les paramètres courants d'un modèle. Un échec n'est pas bloquant :
+     * il est signalé, et la sauvegarde précédente reste en place.
+     * @param learner le modèle à sauvegarder
+     * @return true si la sauvegarde a été écrite
+     */
+    public synchronized boolean save(Learner learner) {
+        long size = HEADER_SIZE + (long) learner.getParameterCount() * Long.BYTES;
+        if (size > Integer.MAX_VALUE) {
+            System.err.println("Modèle trop grand pour être sauvegardé (" + size + " octets)");
+            return false;
+        }
+
+        Path temporary = null;
+        try {
+            Path directory = file.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                ByteBuffer out = mapped.order(ByteOrder.nativeOrder());
+
+                // Paramètres d'abord, puis l'en-tête avec leur somme de contrôle
+                out.position(HEADER_SIZE);
+                learner.writeParameters(out);
+                ByteBuffer parameters = out.duplicate();
+                parameters.flip().position(HEADER_SIZE);
+                CRC32C checksum = new CRC32C();
+                checksum.update(parameters);
+
+                out.position(0);
+                out.putInt(MAGIC).putInt(VERSION)
+                   .putInt(kindOf(learner)).putInt(shapeOf(learner))
+                   .putInt(Action.values().length).putInt(learner.getParameterCount())
+                   .putLong(System.currentTimeMillis())
+                   .putInt((int) checksum.getValue()).putInt(0);
+                mapped.force();
+            }
+
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            temporary = null;
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Impossible de sauvegarder l'apprentissage dans " + file + ": " + e.getMessage());
+            return false;
+        } finally {
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException e) {
+                    // Ignorer : fichier temporaire abandonné
+                }
+            }
+        }
+    }
+
+    /**
+     * Sauvegarde un modèle périodiquement, sur un thread dédié de basse priorité
+     * @param learner le modèle à sauvegarder
+     * @param periodSeconds l'intervalle entre deux sauvegardes (en secondes)
+     */
+    public synchronized void scheduleSaves(Learner learner, long periodSeconds) {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ids-rl-store");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+        }
+        if (scheduledSaves != null) {
+            scheduledSaves.cancel(false);
+        }
+        scheduledSaves = scheduler.scheduleWithFixedDelay(() -> save(learner),
+                periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Arrête les sauvegardes périodiques (une sauvegarde en cours se termine)
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+            scheduledSaves = null;
+        }
+    }
+
+    /**
+     * @return le fichier de sauvegarde
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    private static int kindOf(Learner learner) {
+        if (learner instanceof QLearning) {
+            return TABULAR;
+        }
+        if (learner instanceof LinearQLearning) {
+            return LINEAR;
+        }
+        throw new IllegalArgumentException("Modèle non sauvegardable: " + learner.getClass().getName());
+    }
+
+    /**
+     * Forme du modèle : finesse de la grille pour la table, nombre de caractéristiques
+     * pour le modèle linéaire
+     */
+    private static int shapeOf(Learner learner) {
+        return learner instanceof QLearning ? ((QLearning) learner).getBins() : State.FEATURE_COUNT;
+    }
+}
@@ -0,0 +1,183 @@
+package main.java.com.idsproject.rl;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Q-Learning par approximation linéaire sur les caractéristiques de l'état
+ * (State.toFeatureVector) : chaque action a son vecteur de poids, et
+ * Q(s, a) = w_a · φ(s).
+ *
+ * Contrairement à la table Q, l'apprentissage se généralise aux états voisins jamais
+ * rencontrés. La mémoire est constante (FEATURE_COUNT poids par action, soit 18
+ * valeurs) et une décision ne coûte que quelques multiplications-additions.
+ *
+ * Mise à jour par semi-gradient TD(0) :
+ *   δ = r + γ max_a' Q(s', a') - Q(s, a)
+ *   w_a ← w_a + α δ φ(s)
+ * Comme pour QLearning, les poids sont stockés sous forme de bits dans un
+ * AtomicLongArray et chacun est mis à jour par compare-and-set : plusieurs threads
+ * peuvent apprendre à la fois sans perdre d'incrément.
+ */
+public class LinearQLearning implements Learner {
+
+    private static final Action[] ACTIONS = Action.values();
+    private static final int FEATURES = State.FEATURE_COUNT;
+
+    // Paramètres d'apprentissage
+    private final double alpha; // Taux d'apprentissage
+    private final double gamma; // Facteur d'actualisation
+    private final double epsilon; // Paramètre d'exploration
+
+    // Poids : le poids de la caractéristique i pour l'action a est en a * FEATURES + i
+    private final AtomicLongArray weights;
+
+    /**
+     * Constructeur avec paramètres d'apprentissage (poids initiaux nuls)
+     * @param alpha le taux d'apprentissage (0 < alpha <= 1)
+     * @param gamma le facteur d'actualisation (0 <= gamma < 1)
+     * @param epsilon le paramètre d'exploration (0 <= epsilon <= 1)
+     */
+    public LinearQLearning(double alpha, double gamma, double epsilon) {
+        this.alpha = alpha;
+        this.gamma = gamma;
+        this.epsilon = epsilon;
+        this.weights = new AtomicLongArray(ACTIONS.length * FEATURES);
+    }
+
+    @Override
+    public Action selectAction(State state) {
+        // Exploration avec probabilité epsilon
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < epsilon) {
+            return ACTIONS[random.nextInt(ACTIONS.length)];
+        }
+
+        // Exploitation avec probabilité (1-epsilon)
+        return getBestAction(state);
+    }
+
+    @Override
+    public void update(State state, Action action, double reward, State nextState) {
+        // Valeur maximale de Q pour le prochain état
+        double maxNextQ = Double.NEGATIVE_INFINITY;
+        for (int a = 0; a < ACTIONS.length; a++) {
+            maxNextQ = Math.max(maxNextQ, qValue(a, nextState));
+        }
+
+        // Erreur de différence temporelle, puis descente de gradient sur les seuls
+        // poids de l'action effectuée (le gradient de w_a · φ(s) est φ(s))
+        double delta = reward + gamma * maxNextQ - qValue(action.ordinal(), state);
+        int base = action.ordinal() * FEATURES;
+        for (int i = 0; i < FEATURES; i++) {
+            double feature = state.getFeature(i);
+            if (feature != 0.0) {
+                addToWeight(base + i, alpha * delta * feature);
+            }
+        }
+    }
+
+    @Override
+    public Action getBestAction(State state) {
+        int best = 0;
+        double bestQ = qValue(0, state);
+        for (int a = 1; a < ACTIONS.length; a++) {
+            double q = qValue(a, state);
+            if (q > bestQ) {
+                bestQ = q;
+                best = a;
+            }
+        }
+        return ACTIONS[best];
+    }
+
+    @Override
+    public double getQValue(State state, Action action) {
+        return qValue(action.ordinal(), state);
+    }
+
+    @Override
+    public PolicySnapshot snapshot(long version) {
+        return new PolicySnapshot.Linear(getWeights(), epsilon, version);
+    }
+
+    @Override
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    @Override
+    public int getParameterCount() {
+        return weights.length();
+    }
+
+    @Override
+    public void writeParameters(ByteBuffer out) {
+        for (int i = 0; i < weights.length(); i++) {
+            out.putLong(weights.get(i));
+        }
+    }
+
+    @Override
+    public void readParameters(ByteBuffer in) {
+        for (int i = 0; i < weights.length(); i++) {
+            weights.set(i, in.getLong());
+        }
+    }
+
+    /**
+     * @return une copie des poids, action par action (FEATURE_COUNT poids par action)
+     */
+    public double[] getWeights() {
+        double[] copy = new double[weights.length()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = Double.longBitsToDouble(weights.get(i));
+        }
+        return copy;
+    }
+
+    /**
+     * Valeur Q d'une action : produit scalaire de ses poids et des caractéristiques
+     */
+    private double qValue(int action, State state) {
+        int base = action * FEATURES;
+        double q = 0.0;
+        for (int i = 0; i < FEATURES; i++) {
+            q += Double.longBitsToDouble(weights.get(base + i)) * state.getFeature(i);
+        }
+        return q;
+    }
+
+    /**
+     * Ajoute un incrément à un poids, recommencé tant qu'un autre thread l'a modifié
+     */
+    private void addToWeight(int index, double increment) {
+        long currentBits;
+        long newBits;
+        do {
+            currentBits = weights.get(index);
+            newBits = Double.doubleToRawLongBits(Double.longBitsToDouble(currentBits) + increment);
+        } while (!weights.compareAndSet(index, currentBits, newBits));
+    }
+
+    /**
+     * Meilleure action selon un vecteur de poids figé (voir PolicySnapshot.Linear)
+     * @return l'index de l'action (la première en cas d'égalité)
+     */
+    static int bestAction(double[] weights, State state) {
+        int best = 0;
+        double bestQ = Double.NEGATIVE_INFINITY;
+        for (int a = 0; a < ACTIONS.length; a++) {
+            double q = 0.0;
+            for (int i = 0; i < FEATURES; i++) {
+                q += weights[a * FEATURES + i] * state.getFeature(i);
+            }
+            if (q > bestQ) {
+                bestQ = q;
+                best = a;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,111 @@
+package main.java.com.idsproject.rl;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Instantané immuable d'une politique apprise, figé à partir d'un Learner
+ * (voir Learner.snapshot).
+ *
+ * La décision ne fait que lire cet instantané, sans verrou ni écriture partagée : son
+ * coût ne dépend pas de l'apprentissage, qui se poursuit sur le modèle et publie
+ * périodiquement un nouvel instantané (voir ExperienceReplayTrainer).
+ */
+public abstract class PolicySnapshot {
+
+    static final Action[] ACTIONS = Action.values();
+
+    private final double epsilon;
+    private final long version;
+    private final long createdAt;
+
+    /**
+     * @param epsilon le paramètre d'exploration
+     * @param version le numéro de version de l'instantané
+     */
+    PolicySnapshot(double epsilon, long version) {
+        this.epsilon = epsilon;
+        this.version = version;
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Retourne la meilleure action pour un état donné
+     * @param state l'état
+     * @return la meilleure action selon l'instantané
+     */
+    public abstract Action getBestAction(State state);
+
+    /**
+     * Sélectionne une action selon la politique epsilon-greedy : l'exploration
+     * est nécessaire pour que l'apprentissage continue de découvrir les autres actions
+     * @param state l'état actuel
+     * @return l'action sélectionnée
+     */
+    public Action selectAction(State state) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < epsilon) {
+            return ACTIONS[random.nextInt(ACTIONS.length)];
+        }
+        return getBestAction(state);
+    }
+
+    /**
+     * @return le numéro de version de l'instantané (0 pour la politique initiale)
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return la date de création de l'instantané (en millisecondes)
+     */
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * Politique tabulaire : la meilleure action de chaque cellule de la grille des états
+     * (voir State.toGridIndex)
+     */
+    static class Tabular extends PolicySnapshot {
+
+        private final byte[] bestActions;
+        private final int bins;
+
+        /**
+         * @param bestActions l'index de la meilleure action de chaque cellule (non copié)
+         * @param bins le nombre d'intervalles par caractéristique continue de l'état
+         */
+        Tabular(byte[] bestActions, int bins, double epsilon, long version) {
+            super(epsilon, version);
+            this.bestActions = bestActions;
+            this.bins = bins;
+        }
+
+        @Override
+        public Action getBestAction(State state) {
+            return ACTIONS[bestActions[state.toGridIndex(bins)]];
+        }
+    }
+
+    /**
+     * Politique linéaire : une copie des poids de chaque action (voir LinearQLearning)
+     */
+    static class Linear extends PolicySnapshot {
+
+        private final double[] weights;
+
+        /**
+         * @param weights les poids, action par action (non copiés)
+         */
+        Linear(double[] weights, double epsilon, long version) {
+            super(epsilon, version);
+            this.weights = weights;
+        }
+
+        @Override
+        public Action getBestAction(State state) {
+            return ACTIONS[LinearQLearning.bestAction(weights, state)];
+        }
+    }
+}
@@ -1,25 +1,44 @@
 package main.java.com.idsproject.rl;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Random;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * Implémentation de l'algorithme Q-Learning pour l'apprentissage par renforcement.
  * Cette classe gère la prise de décision adaptative basée sur les expériences passées.
+ *
+ * Les états sont discrétisés sur une grille fixe (voir State.toGridIndex) et la table Q
+ * est un tableau plat de numStates * numActions valeurs, alloué une fois : sa taille ne
+ * dépend pas du trafic, et la sélection comme la mise à jour n'allouent rien.
+ *
+ * La table est partagée par les threads d'analyse sans verrou : chaque valeur est
+ * stockée sous forme de bits (Double.doubleToRawLongBits) dans un AtomicLongArray et
+ * mise à jour par compare-and-set, recommencé si un autre thread a écrit la même entrée
+ * entre-temps. Les threads ne se gênent donc que sur une même paire état-action.
+ * L'exploration utilise le générateur propre à chaque thread (ThreadLocalRandom).
  */
-public class QLearning {
+public class QLearning implements Learner {
+
+    // Nombre d'intervalles par caractéristique continue par défaut
+    public static final int DEFAULT_BINS = 6;
+
+    // Actions possibles (Action.values() copie le tableau à chaque appel)
+    private static final Action[] ACTIONS = Action.values();
 
     // Paramètres d'apprentissage
     private final double alpha; // Taux d'apprentissage
     private final double gamma; // Facteur d'actualisation
     private final double epsilon; // Paramètre d'exploration
-    
-    // Table Q stockant les valeurs de qualité pour chaque paire état-action
-    private final Map<StateActionPair, Double> qTable;
-    
-    private final Random random;
-    
+
+    // Discrétisation des états
+    private final int bins;
+    private final int numStates;
+
+    // Table Q : la valeur de l'action a dans l'état s est en s * ACTIONS.length + a
+    // (bits du double, voir Double.doubleToRawLongBits ; 0L vaut 0.0)
+    private final AtomicLongArray qTable;
+
     /**
      * Constructeur avec paramètres d'apprentissage
      * @param alpha le taux d'apprentissage (0 < alpha <= 1)
@@ -27,121 +46,234 @@ public class QLearning {
      * @param epsilon le paramètre d'exploration (0 <= epsilon <= 1)
      */
     public QLearning(double alpha, double gamma, double epsilon) {
+        this(alpha, gamma, epsilon, DEFAULT_BINS);
+    }
+
+    /**
+     * Constructeur avec paramètres d'apprentissage et finesse de la grille des états
+     * @param alpha le taux d'apprentissage (0 < alpha <= 1)
+     * @param gamma le facteur d'actualisation (0 <= gamma < 1)
+     * @param epsilon le paramètre d'exploration (0 <= epsilon <= 1)
+     * @param bins le nombre d'intervalles par caractéristique continue de l'état
+     */
+    public QLearning(double alpha, double gamma, double epsilon, int bins) {
         this.alpha = alpha;
         this.gamma = gamma;
         this.epsilon = epsilon;
-        this.qTable = new HashMap<>();
-        this.random = new Random();
+        this.bins = bins;
+        this.numStates = State.getGridSize(bins);
+        if ((long) numStates * ACTIONS.length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Table Q trop grande: " + numStates + " états");
+        }
+        this.qTable = new AtomicLongArray(numStates * ACTIONS.length);
     }
-    
+
     /**
      * Sélectionne une action basée sur l'état actuel en utilisant la politique epsilon-greedy
      * @param state l'état actuel
      * @return l'action sélectionnée
      */
+    @Override
     public Action selectAction(State state) {
         // Exploration avec probabilité epsilon
+        ThreadLocalRandom random = ThreadLocalRandom.current();
         if (random.nextDouble() < epsilon) {
-            return Action.values()[random.nextInt(Action.values().length)];
+            return ACTIONS[random.nextInt(ACTIONS.length)];
         }
-        
+
         // Exploitation avec probabilité (1-epsilon)
         return getBestAction(state);
     }
-    
+
     /**
-     * Met à jour la table Q en fonction de la récompense reçue
+     * Met à jour la table Q en fonction de la récompense reçue.
+     * Peut être appelée par plusieurs threads à la fois : aucune mise à jour n'est perdue.
      * @param state l'état actuel
      * @param action l'action effectuée
      * @param reward la récompense reçue
      * @param nextState l'état suivant
      */
+    @Override
     public void update(State state, Action action, double reward, State nextState) {
-        StateActionPair pair = new StateActionPair(state, action);
-        
-        // Obtient la valeur Q actuelle (0 si elle n'existe pas encore)
-        double currentQ = qTable.getOrDefault(pair, 0.0);
-        
-        // Calcule la valeur maximale de Q pour le prochain état
-        Action bestNextAction = getBestAction(nextState);
-        StateActionPair nextPair = new StateActionPair(nextState, bestNextAction);
-        double maxNextQ = qTable.getOrDefault(nextPair, 0.0);
-        
-        // Formule de mise à jour Q = Q + α * (r + γ * max(Q') - Q)
-        double newQ = currentQ + alpha * (reward + gamma * maxNextQ - currentQ);
-        
-        // Met à jour la table Q
-        qTable.put(pair, newQ);
-    }
-    
+        update(state.toGridIndex(bins), action.ordinal(), reward, nextState.toGridIndex(bins));
+    }
+
+    /**
+     * Met à jour la table Q à partir d'une transition déjà discrétisée
+     * @param stateIndex la cellule de l'état actuel (voir State.toGridIndex)
+     * @param action l'index de l'action effectuée
+     * @param reward la récompense reçue
+     * @param nextStateIndex la cellule de l'état suivant
+     */
+    void update(int stateIndex, int action, double reward, int nextStateIndex) {
+        int slot = stateIndex * ACTIONS.length + action;
+
+        // Valeur maximale de Q pour le prochain état
+        int nextRow = nextStateIndex * ACTIONS.length;
+        double target = reward + gamma * valueAt(nextRow + bestActionIn(nextRow));
+
+        // Formule de mise à jour Q = Q + α * (r + γ * max(Q') - Q), recalculée
+        // sur la valeur courante tant qu'un autre thread l'a modifiée
+        long currentBits;
+        long newBits;
+        do {
+            currentBits = qTable.get(slot);
+            double currentQ = Double.longBitsToDouble(currentBits);
+            newBits = Double.doubleToRawLongBits(currentQ + alpha * (target - currentQ));
+        } while (!qTable.compareAndSet(slot, currentBits, newBits));
+    }
+
     /**
      * Retourne la meilleure action pour un état donné selon la table Q
      * @param state l'état pour lequel trouver la meilleure action
      * @return la meilleure action
      */
+    @Override
     public Action getBestAction(State state) {
-        Action bestAction = Action.ALLOW; // Action par défaut
-        double bestQ = Double.NEGATIVE_INFINITY;
-        
-        // Parcourt toutes les actions possibles
-        for (Action action : Action.values()) {
-            StateActionPair pair = new StateActionPair(state, action);
-            double q = qTable.getOrDefault(pair, 0.0);
-            
-            if (q > bestQ) {
-                bestQ = q;
-                bestAction = action;
-            }
+        return ACTIONS[bestActionIn(rowOf(state))];
+    }
+
+    /**
+     * Fige la politique gloutonne courante : la meilleure action de chaque état
+     * @param version le numéro de version de l'instantané
+     * @return l'instantané, indépendant des mises à jour ultérieures de la table
+     */
+    @Override
+    public PolicySnapshot snapshot(long version) {
+        byte[] bestActions = new byte[numStates];
+        for (int s = 0; s < numStates; s++) {
+            bestActions[s] = (byte) bestActionIn(s * ACTIONS.length);
         }
-        
-        return bestAction;
+        return new PolicySnapshot.Tabular(bestActions, bins, epsilon, version);
     }
-    
+
     /**
      * Retourne la valeur Q pour une paire état-action
      * @param state l'état
      * @param action l'action
      * @return la valeur Q
      */
+    @Override
     public double getQValue(State state, Action action) {
-        StateActionPair pair = new StateActionPair(state, action);
-        return qTable.getOrDefault(pair, 0.0);
+        return valueAt(rowOf(state) + action.ordinal());
     }
-    
+
     /**
      * Retourne la taille de la table Q
-     * @return le nombre d'entrées dans la table Q
+     * @return le nombre d'entrées dans la table Q (fixe : numStates * numActions)
      */
     public int getQTableSize() {
-        return qTable.size();
+        return qTable.length();
     }
-    
+
     /**
-     * Classe interne représentant une paire état-action
+     * @return une copie de la table Q (la valeur de l'action a dans la cellule s est
+     *         en s * Action.values().length + a)
      */
-    private static class StateActionPair {
-        private final State state;
-        private final Action action;
-        
-        public StateActionPair(State state, Action action) {
-            this.state = state;
-            this.action = action;
+    public double[] getQValues() {
+        double[] values = new double[qTable.length()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Double.longBitsToDouble(qTable.get(i));
         }
-        
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            
-            StateActionPair that = (StateActionPair) o;
-            return state.equals(that.state) && action == that.action;
+        return values;
+    }
+
+    /**
+     * Remplace toute la table Q (voir getQValues)
+     * @param values les nouvelles valeurs, de même taille que la table
+     */
+    public void setQValues(double[] values) {
+        if (values.length != qTable.length()) {
+            throw new IllegalArgumentException("Table Q de taille " + values.length + " au lieu de " + qTable.length());
         }
-        
-        @Override
-        public int hashCode() {
-            int result = state.hashCode();
-            result = 31 * result + action.hashCode();
-            return result;
+        for (int i = 0; i < values.length; i++) {
+            qTable.set(i, Double.doubleToRawLongBits(values[i]));
         }
     }
+
+    /**
+     * @return le taux d'apprentissage
+     */
+    public double getAlpha() {
+        return alpha;
+    }
+
+    /**
+     * @return le facteur d'actualisation
+     */
+    public double getGamma() {
+        return gamma;
+    }
+
+    /**
+     * @return le nombre d'états de la grille de discrétisation
+     */
+    public int getStateCount() {
+        return numStates;
+    }
+
+    /**
+     * @return le paramètre d'exploration
+     */
+    @Override
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    @Override
+    public int getParameterCount() {
+        return qTable.length();
+    }
+
+    @Override
+    public void writeParameters(ByteBuffer out) {
+        for (int i = 0; i < qTable.length(); i++) {
+            out.putLong(qTable.get(i));
+        }
+    }
+
+    @Override
+    public void readParameters(ByteBuffer in) {
+        for (int i = 0; i < qTable.length(); i++) {
+            qTable.set(i, in.getLong());
+        }
+    }
+
+    /**
+     * @return le nombre d'intervalles par caractéristique continue de l'état
+     */
+    public int getBins() {
+        return bins;
+    }
+
+    /**
+     * Début de la ligne d'un état dans la table Q
+     */
+    private int rowOf(State state) {
+        return state.toGridIndex(bins) * ACTIONS.length;
+    }
+
+    /**
+     * Meilleure action d'une ligne de la table Q (la première en cas d'égalité, ALLOW
+     * pour un état jamais visité)
+     */
+    private int bestActionIn(int row) {
+        int best = 0;
+        double bestQ = valueAt(row);
+        for (int a = 1; a < ACTIONS.length; a++) {
+            double q = valueAt(row + a);
+            if (q > bestQ) {
+                bestQ = q;
+                best = a;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Valeur Q d'une entrée de la table
+     */
+    private double valueAt(int slot) {
+        return Double.longBitsToDouble(qTable.get(slot));
+    }
 }
@@ -7,6 +7,12 @@ import java.util.Arrays;
  * Contient les caractéristiques pertinentes pour la prise de décision.
  */
 public class State {
+
+    // Nombre de caractéristiques du vecteur (voir toFeatureVector)
+    public static final int FEATURE_COUNT = 6;
+
+    // Nombre de types d'attaque distingués par la grille (0: aucune à 7: SQLInjection)
+    public static final int ATTACK_TYPE_COUNT = 8;
     
     // Caractéristiques de l'état
     private double connectionRate;         // Taux de connexions (normalisé)
@@ -103,15 +109,93 @@ public class State {
      * @return un tableau de valeurs représentant l'état
      */
     public double[] toFeatureVector() {
-        double[] features = new double[6];
-        features[0] = connectionRate;
-        features[1] = portDiversity;
-        features[2] = bandwidth;
-        features[3] = attackProbability;
-        features[4] = consecutiveAlerts;
-        features[5] = attackTypeIndex / 10.0; // Normalisation
+        double[] features = new double[FEATURE_COUNT];
+        for (int i = 0; i < FEATURE_COUNT; i++) {
+            features[i] = getFeature(i);
+        }
         return features;
     }
+
+    /**
+     * Retourne une caractéristique du vecteur, sans l'allouer
+     * @param index l'index de la caractéristique (voir toFeatureVector)
+     * @return sa valeur
+     */
+    public double getFeature(int index) {
+        switch (index) {
+            case 0:
+                return connectionRate;
+            case 1:
+                return portDiversity;
+            case 2:
+                return bandwidth;
+            case 3:
+                return attackProbability;
+            case 4:
+                return consecutiveAlerts;
+            case 5:
+                return attackTypeIndex / 10.0; // Normalisation
+            default:
+                throw new IndexOutOfBoundsException("Caractéristique " + index);
+        }
+    }
+
+    /**
+     * Recopie toutes les caractéristiques d'un autre état
+     * @param other l'état copié
+     */
+    public void copyFrom(State other) {
+        this.connectionRate = other.connectionRate;
+        this.portDiversity = other.portDiversity;
+        this.bandwidth = other.bandwidth;
+        this.attackProbability = other.attackProbability;
+        this.consecutiveAlerts = other.consecutiveAlerts;
+        this.attackTypeIndex = other.attackTypeIndex;
+    }
+    
+    /**
+     * Nombre de cellules de la grille de discrétisation (voir toGridIndex)
+     * @param bins le nombre d'intervalles par caractéristique continue
+     * @return le nombre de cellules
+     */
+    public static int getGridSize(int bins) {
+        long size = ATTACK_TYPE_COUNT;
+        for (int i = 0; i < FEATURE_COUNT - 1; i++) {
+            size *= bins;
+        }
+        if (bins < 1 || size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Grille invalide: " + bins + " intervalles");
+        }
+        return (int) size;
+    }
+
+    /**
+     * Discrétise l'état sur une grille régulière des caractéristiques de toFeatureVector :
+     * chacune des cinq caractéristiques continues (dans [0, 1]) est découpée en bins
+     * intervalles égaux, le type d'attaque garde sa propre valeur (les types au-delà
+     * de ATTACK_TYPE_COUNT partagent la dernière). N'alloue rien.
+     * @param bins le nombre d'intervalles par caractéristique continue
+     * @return l'index de la cellule, entre 0 et getGridSize(bins) - 1
+     */
+    public int toGridIndex(int bins) {
+        int index = Math.max(0, Math.min(attackTypeIndex, ATTACK_TYPE_COUNT - 1));
+        index = index * bins + bin(connectionRate, bins);
+        index = index * bins + bin(portDiversity, bins);
+        index = index * bins + bin(bandwidth, bins);
+        index = index * bins + bin(attackProbability, bins);
+        index = index * bins + bin(consecutiveAlerts, bins);
+        return index;
+    }
+
+    /**
+     * Intervalle d'une caractéristique normalisée (1.0 tombe dans le dernier)
+     */
+    private static int bin(double value, int bins) {
+        if (!(value > 0.0)) {
+            return 0; // Valeurs négatives et NaN
+        }
+        return Math.min(bins - 1, (int) (value * bins));
+    }
     
     @Override
     public boolean equals(Object o) {
@@ -1,9 +1,15 @@
 package main.java.com.idsproject.ui;
 
 import main.java.com.idsproject.detection.Alert;
+import main.java.com.idsproject.detection.AttackSignature;
+import main.java.com.idsproject.detection.CompiledSignatures;
 import main.java.com.idsproject.detection.IDS;
+import main.java.com.idsproject.metrics.LatencyHistogram;
+import main.java.com.idsproject.metrics.MetricsRegistry;
 import main.java.com.idsproject.network.TrafficSimulator;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -13,6 +19,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 public class ConsoleUI implements IDS.AlertListener {
 
+    private static final int COSTLY_RULES_SHOWN = 10;
+
     private final IDS ids;
     private final TrafficSimulator trafficSimulator;
     private final AtomicBoolean running = new AtomicBoolean(false);
@@ -58,7 +66,8 @@ public class ConsoleUI implements IDS.AlertListener {
         System.out.println("  3 - Simuler un scan de ports");
         System.out.println("  4 - Simuler une attaque par force brute");
         System.out.println("  5 - Afficher les statistiques");
-        System.out.println("  6 - Quitter");
+        System.out.println("  6 - Afficher les signatures les plus coûteuses");
+        System.out.println("  7 - Quitter");
         System.out.println("=====================================================");
     }
     
@@ -67,14 +76,14 @@ public class ConsoleUI implements IDS.AlertListener {
      */
     private void runCommandLoop() {
         while (running.get()) {
-            System.out.print("\nEntrez une commande (1-6) : ");
+            System.out.print("\nEntrez une commande (1-7) : ");
             String input = scanner.nextLine().trim();
             
             try {
                 int command = Integer.parseInt(input);
                 processCommand(command);
             } catch (NumberFormatException e) {
-                System.out.println("Commande invalide. Veuillez entrer un nombre entre 1 et 6.");
+                System.out.println("Commande invalide. Veuillez entrer un nombre entre 1 et 7.");
             }
         }
     }
@@ -101,10 +110,13 @@ public class ConsoleUI implements IDS.AlertListener {
                 displayStatistics();
                 break;
             case 6:
+                displayCostlyRules();
+                break;
+            case 7:
                 exit();
                 break;
             default:
-                System.out.println("Commande inconnue. Veuillez entrer un nombre entre 1 et 6.");
+                System.out.println("Commande inconnue. Veuillez entrer un nombre entre 1 et 7.");
         }
     }
     
@@ -211,22 +223,63 @@ public class ConsoleUI implements IDS.AlertListener {
         System.out.println("\n=====================================================");
         System.out.println("  STATISTIQUES DU SYSTÈME");
         System.out.println("=====================================================");
-        System.out.println("Paquets analysés : " + ids.getTotalPacketsAnalyzed());
-        System.out.println("Alertes générées : " + ids.getAlertsGenerated());
-        System.out.println("Faux positifs    : " + ids.getFalsePositives());
-        System.out.println("Faux négatifs    : " + ids.getFalseNegatives());
-        System.out.println("Précision        : " + calculateAccuracy() + "%");
+        MetricsRegistry.Snapshot metrics = ids.getMetrics().snapshot();
+        System.out.println("Paquets analysés : " + metrics.getCounter(IDS.PACKETS_ANALYZED));
+        System.out.println("Alertes générées : " + metrics.getCounter(IDS.ALERTS_GENERATED));
+        System.out.println("Faux positifs    : " + metrics.getCounter(IDS.FALSE_POSITIVES));
+        System.out.println("Faux négatifs    : " + metrics.getCounter(IDS.FALSE_NEGATIVES));
+        System.out.println("Précision        : " + calculateAccuracy(metrics) + "%");
+        System.out.println("-----------------------------------------------------");
+        for (Map.Entry<String, LatencyHistogram.Snapshot> latency : metrics.getHistograms().entrySet()) {
+            System.out.printf("%-22s : %s%n", latency.getKey(), latency.getValue());
+        }
+        for (Map.Entry<String, Long> gauge : metrics.getGauges().entrySet()) {
+            System.out.printf("%-22s : %d%n", gauge.getKey(), gauge.getValue());
+        }
+        System.out.println("=====================================================");
+    }
+    
+    /**
+     * Affiche le profil du jeu de signatures courant : coût du parcours des littéraux,
+     * expressions les plus coûteuses et signatures jamais retenues
+     */
+    private void displayCostlyRules() {
+        CompiledSignatures signatures = AttackSignature.getCompiledSignatures();
+        long scans = signatures.getScanCount();
+        
+        System.out.println("\n=====================================================");
+        System.out.println("  SIGNATURES LES PLUS COÛTEUSES");
+        System.out.println("=====================================================");
+        System.out.printf("Textes analysés        : %d (automate : %.3f ms estimées, %d ns par texte)%n",
+                scans, signatures.getEstimatedScanNanos() / 1e6,
+                scans > 0 ? signatures.getEstimatedScanNanos() / scans : 0);
+        System.out.println("Signatures jamais retenues : " + signatures.getUnmatchedRuleCount() + 
+                " sur " + signatures.getSignatureCount());
+        
+        List<CompiledSignatures.RuleCost> costs = signatures.getTopCostlyRules(COSTLY_RULES_SHOWN);
+        if (costs.isEmpty()) {
+            System.out.println("Aucune expression régulière évaluée.");
+        } else {
+            System.out.printf("%-14s %10s %10s %12s %10s  %s%n",
+                    "Type", "Évals", "Retenues", "Total (ms)", "Moy. (ns)", "Expression");
+            for (CompiledSignatures.RuleCost cost : costs) {
+                System.out.printf("%-14s %10d %10d %12.3f %10d  %s%n",
+                        cost.getAttackType(), cost.getEvaluations(), cost.getMatches(),
+                        cost.getTotalNanos() / 1e6, cost.getAverageNanos(), cost.getSource());
+            }
+        }
         System.out.println("=====================================================");
     }
     
     /**
      * Calcule la précision du système de détection
+     * @param metrics la photographie des métriques de l'IDS
      * @return la précision en pourcentage
      */
-    private double calculateAccuracy() {
-        int totalAlerts = ids.getAlertsGenerated();
-        int falsePositives = ids.getFalsePositives();
-        int falseNegatives = ids.getFalseNegatives();
+    private double calculateAccuracy(MetricsRegistry.Snapshot metrics) {
+        long totalAlerts = metrics.getCounter(IDS.ALERTS_GENERATED);
+        long falsePositives = metrics.getCounter(IDS.FALSE_POSITIVES);
+        long falseNegatives = metrics.getCounter(IDS.FALSE_NEGATIVES);
         
         if (totalAlerts == 0) {
             return 100.0;
@@ -2,6 +2,7 @@ package main.java.com.idsproject.ui;
 
 import main.java.com.idsproject.detection.Alert;
 import main.java.com.idsproject.detection.IDS;
+import main.java.com.idsproject.metrics.MetricsRegistry;
 import main.java.com.idsproject.network.TrafficSimulator;
 
 import javax.swing.*;
@@ -353,14 +354,16 @@ public class SimpleGUI implements IDS.AlertListener {
      * Met à jour les statistiques affichées
      */
     private void updateStats() {
-        int packetsAnalyzed = ids.getTotalPacketsAnalyzed();
-        int alertsGenerated = ids.getAlertsGenerated();
+        // Une seule photographie : les compteurs affichés sont cohérents entre eux
+        MetricsRegistry.Snapshot metrics = ids.getMetrics().snapshot();
+        long packetsAnalyzed = metrics.getCounter(IDS.PACKETS_ANALYZED);
+        long alertsGenerated = metrics.getCounter(IDS.ALERTS_GENERATED);
         
         // Calcule la précision
         double accuracy = 0.0;
         if (alertsGenerated > 0) {
-            int falsePositives = ids.getFalsePositives();
-            int falseNegatives = ids.getFalseNegatives();
+            long falsePositives = metrics.getCounter(IDS.FALSE_POSITIVES);
+            long falseNegatives = metrics.getCounter(IDS.FALSE_NEGATIVES);
             double correctAlerts = alertsGenerated - falsePositives;
             accuracy = (correctAlerts / alertsGenerated) * 100;
             
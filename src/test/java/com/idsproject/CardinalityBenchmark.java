@@ -0,0 +1,158 @@
+package test.java.com.idsproject;
+
+import java.util.concurrent.CountDownLatch;
+
+import main.java.com.idsproject.network.WindowedCardinality;
+
+/**
+ * Banc d'essai du comptage de valeurs distinctes partitionné par thread : chaque thread
+ * alimente son propre WindowedCardinality, fusionné ensuite en un seul (merge), comparé
+ * à un compteur unique protégé par un verrou. Vérifie d'abord que la fusion donne la
+ * même estimation que le compteur unique, et qu'une partition en retard n'apporte que
+ * ce qu'elle a vu dans la fenêtre courante.
+ *
+ * Usage : CardinalityBenchmark [valeurs_par_thread] [threads_max]
+ */
+public class CardinalityBenchmark {
+
+    private static final long WINDOW = 10000;
+    private static final long GENERATION = WINDOW / 2;
+
+    public static void main(String[] args) throws InterruptedException {
+        int valuesPerThread = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1])
+                : Math.max(2, Runtime.getRuntime().availableProcessors());
+
+        System.out.println("Processeurs: " + Runtime.getRuntime().availableProcessors());
+        checkMergeMatchesSingleCounter(maxThreads);
+        checkMergeIgnoresExpiredGenerations();
+
+        System.out.printf("%-8s %16s %16s %10s%n", "threads", "partitions/s", "verrou global/s", "accélération");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            double sharded = measureSharded(threads, valuesPerThread);
+            double locked = measureLocked(threads, valuesPerThread);
+            System.out.printf("%-8d %16.0f %16.0f %9.2fx%n", threads, sharded, locked, sharded / locked);
+        }
+    }
+
+    /**
+     * Des partitions alimentées sur deux générations, puis fusionnées, doivent donner
+     * exactement l'estimation d'un compteur unique ayant reçu toutes les valeurs
+     */
+    private static void checkMergeMatchesSingleCounter(int shards) {
+        WindowedCardinality single = new WindowedCardinality(WINDOW);
+        WindowedCardinality[] partitions = new WindowedCardinality[shards];
+        for (int s = 0; s < shards; s++) {
+            partitions[s] = new WindowedCardinality(WINDOW);
+        }
+
+        for (int i = 0; i < 50000; i++) {
+            long time = i < 25000 ? 1000 : GENERATION + 1000;
+            long value = i * 7919L;
+            single.add(time, value);
+            partitions[i % shards].add(time, value);
+        }
+
+        WindowedCardinality merged = new WindowedCardinality(WINDOW);
+        for (WindowedCardinality partition : partitions) {
+            merged.merge(partition);
+        }
+
+        long now = GENERATION + 2000;
+        long expected = single.estimate(now);
+        long actual = merged.estimate(now);
+        System.out.println("Fusion de " + shards + " partitions: " + actual + " (compteur unique: " + expected + ")"
+                + (actual == expected ? "" : "  ÉCART"));
+    }
+
+    /**
+     * Une partition en retard d'une génération n'apporte que sa génération courante ;
+     * une partition plus ancienne n'apporte rien
+     */
+    private static void checkMergeIgnoresExpiredGenerations() {
+        long now = 10 * GENERATION + 1000;
+
+        WindowedCardinality reference = new WindowedCardinality(WINDOW);
+        addRange(reference, now, 0, 1000);
+        addRange(reference, now - GENERATION, 1000, 2000);
+        long expected = reference.estimate(now);
+
+        WindowedCardinality merged = new WindowedCardinality(WINDOW);
+        addRange(merged, now, 0, 1000);
+
+        // En retard d'une génération : sa génération précédente est hors fenêtre
+        WindowedCardinality late = new WindowedCardinality(WINDOW);
+        addRange(late, now - 2 * GENERATION, 5000, 6000);
+        addRange(late, now - GENERATION, 1000, 2000);
+        merged.merge(late);
+
+        // Plus ancienne que la fenêtre : rien à fusionner
+        WindowedCardinality stale = new WindowedCardinality(WINDOW);
+        addRange(stale, now - 3 * GENERATION, 9000, 12000);
+        merged.merge(stale);
+
+        long actual = merged.estimate(now);
+        System.out.println("Fusion de partitions en retard: " + actual + " (attendu: " + expected + ")"
+                + (actual == expected ? "" : "  ÉCART"));
+    }
+
+    private static void addRange(WindowedCardinality counter, long time, long from, long to) {
+        for (long value = from; value < to; value++) {
+            counter.add(time, value);
+        }
+    }
+
+    /**
+     * Chaque thread alimente sa partition, fusionnée à la fin : valeurs par seconde
+     */
+    private static double measureSharded(int threads, int valuesPerThread) throws InterruptedException {
+        WindowedCardinality[] partitions = new WindowedCardinality[threads];
+        for (int t = 0; t < threads; t++) {
+            partitions[t] = new WindowedCardinality(WINDOW);
+        }
+        long start = System.nanoTime();
+        run(threads, t -> {
+            WindowedCardinality partition = partitions[t];
+            for (int i = 0; i < valuesPerThread; i++) {
+                partition.add(i >>> 10, (long) t * valuesPerThread + i);
+            }
+        });
+        WindowedCardinality merged = new WindowedCardinality(WINDOW);
+        for (WindowedCardinality partition : partitions) {
+            merged.merge(partition);
+        }
+        return (double) threads * valuesPerThread / ((System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Tous les threads alimentent un compteur unique sous un verrou : valeurs par seconde
+     */
+    private static double measureLocked(int threads, int valuesPerThread) throws InterruptedException {
+        WindowedCardinality shared = new WindowedCardinality(WINDOW);
+        long start = System.nanoTime();
+        run(threads, t -> {
+            for (int i = 0; i < valuesPerThread; i++) {
+                synchronized (shared) {
+                    shared.add(i >>> 10, (long) t * valuesPerThread + i);
+                }
+            }
+        });
+        return (double) threads * valuesPerThread / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private interface Worker {
+        void run(int thread);
+    }
+
+    private static void run(int threads, Worker worker) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            new Thread(() -> {
+                worker.run(thread);
+                done.countDown();
+            }).start();
+        }
+        done.await();
+    }
+}
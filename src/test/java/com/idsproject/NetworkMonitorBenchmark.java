@@ -0,0 +1,92 @@
+package test.java.com.idsproject;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import main.java.com.idsproject.network.ExecutionStrategy;
+import main.java.com.idsproject.network.NetworkMonitor;
+
+/**
+ * Banc d'essai comparant les stratégies d'exécution du moniteur réseau.
+ * Mesure le nombre de connexions acceptées et traitées par seconde lorsque
+ * chaque traitement bloque (client lent simulé par un délai dans l'écouteur).
+ *
+ * Usage : NetworkMonitorBenchmark [durée_s] [délai_écouteur_ms] [clients]
+ */
+public class NetworkMonitorBenchmark {
+
+    private static final int BASE_PORT = 19080;
+
+    public static void main(String[] args) throws Exception {
+        int durationSeconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int listenerDelayMs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+
+        System.out.println("Durée: " + durationSeconds + " s, délai écouteur: " + listenerDelayMs +
+                " ms, clients: " + clients + ", threads virtuels disponibles: " +
+                ExecutionStrategy.isVirtualThreadsAvailable());
+
+        int port = BASE_PORT;
+        for (ExecutionStrategy strategy : ExecutionStrategy.values()) {
+            double rate = run(strategy, port++, durationSeconds, listenerDelayMs, clients);
+            System.out.printf("%-16s %,12.0f connexions/s%n", strategy, rate);
+        }
+
+        // Les tâches encore en file dans les exécuteurs arrêtés ne doivent pas prolonger la mesure
+        System.exit(0);
+    }
+
+    /**
+     * Exécute une mesure pour une stratégie donnée
+     * @return le nombre de connexions traitées par seconde
+     */
+    private static double run(ExecutionStrategy strategy, int port, int durationSeconds,
+                              int listenerDelayMs, int clients) throws InterruptedException {
+        NetworkMonitor monitor = new NetworkMonitor(new int[]{port}, NetworkMonitor.AcceptMode.NIO, strategy);
+        AtomicLong processed = new AtomicLong();
+        monitor.addPacketListener(packet -> {
+            try {
+                Thread.sleep(listenerDelayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            processed.incrementAndGet();
+        });
+        monitor.startMonitoring();
+        Thread.sleep(500);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService clientPool = Executors.newFixedThreadPool(clients);
+        for (int i = 0; i < clients; i++) {
+            clientPool.submit(() -> {
+                while (running.get()) {
+                    try {
+                        new Socket("127.0.0.1", port).close();
+                    } catch (IOException e) {
+                        // File d'acceptation pleine : on réessaie
+                    }
+                }
+            });
+        }
+
+        // Période de chauffe puis mesure
+        Thread.sleep(1000);
+        long start = System.nanoTime();
+        long before = processed.get();
+        Thread.sleep(durationSeconds * 1000L);
+        long after = processed.get();
+        long elapsed = System.nanoTime() - start;
+
+        running.set(false);
+        clientPool.shutdown();
+        clientPool.awaitTermination(5, TimeUnit.SECONDS);
+        monitor.stopMonitoring();
+
+        return (after - before) / (elapsed / 1e9);
+    }
+}
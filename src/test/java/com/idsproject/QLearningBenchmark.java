@@ -0,0 +1,169 @@
+package test.java.com.idsproject;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import main.java.com.idsproject.rl.Action;
+import main.java.com.idsproject.rl.QLearning;
+import main.java.com.idsproject.rl.State;
+
+/**
+ * Banc d'essai de l'apprentissage concurrent : nombre de décisions (selectAction puis
+ * update) par seconde sur une table Q partagée, pour 1 à N threads, comparé à la même
+ * table protégée par un verrou global. Vérifie d'abord qu'aucune mise à jour n'est
+ * perdue lorsque tous les threads écrivent la même entrée.
+ *
+ * Usage : QLearningBenchmark [durée_par_mesure_ms] [threads_max]
+ */
+public class QLearningBenchmark {
+
+    private static final int STATE_COUNT = 4096;
+    private static final int UPDATES_PER_THREAD = 200000;
+
+    public static void main(String[] args) throws InterruptedException {
+        long budgetMs = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1])
+                : Math.max(2, Runtime.getRuntime().availableProcessors());
+
+        System.out.println("Processeurs: " + Runtime.getRuntime().availableProcessors());
+        checkNoLostUpdates(maxThreads);
+
+        State[] states = generateStates(new Random(42));
+        System.out.printf("%-8s %16s %16s %10s%n", "threads", "sans verrou/s", "verrou global/s", "accélération");
+        double baseline = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            QLearning shared = new QLearning(0.1, 0.9, 0.1);
+            double lockFree = measure(budgetMs, threads, states, shared::selectAction, shared::update);
+
+            QLearning locked = new QLearning(0.1, 0.9, 0.1);
+            double globalLock = measure(budgetMs, threads, states,
+                    state -> {
+                        synchronized (locked) {
+                            return locked.selectAction(state);
+                        }
+                    },
+                    (state, action, reward, next) -> {
+                        synchronized (locked) {
+                            locked.update(state, action, reward, next);
+                        }
+                    });
+
+            if (threads == 1) {
+                baseline = lockFree;
+            }
+            System.out.printf("%-8d %16.0f %16.0f %9.2fx%n", threads, lockFree, globalLock, lockFree / baseline);
+        }
+    }
+
+    /**
+     * Tous les threads mettent à jour la même paire état-action avec la même récompense :
+     * la valeur finale ne dépend alors que du nombre de mises à jour, et doit être
+     * exactement celle d'autant de mises à jour séquentielles
+     */
+    private static void checkNoLostUpdates(int threads) throws InterruptedException {
+        double alpha = 0.0001;
+        QLearning qLearning = new QLearning(alpha, 0.0, 0.0);
+        State state = new State(0.5, 0.5, 0.5, 0.5, 0.5, 1);
+
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < UPDATES_PER_THREAD; i++) {
+                    qLearning.update(state, Action.BLOCK, 1.0, state);
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        double expected = 0.0;
+        for (long i = 0; i < (long) threads * UPDATES_PER_THREAD; i++) {
+            expected = expected + alpha * (1.0 - expected);
+        }
+        double actual = qLearning.getQValue(state, Action.BLOCK);
+        System.out.println("Mises à jour concurrentes (" + threads + " threads): "
+                + (actual == expected ? "aucune perdue" : "PERTE, attendu " + expected + ", obtenu " + actual));
+    }
+
+    private interface Selector {
+        Action select(State state);
+    }
+
+    private interface Updater {
+        void update(State state, Action action, double reward, State nextState);
+    }
+
+    /**
+     * Mesure le nombre de décisions par seconde, tous threads confondus
+     */
+    private static double measure(long budgetMs, int threads, State[] states,
+                                  Selector selector, Updater updater) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder decisions = new LongAdder();
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch start = new CountDownLatch(1);
+
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int offset = t * (STATE_COUNT / threads);
+            workers[t] = new Thread(() -> {
+                // Préchauffage
+                for (int i = 0; i < 20000; i++) {
+                    State state = states[(offset + i) % STATE_COUNT];
+                    updater.update(state, selector.select(state), 0.0, state);
+                }
+                ready.countDown();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                long local = 0;
+                int i = offset;
+                while (running.get()) {
+                    // Le drapeau n'est consulté que toutes les 64 décisions
+                    for (int k = 0; k < 64; k++) {
+                        State state = states[i++ & (STATE_COUNT - 1)];
+                        State next = states[i & (STATE_COUNT - 1)];
+                        Action action = selector.select(state);
+                        updater.update(state, action, action == Action.BLOCK ? 1.0 : -0.1, next);
+                    }
+                    local += 64;
+                }
+                decisions.add(local);
+            });
+            workers[t].start();
+        }
+
+        ready.await();
+        long begin = System.nanoTime();
+        start.countDown();
+        Thread.sleep(budgetMs);
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return decisions.sum() / ((System.nanoTime() - begin) / 1e9);
+    }
+
+    private static State[] generateStates(Random random) {
+        State[] states = new State[STATE_COUNT];
+        for (int i = 0; i < STATE_COUNT; i++) {
+            states[i] = new State(random.nextDouble(), random.nextDouble(), random.nextDouble(),
+                    random.nextDouble(), random.nextDouble(), random.nextInt(State.ATTACK_TYPE_COUNT));
+        }
+        return states;
+    }
+}
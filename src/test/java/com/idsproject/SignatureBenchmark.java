@@ -0,0 +1,237 @@
+package test.java.com.idsproject;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import main.java.com.idsproject.detection.AttackSignature;
+import main.java.com.idsproject.detection.CompiledSignatures;
+
+/**
+ * Banc d'essai de la recherche de signatures : évaluation séquentielle des expressions
+ * (Pattern.matches() sur chaque signature) contre les signatures compilées
+ * (automate d'Aho-Corasick et second étage filtré), pour 10, 1000 et 10000 signatures.
+ * Vérifie aussi que les deux méthodes donnent le même type d'attaque pour chaque texte,
+ * que les séquences d'échappement et options en ligne des expressions ne faussent pas
+ * leurs filtres, et que les charges utiles découpées en lignes par CRLF sont analysées
+ * ligne par ligne.
+ *
+ * Usage : SignatureBenchmark [durée_par_mesure_ms] [textes]
+ */
+public class SignatureBenchmark {
+
+    private static final int[] SIGNATURE_COUNTS = {10, 1000, 10000};
+    private static final String[] TYPES = {"DoS", "PortScan", "BruteForce", "SQLInjection"};
+    private static final double REGEX_RATIO = 0.1;
+
+    public static void main(String[] args) {
+        long budgetMs = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+        int textCount = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        checkEscapes();
+        checkPayloadLines();
+
+        Random random = new Random(42);
+        List<String> vocabulary = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            vocabulary.add(randomWord(random));
+        }
+
+        System.out.printf("%-12s %16s %16s %10s%n", "signatures", "séquentiel/s", "compilé/s", "écarts");
+        for (int count : SIGNATURE_COUNTS) {
+            Map<String, Pattern[]> signatures = generateSignatures(count, vocabulary, random);
+            List<String> texts = generateTexts(textCount, signatures, vocabulary, random);
+
+            long start = System.nanoTime();
+            CompiledSignatures compiled = new CompiledSignatures(signatures);
+            long compileMs = (System.nanoTime() - start) / 1000000;
+
+            int mismatches = 0;
+            for (String text : texts) {
+                String expected = sequentialDetect(signatures, text);
+                String actual = compiled.detectAttackType(text);
+                if (expected == null ? actual != null : !expected.equals(actual)) {
+                    mismatches++;
+                }
+            }
+
+            double sequentialRate = measure(budgetMs, texts, text -> sequentialDetect(signatures, text));
+            double compiledRate = measure(budgetMs, texts, compiled::detectAttackType);
+
+            System.out.printf("%-12d %16.0f %16.0f %10d   (compilation %d ms, %d états)%n",
+                    count, sequentialRate, compiledRate, mismatches, compileMs,
+                    compiled.getAutomaton().getStateCount());
+        }
+    }
+
+    /**
+     * Expressions dont le filtre doit ignorer l'opérande des séquences d'échappement
+     * (\x, \0, \c, \k, \N, \p...) et les options en ligne (?x), (?u), (?U) :
+     * chaque texte doit donner le même résultat qu'avec Pattern.matches()
+     */
+    private static void checkEscapes() {
+        String[][] cases = {
+            {".*\\x90\\x90\\x90\\x90.*", "x\u0090\u0090\u0090\u0090y"},
+            {".*foo\\x41bar.*", "zzfooAbarzz"},
+            {".*foo\\x{41}bar.*", "zzfooAbarzz"},
+            {".*ab\\0101\\0102cd.*", "zzabABcdzz"},
+            {".*ab\\u0041cd.*", "zzabAcdzz"},
+            {".*ab\\cAcd.*", "zzab\u0001cdzz"},
+            {".*(?<w>ab)\\k<w>cd.*", "zzababcdzz"},
+            {".*ab\\N{LATIN SMALL LETTER E}cd.*", "zzabecdzz"},
+            {".*ab\\p{Lu}cd.*", "zzabXcdzz"},
+            {".*(?x) a b c .*", "zzabczz"},
+            {".*(?u)caf\u00e9s.*", "zzCAF\u00c9Szz"},
+            {".*(?U)\u00e9t\u00e9.*", "zz\u00c9T\u00c9zz"}
+        };
+
+        Map<String, Pattern[]> signatures = new LinkedHashMap<>();
+        for (int i = 0; i < cases.length; i++) {
+            signatures.put("R" + i, new Pattern[]{Pattern.compile(cases[i][0], Pattern.CASE_INSENSITIVE)});
+        }
+        CompiledSignatures compiled = new CompiledSignatures(signatures);
+
+        int mismatches = 0;
+        for (String[] c : cases) {
+            String expected = sequentialDetect(signatures, c[1]);
+            String actual = compiled.detectAttackType(c[1]);
+            if (expected == null || !expected.equals(actual)) {
+                System.out.println("Expression " + c[0] + ": " + actual + " (attendu: " + expected + ")");
+                mismatches++;
+            }
+        }
+        System.out.println("Échappements et options en ligne: " + cases.length + " cas"
+                + (mismatches == 0 ? "" : ", " + mismatches + " écarts"));
+    }
+
+    /**
+     * Les signatures par défaut doivent être trouvées dans une charge utile multiligne,
+     * qu'il s'agisse d'un littéral de l'automate ou d'une expression du second étage
+     */
+    private static void checkPayloadLines() {
+        String[][] cases = {
+            {"GET /?id=1 UNION SELECT pass FROM users HTTP/1.1\r\nHost: x\r\n\r\n", "SQLInjection"},
+            {"GET /?id=1 UNION SELECT pass FROM users HTTP/1.1", "SQLInjection"},
+            {"220 ftp ready\r\n530 authentication failure\r\n", "BruteForce"},
+            {"530 authentication failure", "BruteForce"},
+            {"GET / HTTP/1.1\r\nHost: union\r\nX: select\r\n\r\n", null}
+        };
+
+        int mismatches = 0;
+        for (String[] c : cases) {
+            String actual = AttackSignature.detectAttackType(ByteBuffer.wrap(c[0].getBytes(StandardCharsets.ISO_8859_1)));
+            if (c[1] == null ? actual != null : !c[1].equals(actual)) {
+                System.out.println("Charge utile " + c[0].replace("\r\n", "\\r\\n") + ": " + actual + " (attendu: " + c[1] + ")");
+                mismatches++;
+            }
+        }
+        System.out.println("Charges utiles multilignes: " + cases.length + " cas"
+                + (mismatches == 0 ? "" : ", " + mismatches + " écarts"));
+    }
+
+    /**
+     * Détection de référence : chaque expression de chaque type, dans l'ordre
+     */
+    private static String sequentialDetect(Map<String, Pattern[]> signatures, String text) {
+        for (Map.Entry<String, Pattern[]> entry : signatures.entrySet()) {
+            for (Pattern pattern : entry.getValue()) {
+                if (pattern.matcher(text).matches()) {
+                    return entry.getKey();
+                }
+            }
+        }
+        return null;
+    }
+
+    private interface Detector {
+        String detect(String text);
+    }
+
+    /**
+     * Mesure le nombre de textes analysés par seconde pendant la durée donnée
+     */
+    private static double measure(long budgetMs, List<String> texts, Detector detector) {
+        // Préchauffage
+        for (int i = 0; i < Math.min(texts.size(), 200); i++) {
+            detector.detect(texts.get(i));
+        }
+
+        long start = System.nanoTime();
+        long deadline = start + budgetMs * 1000000;
+        long analyzed = 0;
+        while (System.nanoTime() < deadline) {
+            // L'horloge n'est consultée que tous les 16 textes
+            for (int i = 0; i < 16; i++) {
+                detector.detect(texts.get((int) (analyzed++ % texts.size())));
+            }
+        }
+        return analyzed / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static Map<String, Pattern[]> generateSignatures(int count, List<String> vocabulary, Random random) {
+        Map<String, List<Pattern>> byType = new LinkedHashMap<>();
+        for (String type : TYPES) {
+            byType.put(type, new ArrayList<>());
+        }
+
+        for (int i = 0; i < count; i++) {
+            String first = vocabulary.get(random.nextInt(vocabulary.size()));
+            String second = vocabulary.get(random.nextInt(vocabulary.size()));
+            String regex = random.nextDouble() < REGEX_RATIO
+                    ? ".*" + first + "\\s+" + second + ".*"
+                    : ".*" + first + " " + second + ".*";
+            byType.get(TYPES[i % TYPES.length]).add(Pattern.compile(regex, Pattern.CASE_INSENSITIVE));
+        }
+
+        Map<String, Pattern[]> signatures = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Pattern>> entry : byType.entrySet()) {
+            signatures.put(entry.getKey(), entry.getValue().toArray(new Pattern[0]));
+        }
+        return signatures;
+    }
+
+    /**
+     * Textes de journal aléatoires ; un sur dix contient une signature
+     */
+    private static List<String> generateTexts(int count, Map<String, Pattern[]> signatures,
+                                              List<String> vocabulary, Random random) {
+        List<Pattern> all = new ArrayList<>();
+        for (Pattern[] patterns : signatures.values()) {
+            for (Pattern pattern : patterns) {
+                all.add(pattern);
+            }
+        }
+
+        List<String> texts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder text = new StringBuilder();
+            int words = 8 + random.nextInt(16);
+            for (int w = 0; w < words; w++) {
+                text.append(vocabulary.get(random.nextInt(vocabulary.size()))).append(' ');
+            }
+            if (i % 10 == 0) {
+                String regex = all.get(random.nextInt(all.size())).pattern();
+                text.append(regex.substring(2, regex.length() - 2).replace("\\s+", " ")).append(" END");
+            }
+            if (i % 50 == 0) {
+                text.append('\n').append("suite");
+            }
+            texts.add(i % 3 == 0 ? text.toString().toUpperCase() : text.toString());
+        }
+        return texts;
+    }
+
+    private static String randomWord(Random random) {
+        int length = 3 + random.nextInt(6);
+        StringBuilder word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(26)));
+        }
+        return word.toString();
+    }
+}